@@ -16,21 +16,52 @@
 
 package org.jayield;
 
+import org.jayield.async.AsyncQueryAdvancer;
+import org.jayield.async.AsyncQueryBuffer;
+import org.jayield.async.AsyncQueryChunks;
+import org.jayield.async.AsyncQueryCombineLatest;
 import org.jayield.async.AsyncQueryFilter;
 import org.jayield.async.AsyncQueryFlatMapConcat;
 import org.jayield.async.AsyncQueryFlatMapMerge;
 import org.jayield.async.AsyncQueryFork;
+import org.jayield.async.AsyncQueryInstrument;
+import org.jayield.async.AsyncQueryLines;
 import org.jayield.async.AsyncQueryMap;
+import org.jayield.async.AsyncQueryMapAsync;
+import org.jayield.async.AsyncQueryMerge;
+import org.jayield.async.AsyncQueryObserveOn;
 import org.jayield.async.AsyncQueryOf;
 import org.jayield.async.AsyncQueryOfIterator;
 import org.jayield.async.AsyncQueryOnNext;
 import org.jayield.async.AsyncQuerySkip;
+import org.jayield.async.AsyncQuerySubscribeOn;
 import org.jayield.async.AsyncQueryTakeWhile;
+import org.jayield.async.AsyncQueryZip;
+import org.jayield.async.Schedulers;
+import org.jayield.async.StripedAccumulator;
+import org.jayield.boxes.Box;
+import org.jayield.metrics.AsyncSubscriptionEvent;
+import org.jayield.metrics.MetricsSink;
+import org.jayield.metrics.StageMetrics;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * An asynchronous sequence of elements supporting sequential operations.
@@ -44,6 +75,8 @@ public abstract class AsyncQuery<T> implements AsyncTraverser<T>{
     /**
      * Returns an asynchronous sequential ordered query whose elements
      * are the specified values in data parameter.
+     * Subscription returns immediately and elements are emitted in bursts
+     * on the common pool.
      */
     public static <U> AsyncQuery<U> of(U...data) {
         return new AsyncQueryOf<>(data);
@@ -51,6 +84,8 @@ public abstract class AsyncQuery<T> implements AsyncTraverser<T>{
     /**
      * Returns an asynchronous sequential ordered query whose elements
      * are the specified values in the Iterator parameter.
+     * Subscription returns immediately and elements are emitted in bursts
+     * on the common pool.
      */
     public static <U> AsyncQuery<U> of(Iterator<U> iter) {
         return new AsyncQueryOfIterator<>(iter);
@@ -60,7 +95,97 @@ public abstract class AsyncQuery<T> implements AsyncTraverser<T>{
      * are the specified values in data parameter running on thread pool.
      */
     public static <U> AsyncQuery<U> fork(U...data) {
-        return new AsyncQueryFork<>(data);
+        return fork(Schedulers.common(), data);
+    }
+    /**
+     * Returns an asynchronous sequential ordered query whose elements
+     * are the specified values in data parameter running on the given executor.
+     */
+    public static <U> AsyncQuery<U> fork(Executor executor, U...data) {
+        return new AsyncQueryFork<>(executor, data);
+    }
+
+    /**
+     * Returns an asynchronous sequential ordered query with the lines of the given
+     * file decoded as UTF-8, which is read through an AsynchronousFileChannel.
+     * The next read only starts after the lines of the previous one have been emitted.
+     */
+    public static AsyncQuery<String> lines(Path path) {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns an asynchronous sequential ordered query with the lines of the given
+     * file decoded with the given charset, which is read through an AsynchronousFileChannel.
+     * The next read only starts after the lines of the previous one have been emitted.
+     */
+    public static AsyncQuery<String> lines(Path path, Charset charset) {
+        return new AsyncQueryLines(path, charset, 8192);
+    }
+
+    /**
+     * Returns an asynchronous sequential ordered query with the content of the given
+     * file in chunks of {@code chunkSize} bytes, except for the last one that may be shorter.
+     * The file is read through an AsynchronousFileChannel and the next read only
+     * starts after the previous chunk has been emitted.
+     */
+    public static AsyncQuery<byte[]> chunks(Path path, int chunkSize) {
+        return new AsyncQueryChunks(path, chunkSize);
+    }
+
+    /**
+     * Returns an asynchronous query emitting the elements of all given queries,
+     * as they arrive, and completing when all of them have completed.
+     * Queries may emit concurrently, such as flatMapMerge, and their elements are
+     * still delivered to downstream sequentially.
+     */
+    @SafeVarargs
+    public static <U> AsyncQuery<U> merge(AsyncQuery<? extends U>...sources) {
+        AsyncQuery<?>[] queries = new AsyncQuery<?>[sources.length];
+        for (int i = 0; i < sources.length; i++) queries[i] = sources[i];
+        return new AsyncQueryMerge<>(queries);
+    }
+
+    /**
+     * Returns an asynchronous query applying the zipper to the corresponding elements
+     * of both queries, and completing as soon as one of them has completed.
+     * Only the elements of the faster query waiting for their pair are buffered.
+     */
+    public static <T, U, R> AsyncQuery<R> zip(
+        AsyncQuery<T> first,
+        AsyncQuery<U> second,
+        BiFunction<? super T, ? super U, ? extends R> zipper)
+    {
+        return new AsyncQueryZip<>(first, second, zipper);
+    }
+
+    /**
+     * Returns an asynchronous query applying the combiner to each element of either query
+     * and the latest element of the other query, once both have emitted an element.
+     */
+    public static <T, U, R> AsyncQuery<R> combineLatest(
+        AsyncQuery<T> first,
+        AsyncQuery<U> second,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return new AsyncQueryCombineLatest<>(first, second, combiner);
+    }
+
+    /**
+     * Returns a new asynchronous query that subscribes to this query on the
+     * given executor, thus the upstream emission runs on that executor.
+     */
+    public final AsyncQuery<T> subscribeOn(Executor executor) {
+        return new AsyncQuerySubscribeOn<>(this, executor);
+    }
+
+    /**
+     * Returns a new asynchronous query emitting the same items of this query,
+     * but delivering them to downstream on the given executor.
+     * Items are delivered in the same order and never concurrently.
+     */
+    public final AsyncQuery<T> observeOn(Executor executor) {
+        return new AsyncQueryObserveOn<>(this, executor);
     }
 
     /**
@@ -96,6 +221,58 @@ public abstract class AsyncQuery<T> implements AsyncTraverser<T>{
         return new AsyncQueryMap<>(this, mapper);
     }
 
+    /**
+     * Returns an asynchronous query consisting of the results of the
+     * CompletableFuture returned by the given function for each element of this query.
+     * It keeps at most {@code maxInFlight} calls in flight and emits results as
+     * they complete, thus not necessarily in the order of this query.
+     */
+    public final <R> AsyncQuery<R> mapAsync(
+        Function<? super T, ? extends CompletableFuture<? extends R>> mapper,
+        int maxInFlight)
+    {
+        return new AsyncQueryMapAsync<>(this, mapper, maxInFlight, false);
+    }
+
+    /**
+     * Returns an asynchronous query consisting of the results of the
+     * CompletableFuture returned by the given function for each element of this query.
+     * It keeps at most {@code maxInFlight} calls in flight and emits results
+     * in the same order of this query.
+     */
+    public final <R> AsyncQuery<R> mapAsyncOrdered(
+        Function<? super T, ? extends CompletableFuture<? extends R>> mapper,
+        int maxInFlight)
+    {
+        return new AsyncQueryMapAsync<>(this, mapper, maxInFlight, true);
+    }
+
+    /**
+     * Returns an asynchronous query whose elements are batches with the elements of this query.
+     * A batch is emitted when it reaches {@code maxSize} elements, or when {@code maxDelay}
+     * has elapsed since its first element, or when this query completes.
+     * Batches flushed by the delay are emitted on {@link Schedulers#common()}.
+     */
+    public final AsyncQuery<List<T>> buffer(int maxSize, Duration maxDelay) {
+        return buffer(maxSize, maxDelay, Schedulers.common());
+    }
+
+    /**
+     * Same as {@link #buffer(int, Duration)} but emitting the batches flushed by the delay
+     * on the given executor.
+     */
+    public final AsyncQuery<List<T>> buffer(int maxSize, Duration maxDelay, Executor executor) {
+        return new AsyncQueryBuffer<>(this, maxSize, maxDelay, executor);
+    }
+
+    /**
+     * Same as {@link #buffer(int, Duration)} but handing over each batch as a synchronous
+     * {@link Query}, thus it can be processed with the sequential Query operations.
+     */
+    public final AsyncQuery<Query<T>> bufferToQuery(int maxSize, Duration maxDelay) {
+        return this.buffer(maxSize, maxDelay).map(Query::fromList);
+    }
+
     /**
      * Returns a query consisting of the longest prefix of elements taken from
      * this query that match the given predicate.
@@ -117,9 +294,199 @@ public abstract class AsyncQuery<T> implements AsyncTraverser<T>{
         return new AsyncQueryFlatMapMerge<>(this, mapper);
     }
 
+    /**
+     * Returns an equivalent query recording the {@link StageMetrics} of this stage,
+     * which are exposed through JMX under the given name.
+     * @see #instrument(String, MetricsSink)
+     */
+    public final AsyncQuery<T> instrument(String name) {
+        return instrument(name, MetricsSink.jmx());
+    }
+
+    /**
+     * Returns an equivalent query recording the {@link StageMetrics} of this stage,
+     * namely emitted, failed and dropped signals, the time spent by downstream on
+     * each signal and the time until completion.
+     * If this query is a flatMapMerge, then the metrics also report its inner
+     * subscriptions in flight.
+     * The metrics are registered in the given sink.
+     */
+    public final AsyncQuery<T> instrument(String name, MetricsSink sink) {
+        StageMetrics metrics = new StageMetrics(name);
+        if(this instanceof AsyncQueryFlatMapMerge) {
+            AsyncQueryFlatMapMerge<?, T> merge = (AsyncQueryFlatMapMerge<?, T>) this;
+            metrics.inFlightGauge(merge::inFlight);
+        }
+        sink.register(metrics);
+        return new AsyncQueryInstrument<>(this, metrics);
+    }
+
+    /**
+     * Returns a synchronous {@link Query} with the elements of this query,
+     * which are handed over through a bounded buffer with the given capacity.
+     * Upstream waits while the buffer is full and the Query consumer waits
+     * while it is empty.
+     * Errors are rethrown to the consumer wrapped in a CompletionException.
+     * A traversal finishing early cancels the subscription of this query, and so does
+     * an iteration through hasNext and next once the Query is no longer reachable.
+     */
+    public final Query<T> toQuery(int capacity) {
+        return new Query<>(new AsyncQueryAdvancer<>(this, capacity));
+    }
+
     public final void blockingSubscribe() {
-        this
-            .subscribe((item, err) -> { })
-            .join(); // In both previous cases cf will raise an exception.
+        AsyncSubscriptionEvent event = AsyncSubscriptionEvent.start(this);
+        CompletableFuture<Void> cf = this.subscribe((item, err) -> {
+            if(event != null && err == null) event.element();
+        });
+        if(event != null) cf.whenComplete((ignore, err) -> event.finish(err));
+        cf.join(); // In both previous cases cf will raise an exception.
+    }
+
+    /**
+     * Returns a CompletableFuture with the count of elements in this query.
+     */
+    public final CompletableFuture<Long> count() {
+        LongAdder counter = new LongAdder();
+        return terminal(new CompletableFuture<>(), item -> counter.increment(), counter::sum);
+    }
+
+    /**
+     * Returns a CompletableFuture with the result of the reduction of the elements
+     * of this query, using the provided identity value and associative accumulator.
+     * Elements emitted concurrently are reduced into separate partial results
+     * which are combined with the same accumulator on completion.
+     */
+    public final CompletableFuture<T> reduce(T identity, BinaryOperator<T> accumulator) {
+        StripedAccumulator<T> cells = new StripedAccumulator<>(() -> identity);
+        return terminal(
+            new CompletableFuture<>(),
+            item -> cells.accumulate(item, accumulator),
+            () -> cells.merge(accumulator));
+    }
+
+    /**
+     * Returns a CompletableFuture with an optional with the resulting reduction of
+     * the elements of this query, if a reduction can be made, using the provided
+     * associative accumulator.
+     */
+    public final CompletableFuture<Optional<T>> reduce(BinaryOperator<T> accumulator) {
+        StripedAccumulator<Box<T>> cells = new StripedAccumulator<>(Box::new);
+        BinaryOperator<Box<T>> combiner = (res, other) -> {
+            if(other.isPresent()) reduceInto(res, other.getValue(), accumulator);
+            return res;
+        };
+        return terminal(
+            new CompletableFuture<>(),
+            item -> cells.accumulate(item, (box, elem) -> reduceInto(box, elem, accumulator)),
+            () -> {
+                Box<T> res = cells.merge(combiner);
+                return res.isPresent() ? Optional.ofNullable(res.getValue()) : Optional.empty();
+            });
+    }
+
+    private static <T> Box<T> reduceInto(Box<T> box, T item, BinaryOperator<T> accumulator) {
+        if(!box.isPresent()) box.turnPresent(item);
+        else box.setValue(accumulator.apply(box.getValue(), item));
+        return box;
+    }
+
+    /**
+     * Performs a mutable reduction operation on the elements of this query and returns
+     * a CompletableFuture with its result.
+     * Elements emitted concurrently are accumulated into separate containers,
+     * which are merged with the combiner on completion.
+     */
+    public final <R> CompletableFuture<R> collect(
+        Supplier<R> supplier,
+        BiConsumer<R, ? super T> accumulator,
+        BinaryOperator<R> combiner)
+    {
+        StripedAccumulator<R> cells = new StripedAccumulator<>(supplier);
+        return terminal(
+            new CompletableFuture<>(),
+            item -> cells.accumulate(item, (container, elem) -> {
+                accumulator.accept(container, elem);
+                return container;
+            }),
+            () -> cells.merge(combiner));
+    }
+
+    /**
+     * Returns a CompletableFuture with a list containing the elements of this query.
+     * The list keeps the encounter order of elements that are not emitted concurrently.
+     */
+    public final CompletableFuture<List<T>> toList() {
+        return this.collect(ArrayList::new, List::add, (res, other) -> {
+            res.addAll(other);
+            return res;
+        });
+    }
+
+    /**
+     * Returns a CompletableFuture with an {@link Optional} describing the first element
+     * of this query, or an empty {@code Optional} if this query is empty.
+     * It cancels the subscription of this query as soon as the first element arrives.
+     */
+    public final CompletableFuture<Optional<T>> first() {
+        CompletableFuture<Optional<T>> res = new CompletableFuture<>();
+        return terminal(res, item -> res.complete(Optional.of(item)), Optional::empty);
+    }
+
+    /**
+     * Returns a CompletableFuture with whether any elements of this query match the
+     * provided predicate.
+     * It cancels the subscription of this query as soon as an element matches.
+     */
+    public final CompletableFuture<Boolean> anyMatch(Predicate<? super T> p) {
+        CompletableFuture<Boolean> res = new CompletableFuture<>();
+        return terminal(res, item -> {
+            if(p.test(item)) res.complete(true);
+        }, () -> false);
+    }
+
+    /**
+     * Subscribes this query, passing each element to the given action, and completes
+     * the result with the finisher value after this query completes.
+     * Completing the result earlier, e.g. by the action, or due to an error,
+     * cancels the subscription of this query.
+     * The subscription is recorded as an {@link AsyncSubscriptionEvent} if enabled.
+     */
+    private <R> CompletableFuture<R> terminal(
+        CompletableFuture<R> result,
+        Consumer<? super T> action,
+        Supplier<? extends R> finisher)
+    {
+        AsyncSubscriptionEvent event = AsyncSubscriptionEvent.start(this);
+        CompletableFuture<Void> subscription = this.subscribe((item, err) -> {
+            if(result.isDone()) return;
+            if(err != null) {
+                result.completeExceptionally(err);
+                return;
+            }
+            if(event != null) event.element();
+            try {
+                action.accept(item);
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        subscription.whenComplete((ignore, err) -> {
+            if(result.isDone()) return;
+            if(err != null) {
+                result.completeExceptionally(err);
+                return;
+            }
+            try {
+                result.complete(finisher.get());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        result.whenComplete((ignore, err) -> {
+            subscription.complete(null);
+            if(event != null) event.finish(err);
+        });
+        return result;
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield;
+
+import java.util.List;
+import java.util.Set;
+
+import org.jayield.QueryPlan.Characteristic;
+
+/**
+ * Plan of how each operation of a pipeline will be executed: the advancer
+ * class, how it is driven by its downstream, the number of elements and
+ * characteristics it yields, and whether it materializes its input.
+ * The first input is the upstream and the following are the other pipelines
+ * combined in the operation, such as the argument of {@code zip}.
+ */
+public final class PhysicalPlan {
+
+    /**
+     * How an operation is driven by its downstream.
+     */
+    public enum Traversal {
+        /**
+         * Elements are pushed through traverse().
+         */
+        PUSH,
+        /**
+         * Elements are pushed through traverse() until downstream stops it with Yield.bye().
+         */
+        SHORT_CIRCUIT,
+        /**
+         * Elements are pulled one by one through hasNext() and next().
+         */
+        PULL,
+        /**
+         * All elements are pushed into an intermediate buffer.
+         */
+        BUFFER
+    }
+
+    private final QueryPlan plan;
+    private final Traversal traversal;
+    private final boolean materializes;
+    private final List<PhysicalPlan> inputs;
+
+    PhysicalPlan(QueryPlan plan, Traversal traversal, boolean materializes, List<PhysicalPlan> inputs) {
+        this.plan = plan;
+        this.traversal = traversal;
+        this.materializes = materializes;
+        this.inputs = inputs;
+    }
+
+    public String operator() {
+        return plan.operator();
+    }
+
+    public Class<?> advancer() {
+        return plan.advancer();
+    }
+
+    public Traversal traversal() {
+        return traversal;
+    }
+
+    /**
+     * The number of elements yielded by this operation, or {@link QueryPlan#UNKNOWN_SIZE},
+     * or {@link QueryPlan#INFINITE}.
+     */
+    public long size() {
+        return plan.size();
+    }
+
+    public Set<Characteristic> characteristics() {
+        return plan.characteristics();
+    }
+
+    /**
+     * Returns true if this operation retains the elements of its input,
+     * such as {@code sorted}, {@code distinct} or a pulled {@code then}.
+     */
+    public boolean materializes() {
+        return materializes;
+    }
+
+    public List<PhysicalPlan> inputs() {
+        return inputs;
+    }
+
+    /**
+     * Returns true if this operation, or any operation upstream, materializes its input.
+     */
+    public boolean hasMaterialization() {
+        if(materializes) return true;
+        for (PhysicalPlan input : inputs) {
+            if(input.hasMaterialization()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A tree with one line per operation, from the last operation up to the sources, e.g.
+     * <pre>
+     * zip [AdvancerZip] PUSH size=3 [SIZED]
+     * +- filter [AdvancerFilter] PUSH
+     * |  +- of [AdvancerArray] PUSH size=5 [SIZED]
+     * +- of [AdvancerArray] PULL size=3 [SIZED]
+     * </pre>
+     */
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder();
+        print(res, "", "");
+        return res.toString();
+    }
+
+    private void print(StringBuilder res, String first, String indent) {
+        res.append(first)
+           .append(operator())
+           .append(" [")
+           .append(advancer().getSimpleName())
+           .append("] ")
+           .append(traversal);
+        long size = size();
+        if(size == QueryPlan.INFINITE) res.append(" size=infinite");
+        else if(size >= 0) res.append(" size=").append(size);
+        if(!characteristics().isEmpty()) res.append(' ').append(characteristics());
+        if(materializes) res.append(" MATERIALIZES");
+        res.append(System.lineSeparator());
+        for (int i = 0; i < inputs.size(); i++) {
+            boolean last = i == inputs.size() - 1;
+            inputs.get(i).print(res, indent + "+- ", indent + (last ? "   " : "|  "));
+        }
+    }
+}
@@ -18,9 +18,12 @@ package org.jayield;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
@@ -31,6 +34,7 @@ import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.ToDoubleFunction;
@@ -40,31 +44,53 @@ import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.jayield.PhysicalPlan.Traversal;
+import org.jayield.QueryPlan.Operator;
 import org.jayield.advs.AdvancerArray;
+import org.jayield.advs.AdvancerChunked;
 import org.jayield.advs.AdvancerConcat;
 import org.jayield.advs.AdvancerDistinct;
 import org.jayield.advs.AdvancerDropWhile;
 import org.jayield.advs.AdvancerFilter;
 import org.jayield.advs.AdvancerFlatMap;
 import org.jayield.advs.AdvancerGenerate;
+import org.jayield.advs.AdvancerGroupBy;
 import org.jayield.advs.AdvancerIterate;
+import org.jayield.advs.AdvancerJoin;
 import org.jayield.advs.AdvancerLimit;
 import org.jayield.advs.AdvancerList;
 import org.jayield.advs.AdvancerMap;
+import org.jayield.advs.AdvancerMergeJoin;
+import org.jayield.advs.AdvancerMergeSorted;
 import org.jayield.advs.AdvancerPeek;
+import org.jayield.advs.AdvancerProfile;
+import org.jayield.advs.AdvancerSemiJoin;
 import org.jayield.advs.AdvancerSkip;
 import org.jayield.advs.AdvancerStream;
 import org.jayield.advs.AdvancerTakeWhile;
 import org.jayield.advs.AdvancerThen;
+import org.jayield.advs.AdvancerWindow;
 import org.jayield.advs.AdvancerZip;
+import org.jayield.advs.Chunker;
 import org.jayield.boxes.BoolBox;
 import org.jayield.boxes.Box;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.metrics.QueryExecutionEvent;
+import org.jayield.metrics.StageProfile;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.dbl.DoubleAdvancer;
 import org.jayield.primitives.dbl.DoubleQuery;
 import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntQuery;
 import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongQuery;
+import org.jayield.sketches.BloomFilter;
+import org.jayield.sketches.HyperLogLog;
+import org.jayield.spill.ObjectExternalSort;
+import org.jayield.tables.Aggregator;
+import org.jayield.tables.GroupTable;
+import org.jayield.tables.JoinTable;
+import org.jayield.tables.ParallelAggregation;
 
 /**
  * A sequence of elements supporting sequential operations.
@@ -77,9 +103,15 @@ import org.jayield.primitives.lng.LongQuery;
 public class Query<T> {
 
     private final Advancer<T> adv;
+    private final QueryPlan plan;
 
     public Query(Advancer<T> adv) {
+        this(adv, QueryPlan.source(adv.getClass().getSimpleName(), adv.getClass(), QueryPlan.UNKNOWN_SIZE));
+    }
+
+    public Query(Advancer<T> adv, QueryPlan plan) {
         this.adv = adv;
+        this.plan = plan;
     }
 
     /**
@@ -123,7 +155,7 @@ public class Query<T> {
      * are the specified values in data parameter.
      */
     public static <U> Query<U> of(U...data) {
-        return new Query<>(new AdvancerArray<>(data));
+        return new Query<>(new AdvancerArray<>(data), QueryPlan.source("of", AdvancerArray.class, data.length));
     }
 
     /**
@@ -131,7 +163,7 @@ public class Query<T> {
      * from the provided List data.
      */
     public static <U> Query<U> fromList(List<U> data) {
-        return new Query<>(new AdvancerList<>(data));
+        return new Query<>(new AdvancerList<>(data), QueryPlan.source("fromList", AdvancerList.class, data.size()));
     }
 
     /**
@@ -139,7 +171,9 @@ public class Query<T> {
      * from the provided stream data.
      */
     public static <U> Query<U> fromStream(Stream<U> data) {
-        return new Query<>(new AdvancerStream<>(data));
+        return new Query<>(
+            new AdvancerStream<>(data),
+            QueryPlan.source("fromStream", AdvancerStream.class, QueryPlan.UNKNOWN_SIZE));
     }
 
     /**
@@ -150,7 +184,9 @@ public class Query<T> {
      *
     */
     public static <U> Query<U> iterate(U seed, UnaryOperator<U> f) {
-        return new Query<>(new AdvancerIterate<>(seed, f));
+        return new Query<>(
+            new AdvancerIterate<>(seed, f),
+            QueryPlan.source("iterate", AdvancerIterate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -158,7 +194,7 @@ public class Query<T> {
      * function to the elements of this query.
      */
     public final <R> Query<R> map(Function<? super T,? extends R> mapper) {
-        return new Query<>(new AdvancerMap<>(adv, mapper));
+        return stage(new AdvancerMap<>(adv, mapper), plan.then(Operator.MAP, AdvancerMap.class));
     }
 
     /**
@@ -166,7 +202,9 @@ public class Query<T> {
      * sequences, producing a sequence of the results.
      */
     public final <U, R> Query<R> zip(Query<U> other, BiFunction<? super T, ? super U, ? extends R> zipper) {
-        return new Query<>(new AdvancerZip<>(this.adv, other.adv, zipper));
+        return stage(
+            new AdvancerZip<>(this.adv, other.adv, zipper),
+            plan.then(Operator.ZIP, AdvancerZip.class, other.plan));
     }
 
     /**
@@ -177,7 +215,9 @@ public class Query<T> {
      *         ToIntFunction used to map elements of this {@code Query} to int
      */
     public final IntQuery mapToInt(ToIntFunction<? super T> mapper) {
-        return new IntQuery(IntAdvancer.from(adv, mapper));
+        return new IntQuery(
+            StageProfile.stage(adv, "mapToInt", IntAdvancer.from(adv, mapper)),
+            plan.then(Operator.MAP_TO_INT, IntAdvancer.class));
     }
 
     /**
@@ -188,7 +228,9 @@ public class Query<T> {
      *         ToLongFunction used to map elements of this {@code Query} to long
      */
     public final LongQuery mapToLong(ToLongFunction<? super T> mapper) {
-        return new LongQuery(LongAdvancer.from(adv, mapper));
+        return new LongQuery(
+            StageProfile.stage(adv, "mapToLong", LongAdvancer.from(adv, mapper)),
+            plan.then(Operator.MAP_TO_LONG, LongAdvancer.class));
     }
 
     /**
@@ -199,7 +241,9 @@ public class Query<T> {
      *         ToLongFunction used to map elements of this {@code Query} to double
      */
     public final DoubleQuery mapToDouble(ToDoubleFunction<? super T> mapper) {
-        return new DoubleQuery(DoubleAdvancer.from(adv, mapper));
+        return new DoubleQuery(
+            StageProfile.stage(adv, "mapToDouble", DoubleAdvancer.from(adv, mapper)),
+            plan.then(Operator.MAP_TO_DOUBLE, DoubleAdvancer.class));
     }
 
     /**
@@ -207,7 +251,7 @@ public class Query<T> {
      * the given predicate.
      */
     public final Query<T> filter(Predicate<? super T> p) {
-        return new Query<>(new AdvancerFilter<>(adv, p));
+        return stage(new AdvancerFilter<>(adv, p), plan.then(Operator.FILTER, AdvancerFilter.class));
     }
 
     /**
@@ -215,7 +259,38 @@ public class Query<T> {
      * after discarding the first {@code n} elements of the query.
      */
     public final Query<T> skip(int n){
-        return new Query<>(new AdvancerSkip<>(adv, n));
+        return stage(new AdvancerSkip<>(adv, n), plan.skip(AdvancerSkip.class, n));
+    }
+
+    /**
+     * Returns a query of the windows of {@code size} consecutive elements of this query,
+     * starting every {@code step} elements, dropping the trailing elements that do not fill
+     * a window. Windows overlap when step is less than size and skip elements when it is greater.
+     * <p>
+     * The windows are views of a ring buffer, thus they are the same List instance, which is
+     * only valid until the next window and should be copied to be kept.
+     */
+    public final Query<List<T>> window(int size, int step) {
+        return stage(new AdvancerWindow<>(adv, size, step), plan.window("window", AdvancerWindow.class, size, step));
+    }
+
+    /**
+     * Returns a query of arrays with the next {@code n} elements of this query,
+     * except the last one, which has the remaining elements.
+     * Each chunk is a new array.
+     */
+    @SuppressWarnings("unchecked")
+    public final Query<Object[]> chunked(int n) {
+        return ((Query<Object>) this).chunked(n, Object[]::new);
+    }
+
+    /**
+     * Returns a query of arrays, created by the given generator, with the next {@code n} elements
+     * of this query, except the last one, which has the remaining elements.
+     * Each chunk is a new array.
+     */
+    public final Query<T[]> chunked(int n, IntFunction<T[]> generator) {
+        return stage(new AdvancerChunked<>(adv, n, generator), plan.chunked(AdvancerChunked.class, n));
     }
 
     /**
@@ -223,7 +298,7 @@ public class Query<T> {
      * to be no longer than {@code n} in length.
      */
     public final Query<T> limit(int n){
-        return new Query<>(new AdvancerLimit<>(this, n));
+        return stage(new AdvancerLimit<>(this, n), plan.limit(AdvancerLimit.class, n));
     }
 
     /**
@@ -231,7 +306,44 @@ public class Query<T> {
      * {@link Object#equals(Object)}) of this query.
      */
     public final Query<T> distinct(){
-        return new Query<>(new AdvancerDistinct<>(adv));
+        return stage(new AdvancerDistinct<>(adv, plan), plan.then(Operator.DISTINCT, AdvancerDistinct.class));
+    }
+
+    /**
+     * Returns a query consisting of distinct elements of this query, according to their
+     * {@link Object#hashCode()}, through a {@link BloomFilter} sized for the expected number of
+     * distinct elements and false positive probability, instead of a set of all elements.
+     * It never repeats an element, but it misses each distinct element with a probability
+     * near fpp, or greater beyond the expected size, and for colliding hash codes.
+     */
+    public final Query<T> approxDistinct(long expectedSize, double fpp) {
+        return approxDistinct(expectedSize, fpp, Objects::hashCode);
+    }
+
+    /**
+     * Version of {@link #approxDistinct(long, double)} identifying elements by the given 64 bits hash.
+     */
+    public final Query<T> approxDistinct(long expectedSize, double fpp, ToLongFunction<? super T> hashFn) {
+        BloomFilter filter = BloomFilter.of(expectedSize, fpp);
+        return stage(
+            new AdvancerFilter<>(adv, item -> filter.put(hashFn.applyAsLong(item))),
+            plan.then(Operator.APPROX_DISTINCT, AdvancerFilter.class));
+    }
+
+    /**
+     * Returns a query with the distinct elements of this query, in no particular order,
+     * which are aggregated in parallel by the workers of the common ForkJoinPool.
+     * The elements are eagerly traversed by the calling thread, which hands them,
+     * in chunks, to the workers.
+     *
+     * This is a stateful intermediate operation.
+     */
+    public final Query<T> parallelDistinct() {
+        MaterializationEvent event = MaterializationEvent.start("parallelDistinct");
+        @SuppressWarnings("unchecked")
+        T[] state = (T[]) ParallelAggregation.distinct(this);
+        MaterializationEvent.finish(event, plan, state.length, MaterializationEvent.HASH_ENTRY_BYTES);
+        return stage(new AdvancerArray<>(state), plan.then(Operator.PARALLEL_DISTINCT, AdvancerArray.class));
     }
 
     /**
@@ -240,7 +352,7 @@ public class Query<T> {
      * the provided mapping function to each element.
      */
     public final <R> Query<R> flatMap(Function<? super T,? extends Query<? extends R>> mapper){
-        return new Query<>(new AdvancerFlatMap<>(this, mapper));
+        return stage(new AdvancerFlatMap<>(this, mapper), plan.then(Operator.FLAT_MAP, AdvancerFlatMap.class));
     }
 
     /**
@@ -249,7 +361,7 @@ public class Query<T> {
      * from the resulting query.
      */
     public final Query<T> peek(Consumer<? super T> action) {
-        return new Query<>(new AdvancerPeek<>(adv, action));
+        return stage(new AdvancerPeek<>(adv, action), plan.then(Operator.PEEK, AdvancerPeek.class));
     }
 
     /**
@@ -257,7 +369,7 @@ public class Query<T> {
      * this query that match the given predicate.
      */
     public final Query<T> takeWhile(Predicate<? super T> predicate){
-        return new Query<>(new AdvancerTakeWhile<>(this, predicate));
+        return stage(new AdvancerTakeWhile<>(this, predicate), plan.then(Operator.TAKE_WHILE, AdvancerTakeWhile.class));
     }
 
     /**
@@ -267,7 +379,7 @@ public class Query<T> {
      * {@code Traverser} object that is encapsulated in the resulting query.
      */
     public final <R> Query<R> then(Function<Query<T>, Traverser<R>> next) {
-        return new Query<>(new AdvancerThen<>(this, next));
+        return stage(new AdvancerThen<>(this, next, plan), plan.then(Operator.THEN, AdvancerThen.class));
     }
 
     /**
@@ -275,7 +387,7 @@ public class Query<T> {
      */
     public final List<T> toList() {
         List<T> data = new ArrayList<>();
-        this.traverse(data::add);
+        this.execute(data::add);
         return data;
     }
 
@@ -309,7 +421,7 @@ public class Query<T> {
      */
     public final Optional<T> findFirst(){
         Box<T> box = new Box<>();
-        this.shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             box.turnPresent(item);
             Yield.bye();
         });
@@ -324,7 +436,7 @@ public class Query<T> {
      */
     public final Optional<T> max(Comparator<? super T> cmp){
         Box<T> b = new Box<>();
-        this.traverse(e -> {
+        this.execute(e -> {
             if(!b.isPresent()) b.turnPresent(e);
             else if(cmp.compare(e, b.getValue()) > 0) b.setValue(e);
         });
@@ -339,7 +451,7 @@ public class Query<T> {
      */
     public final boolean anyMatch(Predicate<? super T> p) {
         BoolBox found = new BoolBox();
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if(p.test(item)) {
                 found.set();
                 Yield.bye();
@@ -355,7 +467,7 @@ public class Query<T> {
      */
     public final boolean allMatch(Predicate<? super T> p) {
         BoolBox succeed = new BoolBox(true);
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if(!p.test(item)) {
                 succeed.set(false);
                 Yield.bye();
@@ -364,6 +476,26 @@ public class Query<T> {
         return succeed.isTrue();
     }
 
+    /**
+     * Returns an estimate of the number of distinct elements in this query, identified by the
+     * given 64 bits hash, through a {@link HyperLogLog} sketch of the default precision, which
+     * takes 16 KB and has a relative standard error of 0.81%.
+     */
+    public final long approxCountDistinct(ToLongFunction<? super T> hashFn) {
+        return approxCountDistinct(HyperLogLog.DEFAULT_PRECISION, hashFn);
+    }
+
+    /**
+     * Version of {@link #approxCountDistinct(ToLongFunction)} with a sketch of the given precision,
+     * between 4 and 18, which takes 2^precision bytes and has a relative standard error
+     * of 1.04 / sqrt(2^precision).
+     */
+    public final long approxCountDistinct(int precision, ToLongFunction<? super T> hashFn) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        this.execute(item -> sketch.add(hashFn.applyAsLong(item)));
+        return sketch.estimate();
+    }
+
     /**
      * Returns the count of elements in this query.
      */
@@ -377,7 +509,7 @@ public class Query<T> {
             }
         }
         Counter c = new Counter();
-        this.traverse(c);
+        this.execute(c);
         return c.n;
     }
 
@@ -400,7 +532,7 @@ public class Query<T> {
     public T reduce(T identity, BinaryOperator<T> accumulator) {
         Box<T> result = new Box<>();
         result.setValue(identity);
-        this.traverse(elem -> result.setValue(accumulator.apply(result.getValue(), elem)));
+        this.execute(elem -> result.setValue(accumulator.apply(result.getValue(), elem)));
         return result.getValue();
     }
 
@@ -410,7 +542,20 @@ public class Query<T> {
      * exception is thrown.
      */
     public final void forEach(Yield<? super T> yield) {
-        this.traverse(yield);
+        this.execute(yield);
+    }
+
+    /**
+     * Passes the elements of this query to the consumer in chunks of {@code n} elements,
+     * together with the number of elements in the chunk, which is less than n for the last one.
+     * <p>
+     * All chunks are the same array, created once by the generator, thus it is only valid
+     * during the call to the consumer and its content from the given length on is undefined.
+     */
+    public final void forEachChunk(int n, IntFunction<T[]> generator, ObjIntConsumer<? super T[]> consumer) {
+        Chunker<T> chunker = new Chunker<>(n, generator, true, consumer);
+        this.execute(chunker);
+        chunker.flush();
     }
 
     /**
@@ -418,7 +563,7 @@ public class Query<T> {
      */
     public final Set<T> toSet() {
         Set<T> data = new HashSet<>();
-        this.traverse(data::add);
+        this.execute(data::add);
         return data;
     }
 
@@ -426,7 +571,10 @@ public class Query<T> {
      * Returns an array containing the elements of this query.
      */
     public final <U> U[] toArray(IntFunction<U[]> generator) {
-        return this.toList().toArray(generator);
+        MaterializationEvent event = MaterializationEvent.start("toArray");
+        U[] res = this.toList().toArray(generator);
+        MaterializationEvent.finish(event, plan, res.length, MaterializationEvent.REFERENCE_BYTES);
+        return res;
     }
 
     /**
@@ -469,7 +617,9 @@ public class Query<T> {
      * where each element is generated by the provided Supplier.
      */
     public static <U> Query<U> generate(Supplier<U> s) {
-        return new Query<>(new AdvancerGenerate<>(s));
+        return new Query<>(
+            new AdvancerGenerate<>(s),
+            QueryPlan.source("generate", AdvancerGenerate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -479,7 +629,7 @@ public class Query<T> {
      */
     public <R> R collect(Supplier<R> supplier, BiConsumer<R, ? super T> accumulator) {
         R result = supplier.get();
-        this.traverse(elem -> accumulator.accept(result, elem));
+        this.execute(elem -> accumulator.accept(result, elem));
         return result;
     }
 
@@ -489,7 +639,91 @@ public class Query<T> {
      * elements of the other {@code Query}.
      */
     public final Query<T> concat(Query<T> other) {
-        return new Query<>(new AdvancerConcat<>(this, other));
+        return stage(new AdvancerConcat<>(this, other), plan.then(Operator.CONCAT, AdvancerConcat.class, other.plan));
+    }
+
+    /**
+     * Returns a {@code Query} with the elements of all the given queries, which must be
+     * already sorted according to the provided Comparator, merged in that order.
+     * Equal elements keep the order of the queries. Each query is iterated lazily
+     * and only its current element is retained.
+     */
+    @SafeVarargs
+    public static <U> Query<U> mergeSorted(Comparator<? super U> cmp, Query<U>... queries) {
+        if(queries.length == 0) return Query.fromList(Collections.emptyList());
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Advancer<U>[] sources = new Advancer[queries.length];
+        QueryPlan[] others = new QueryPlan[queries.length - 1];
+        for (int i = 0; i < queries.length; i++) {
+            sources[i] = queries[i].adv;
+            if(i > 0) others[i - 1] = queries[i].plan;
+        }
+        return queries[0].stage(
+            new AdvancerMergeSorted<>(sources, cmp),
+            queries[0].plan.then(Operator.MERGE_SORTED, AdvancerMergeSorted.class, others));
+    }
+
+    /**
+     * Returns a query with the results of applying the combiner to each element of
+     * this query and each element of the other query with an equal key.
+     * Both queries must be already sorted by their keys according to the provided Comparator.
+     * Unlike {@link #join(Query, Function, Function, BiFunction)} the other query is
+     * iterated in lockstep with this query and only its current run of elements with an
+     * equal key is retained.
+     */
+    public final <U, K, R> Query<R> mergeJoin(
+        Query<U> other,
+        Function<? super T, ? extends K> keyA,
+        Function<? super U, ? extends K> keyB,
+        Comparator<? super K> cmp,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerMergeJoin<T, U, R>(
+                adv,
+                other.adv,
+                (a, b) -> cmp.compare(keyA.apply(a), keyA.apply(b)),
+                (a, b) -> cmp.compare(keyA.apply(a), keyB.apply(b)),
+                combiner),
+            plan.then(Operator.MERGE_JOIN, AdvancerMergeJoin.class, other.plan));
+    }
+
+    /**
+     * Version of {@link #mergeJoin} with int keys in ascending order, which are never boxed.
+     */
+    public final <U, R> Query<R> mergeJoinInt(
+        Query<U> other,
+        ToIntFunction<? super T> keyA,
+        ToIntFunction<? super U> keyB,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerMergeJoin<T, U, R>(
+                adv,
+                other.adv,
+                (a, b) -> Integer.compare(keyA.applyAsInt(a), keyA.applyAsInt(b)),
+                (a, b) -> Integer.compare(keyA.applyAsInt(a), keyB.applyAsInt(b)),
+                combiner),
+            plan.then(Operator.MERGE_JOIN_INT, AdvancerMergeJoin.class, other.plan));
+    }
+
+    /**
+     * Version of {@link #mergeJoin} with long keys in ascending order, which are never boxed.
+     */
+    public final <U, R> Query<R> mergeJoinLong(
+        Query<U> other,
+        ToLongFunction<? super T> keyA,
+        ToLongFunction<? super U> keyB,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerMergeJoin<T, U, R>(
+                adv,
+                other.adv,
+                (a, b) -> Long.compare(keyA.applyAsLong(a), keyA.applyAsLong(b)),
+                (a, b) -> Long.compare(keyA.applyAsLong(a), keyB.applyAsLong(b)),
+                combiner),
+            plan.then(Operator.MERGE_JOIN_LONG, AdvancerMergeJoin.class, other.plan));
     }
 
     /**
@@ -499,9 +733,141 @@ public class Query<T> {
      * This is a stateful intermediate operation.
      */
     public final Query<T> sorted(Comparator<T> comparator) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
         T[] state = (T[]) this.toArray();
         Arrays.sort(state, comparator);
-        return new Query<>(new AdvancerArray<>(state));
+        MaterializationEvent.finish(event, plan, state.length, MaterializationEvent.REFERENCE_BYTES);
+        return stage(new AdvancerArray<>(state), plan.sorted(AdvancerArray.class, state.length));
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the natural order of the keys extracted by the given function.
+     * The function is called once per element and the sort is stable.
+     *
+     * This is a stateful intermediate operation.
+     */
+    public final <K extends Comparable<? super K>> Query<T> sortedBy(Function<? super T, ? extends K> keyExtractor) {
+        return sortedBy(keyExtractor, Comparator.naturalOrder());
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the keys extracted by the given function and compared by the
+     * given comparator. The keys are extracted once per element into an array, which is
+     * sorted along with a permutation of the elements positions, and the sort is stable.
+     *
+     * This is a stateful intermediate operation.
+     */
+    @SuppressWarnings("unchecked")
+    public final <K> Query<T> sortedBy(Function<? super T, ? extends K> keyExtractor, Comparator<? super K> comparator) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        Object[] state = this.toArray();
+        K[] keys = (K[]) new Object[state.length];
+        int[] index = new int[state.length];
+        for (int i = 0; i < state.length; i++) {
+            keys[i] = keyExtractor.apply((T) state[i]);
+            index[i] = i;
+        }
+        Sorts.sort(keys, index, state.length, comparator);
+        return sortedBy(event, state, index, 2 * MaterializationEvent.REFERENCE_BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the int keys extracted by the given function, which is called
+     * once per element. Each key is packed with the position of its element into a long,
+     * so that the sort is a stable primitive sort of these longs.
+     *
+     * This is a stateful intermediate operation.
+     */
+    @SuppressWarnings("unchecked")
+    public final Query<T> sortedByInt(ToIntFunction<? super T> keyExtractor) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        Object[] state = this.toArray();
+        long[] packed = new long[state.length];
+        for (int i = 0; i < state.length; i++) {
+            packed[i] = ((long) keyExtractor.applyAsInt((T) state[i]) << 32) | i;
+        }
+        Sorts.sort(packed, 0, packed.length);
+        int[] index = new int[state.length];
+        for (int i = 0; i < state.length; i++) {
+            index[i] = (int) packed[i];
+        }
+        return sortedBy(event, state, index, MaterializationEvent.REFERENCE_BYTES + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the long keys extracted by the given function, which is called
+     * once per element. The keys are radix sorted along with the positions of their elements
+     * and the sort is stable.
+     *
+     * This is a stateful intermediate operation.
+     */
+    @SuppressWarnings("unchecked")
+    public final Query<T> sortedByLong(ToLongFunction<? super T> keyExtractor) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        Object[] state = this.toArray();
+        long[] keys = new long[state.length];
+        int[] index = new int[state.length];
+        for (int i = 0; i < state.length; i++) {
+            keys[i] = keyExtractor.applyAsLong((T) state[i]);
+            index[i] = i;
+        }
+        Sorts.sort(keys, index, state.length);
+        return sortedBy(event, state, index, MaterializationEvent.REFERENCE_BYTES + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the double keys extracted by the given function, which is called
+     * once per element, in the order of {@link Double#compare}. The sort is stable.
+     *
+     * This is a stateful intermediate operation.
+     */
+    @SuppressWarnings("unchecked")
+    public final Query<T> sortedByDouble(ToDoubleFunction<? super T> keyExtractor) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        Object[] state = this.toArray();
+        long[] keys = new long[state.length];
+        int[] index = new int[state.length];
+        for (int i = 0; i < state.length; i++) {
+            keys[i] = Sorts.sortableLong(keyExtractor.applyAsDouble((T) state[i]));
+            index[i] = i;
+        }
+        Sorts.sort(keys, index, state.length);
+        return sortedBy(event, state, index, MaterializationEvent.REFERENCE_BYTES + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Places the elements of state in the order of the given sorted positions.
+     */
+    @SuppressWarnings("unchecked")
+    private Query<T> sortedBy(MaterializationEvent event, Object[] state, int[] index, int bytesPerElement) {
+        T[] res = (T[]) new Object[state.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = (T) state[index[i]];
+        }
+        MaterializationEvent.finish(event, plan, res.length, bytesPerElement);
+        return stage(new AdvancerArray<>(res), plan.sorted(AdvancerArray.class, res.length));
+    }
+
+    /**
+     * Returns a {@code Query} consisting of the elements of this {@code Query},
+     * sorted according to the provided Comparator, through an external merge sort
+     * with the given options, which spills runs beyond the memory budget to disk
+     * through the given serializer, such as {@link Serializer#java()} for Serializable elements.
+     * The runs are deleted once this query is exhausted, short-circuited or unreachable.
+     *
+     * This is a stateful intermediate operation.
+     */
+    public final Query<T> sorted(Comparator<T> comparator, SortOptions options, Serializer<T> serializer) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        ObjectExternalSort<T> sort = new ObjectExternalSort<>(comparator, options, serializer);
+        Advancer<T> res = sort.sort(this);
+        MaterializationEvent.finish(event, plan, sort.size(), options.objectBytes());
+        return stage(res, plan.sorted(ObjectExternalSort.class, sort.size()));
     }
 
     /**
@@ -509,7 +875,292 @@ public class Query<T> {
      * after discarding the first sequence of elements that match the given Predicate.
      */
     public final Query<T> dropWhile(Predicate<T> predicate) {
-        return new Query<>(new AdvancerDropWhile<>(this, predicate));
+        return stage(new AdvancerDropWhile<>(this, predicate), plan.then(Operator.DROP_WHILE, AdvancerDropWhile.class));
+    }
+
+    /**
+     * Returns a query with a group for each distinct key of the elements of this query,
+     * in order of first occurrence, with the key and the aggregate of its elements.
+     * All the elements are aggregated on the first traversal or iteration.
+     *
+     * This is a stateful intermediate operation.
+     */
+    public final <K, R> Query<Map.Entry<K, R>> groupBy(
+        Function<? super T, ? extends K> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return stage(
+            new AdvancerGroupBy<T, K, R>(adv, () -> GroupTable.of(keyFn, aggregator), plan),
+            plan.then(Operator.GROUP_BY, AdvancerGroupBy.class));
+    }
+
+    /**
+     * Version of {@link #groupBy} with int keys, which are never boxed until the resulting groups.
+     * With the aggregators of {@link Aggregator}, aggregating an element allocates nothing
+     * beyond what its functions allocate.
+     */
+    public final <R> Query<Map.Entry<Integer, R>> groupByInt(
+        ToIntFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return stage(
+            new AdvancerGroupBy<T, Integer, R>(adv, () -> GroupTable.ofInt(keyFn, aggregator), plan),
+            plan.then(Operator.GROUP_BY_INT, AdvancerGroupBy.class));
+    }
+
+    /**
+     * Version of {@link #groupBy} with long keys, which are never boxed until the resulting groups.
+     */
+    public final <R> Query<Map.Entry<Long, R>> groupByLong(
+        ToLongFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return stage(
+            new AdvancerGroupBy<T, Long, R>(adv, () -> GroupTable.ofLong(keyFn, aggregator), plan),
+            plan.then(Operator.GROUP_BY_LONG, AdvancerGroupBy.class));
+    }
+
+    /**
+     * Version of {@link #groupBy} aggregated in parallel, as {@link #parallelDistinct()},
+     * whose groups are in no particular order.
+     * Collect aggregators require a combiner to merge the partial groups of different workers.
+     *
+     * This is a stateful intermediate operation.
+     */
+    public final <K, R> Query<Map.Entry<K, R>> parallelGroupBy(
+        Function<? super T, ? extends K> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return parallelGroups(Operator.PARALLEL_GROUP_BY, () -> ParallelAggregation.groupBy(this, keyFn, aggregator));
+    }
+
+    /**
+     * Version of {@link #groupByInt} aggregated in parallel, as {@link #parallelGroupBy}.
+     */
+    public final <R> Query<Map.Entry<Integer, R>> parallelGroupByInt(
+        ToIntFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return parallelGroups(
+            Operator.PARALLEL_GROUP_BY_INT,
+            () -> ParallelAggregation.groupByInt(this, keyFn, aggregator));
+    }
+
+    /**
+     * Version of {@link #groupByLong} aggregated in parallel, as {@link #parallelGroupBy}.
+     */
+    public final <R> Query<Map.Entry<Long, R>> parallelGroupByLong(
+        ToLongFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return parallelGroups(
+            Operator.PARALLEL_GROUP_BY_LONG,
+            () -> ParallelAggregation.groupByLong(this, keyFn, aggregator));
+    }
+
+    private <K, R> Query<Map.Entry<K, R>> parallelGroups(Operator operator, Supplier<Map.Entry<K, R>[]> groupBy) {
+        MaterializationEvent event = MaterializationEvent.start(operator.toString());
+        Map.Entry<K, R>[] state = groupBy.get();
+        MaterializationEvent.finish(event, plan, state.length, MaterializationEvent.HASH_ENTRY_BYTES);
+        return stage(new AdvancerArray<>(state), plan.then(operator, AdvancerArray.class));
+    }
+
+    /**
+     * Returns a query with the results of applying the combiner to each element of
+     * this query and each element of the build query with an equal key.
+     * The build query is materialized into a hash table on the first traversal
+     * or iteration, whereas this query is streamed, preserving its order.
+     * Matching build elements are combined in their original order.
+     */
+    public final <U, K, R> Query<R> join(
+        Query<U> build,
+        Function<? super T, ? extends K> keyA,
+        Function<? super U, ? extends K> keyB,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerJoin<T, U, R>(adv, () -> JoinTable.of(build, keyA, keyB, false), combiner),
+            plan.then(Operator.JOIN, AdvancerJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #join} with int keys, which are never boxed.
+     */
+    public final <U, R> Query<R> joinInt(
+        Query<U> build,
+        ToIntFunction<? super T> keyA,
+        ToIntFunction<? super U> keyB,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerJoin<T, U, R>(adv, () -> JoinTable.ofInt(build, keyA, keyB, false), combiner),
+            plan.then(Operator.JOIN_INT, AdvancerJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #join} with long keys, which are never boxed.
+     */
+    public final <U, R> Query<R> joinLong(
+        Query<U> build,
+        ToLongFunction<? super T> keyA,
+        ToLongFunction<? super U> keyB,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        return stage(
+            new AdvancerJoin<T, U, R>(adv, () -> JoinTable.ofLong(build, keyA, keyB, false), combiner),
+            plan.then(Operator.JOIN_LONG, AdvancerJoin.class, build.plan));
+    }
+
+    /**
+     * Returns a query with the elements of this query whose key is equal to the
+     * key of some element of the build query.
+     * Only the keys of the build query are retained in a hash table.
+     */
+    public final <U, K> Query<T> semiJoin(
+        Query<U> build,
+        Function<? super T, ? extends K> keyA,
+        Function<? super U, ? extends K> keyB)
+    {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.of(build, keyA, keyB, true), false),
+            plan.then(Operator.SEMI_JOIN, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #semiJoin} with int keys, which are never boxed.
+     */
+    public final <U> Query<T> semiJoinInt(Query<U> build, ToIntFunction<? super T> keyA, ToIntFunction<? super U> keyB) {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.ofInt(build, keyA, keyB, true), false),
+            plan.then(Operator.SEMI_JOIN_INT, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #semiJoin} with long keys, which are never boxed.
+     */
+    public final <U> Query<T> semiJoinLong(Query<U> build, ToLongFunction<? super T> keyA, ToLongFunction<? super U> keyB) {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.ofLong(build, keyA, keyB, true), false),
+            plan.then(Operator.SEMI_JOIN_LONG, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Returns a query with the elements of this query whose key is not equal to the
+     * key of any element of the build query.
+     * Only the keys of the build query are retained in a hash table.
+     */
+    public final <U, K> Query<T> antiJoin(
+        Query<U> build,
+        Function<? super T, ? extends K> keyA,
+        Function<? super U, ? extends K> keyB)
+    {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.of(build, keyA, keyB, true), true),
+            plan.then(Operator.ANTI_JOIN, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #antiJoin} with int keys, which are never boxed.
+     */
+    public final <U> Query<T> antiJoinInt(Query<U> build, ToIntFunction<? super T> keyA, ToIntFunction<? super U> keyB) {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.ofInt(build, keyA, keyB, true), true),
+            plan.then(Operator.ANTI_JOIN_INT, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Version of {@link #antiJoin} with long keys, which are never boxed.
+     */
+    public final <U> Query<T> antiJoinLong(Query<U> build, ToLongFunction<? super T> keyA, ToLongFunction<? super U> keyB) {
+        return stage(
+            new AdvancerSemiJoin<>(adv, () -> JoinTable.ofLong(build, keyA, keyB, true), true),
+            plan.then(Operator.ANTI_JOIN_LONG, AdvancerSemiJoin.class, build.plan));
+    }
+
+    /**
+     * Returns the physical plan of this {@code Query} when it is consumed by a
+     * terminal operation, showing the advancer of each operation, whether it
+     * is pushed, pulled or buffered, its known size and characteristics and
+     * which operations materialize their input.
+     */
+    public final PhysicalPlan explain() {
+        return plan.explain(Traversal.PUSH);
+    }
+
+    /**
+     * Returns an equivalent {@code Query} that profiles each following operation,
+     * counting the elements leaving each stage and timing one element every 64.
+     * After a terminal operation, {@link #explainAnalyze()} reports the selectivity
+     * and the estimated time of each stage.
+     */
+    public final Query<T> profiled() {
+        return profiled(64);
+    }
+
+    /**
+     * Returns an equivalent {@code Query} that profiles each following operation,
+     * timing one element every {@code sampleEvery}.
+     *
+     * @see #profiled()
+     */
+    public final Query<T> profiled(int sampleEvery) {
+        return new Query<>(new AdvancerProfile<>(adv, StageProfile.source(sampleEvery)), plan);
+    }
+
+    /**
+     * Returns a report with the elements in and out, the selectivity and the
+     * estimated time of each stage of this profiled {@code Query}, after it
+     * has been consumed.
+     *
+     * @throws IllegalStateException if this query is not profiled.
+     */
+    public final String explainAnalyze() {
+        return StageProfile.report(adv);
+    }
+
+    /**
+     * Returns a query with the given advancer as the next stage of this pipeline.
+     */
+    private <R> Query<R> stage(Advancer<R> next, QueryPlan nextPlan) {
+        return new Query<>(StageProfile.stage(adv, nextPlan.operator(), next), nextPlan);
     }
 
+    /**
+     * Traverses this query on behalf of a terminal operation, recording
+     * a {@link QueryExecutionEvent} if enabled.
+     */
+    private void execute(Yield<? super T> yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.traverse(yield);
+            return;
+        }
+        try {
+            this.traverse(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
+    }
+
+    /**
+     * Short circuit version of {@link #execute}.
+     */
+    private void executeShortCircuit(Yield<T> yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.shortCircuit(yield);
+            return;
+        }
+        try {
+            this.shortCircuit(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
+    }
 }
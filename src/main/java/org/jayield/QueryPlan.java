@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jayield.PhysicalPlan.Traversal;
+
+/**
+ * Describes the operations of a query pipeline, from its source up to the
+ * last operation, including the pipelines of other queries combined with it,
+ * such as the argument of {@code zip} or {@code concat}.
+ * Each operation knows its advancer class, the number of elements it
+ * yields, when it is known, and the characteristics of its elements.
+ */
+public final class QueryPlan {
+    /**
+     * Size of a pipeline whose number of elements is unknown.
+     */
+    public static final long UNKNOWN_SIZE = -1;
+    /**
+     * Size of an infinite pipeline.
+     */
+    public static final long INFINITE = Long.MAX_VALUE;
+
+    public enum Characteristic {
+        /**
+         * The number of elements is known.
+         */
+        SIZED,
+        INFINITE,
+        SORTED,
+        DISTINCT
+    }
+
+    /**
+     * The operations combined through {@link #then}, each one with the rules that derive
+     * its size and characteristics from its inputs, and how it evaluates them.
+     */
+    public enum Operator {
+        MAP("map", Size.SAME, Evaluation.STREAM, false),
+        MAP_TO_OBJ("mapToObj", Size.SAME, Evaluation.STREAM, false),
+        MAP_TO_INT("mapToInt", Size.SAME, Evaluation.STREAM, false),
+        MAP_TO_LONG("mapToLong", Size.SAME, Evaluation.STREAM, false),
+        MAP_TO_DOUBLE("mapToDouble", Size.SAME, Evaluation.STREAM, false),
+        BOXED("boxed", Size.SAME, Evaluation.STREAM, true),
+        PEEK("peek", Size.SAME, Evaluation.STREAM, true),
+        EWMA("ewma", Size.SAME, Evaluation.STREAM, false),
+        FLAT_MAP("flatMap", Size.UNKNOWN, Evaluation.STREAM, false),
+        FILTER("filter", Size.UNKNOWN, Evaluation.STREAM, true),
+        TAKE_WHILE("takeWhile", Size.UNKNOWN, Evaluation.SHORT_CIRCUIT, true),
+        DROP_WHILE("dropWhile", Size.UNKNOWN, Evaluation.STREAM, true),
+        THEN("then", Size.UNKNOWN, Evaluation.DEFER, false),
+        DISTINCT("distinct", Size.UNKNOWN, Evaluation.RETAIN, true, Characteristic.DISTINCT),
+        APPROX_DISTINCT("approxDistinct", Size.UNKNOWN, Evaluation.STREAM, true, Characteristic.DISTINCT),
+        PARALLEL_DISTINCT("parallelDistinct", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        GROUP_BY("groupBy", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        GROUP_BY_INT("groupByInt", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        GROUP_BY_LONG("groupByLong", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        PARALLEL_GROUP_BY("parallelGroupBy", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        PARALLEL_GROUP_BY_INT("parallelGroupByInt", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        PARALLEL_GROUP_BY_LONG("parallelGroupByLong", Size.UNKNOWN, Evaluation.BUFFER, false, Characteristic.DISTINCT),
+        ZIP("zip", Size.MIN, Evaluation.LOCKSTEP, false),
+        CONCAT("concat", Size.SUM, Evaluation.STREAM, false),
+        MERGE_JOIN("mergeJoin", Size.UNKNOWN, Evaluation.LOCKSTEP, false),
+        MERGE_JOIN_INT("mergeJoinInt", Size.UNKNOWN, Evaluation.LOCKSTEP, false),
+        MERGE_JOIN_LONG("mergeJoinLong", Size.UNKNOWN, Evaluation.LOCKSTEP, false),
+        MERGE_SORTED("mergeSorted", Size.SUM, Evaluation.MERGE, false, Characteristic.SORTED),
+        INTERSECT_SORTED("intersectSorted", Size.UNKNOWN, Evaluation.MERGE, false, Characteristic.SORTED),
+        UNION_SORTED("unionSorted", Size.UNKNOWN, Evaluation.MERGE, false, Characteristic.SORTED, Characteristic.DISTINCT),
+        DIFFERENCE_SORTED("differenceSorted", Size.UNKNOWN, Evaluation.LOCKSTEP, false, Characteristic.SORTED),
+        JOIN("join", Size.UNKNOWN, Evaluation.HASH, false),
+        JOIN_INT("joinInt", Size.UNKNOWN, Evaluation.HASH, false),
+        JOIN_LONG("joinLong", Size.UNKNOWN, Evaluation.HASH, false),
+        SEMI_JOIN("semiJoin", Size.UNKNOWN, Evaluation.HASH, true),
+        SEMI_JOIN_INT("semiJoinInt", Size.UNKNOWN, Evaluation.HASH, true),
+        SEMI_JOIN_LONG("semiJoinLong", Size.UNKNOWN, Evaluation.HASH, true),
+        ANTI_JOIN("antiJoin", Size.UNKNOWN, Evaluation.HASH, true),
+        ANTI_JOIN_INT("antiJoinInt", Size.UNKNOWN, Evaluation.HASH, true),
+        ANTI_JOIN_LONG("antiJoinLong", Size.UNKNOWN, Evaluation.HASH, true);
+
+        private final String name;
+        private final Size size;
+        private final Evaluation evaluation;
+        private final boolean ordered;
+        private final Characteristic[] characteristics;
+
+        /**
+         * The {@code ordered} operations keep the {@code SORTED} and {@code DISTINCT}
+         * characteristics of their upstream and all of them add the given characteristics.
+         */
+        Operator(String name, Size size, Evaluation evaluation, boolean ordered, Characteristic... characteristics) {
+            this.name = name;
+            this.size = size;
+            this.evaluation = evaluation;
+            this.ordered = ordered;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * How the size of an operation is derived from the sizes of its inputs.
+     */
+    private enum Size {
+        UNKNOWN,
+        SAME,
+        MIN,
+        SUM
+    }
+
+    /**
+     * How an operation traverses its inputs and whether it retains their elements.
+     */
+    private enum Evaluation {
+        /**
+         * Streams each input as it is driven.
+         */
+        STREAM,
+        /**
+         * Streams its input retaining the elements seen, such as {@code distinct}.
+         */
+        RETAIN,
+        /**
+         * Stops the traversal of its input early, such as {@code limit}.
+         */
+        SHORT_CIRCUIT,
+        /**
+         * Buffers its whole input before yielding any element, such as {@code sorted}.
+         */
+        BUFFER,
+        /**
+         * Buffers the result of a custom traverser only when it is pulled.
+         */
+        DEFER,
+        /**
+         * Pulls the other inputs in lockstep with the first one, such as {@code zip}.
+         */
+        LOCKSTEP,
+        /**
+         * Pulls all the inputs, such as {@code mergeSorted}.
+         */
+        MERGE,
+        /**
+         * Builds a hash table from the other inputs and streams the first one.
+         */
+        HASH;
+
+        boolean materializes(boolean pulled) {
+            switch (this) {
+                case RETAIN:
+                case BUFFER:
+                case HASH:
+                    return true;
+                case DEFER:
+                    return pulled;
+                default:
+                    return false;
+            }
+        }
+
+        Traversal traversal(int input, boolean pulled) {
+            switch (this) {
+                case BUFFER:
+                    return Traversal.BUFFER;
+                case DEFER:
+                    return pulled ? Traversal.BUFFER : Traversal.PUSH;
+                case SHORT_CIRCUIT:
+                    return pulled ? Traversal.PULL : Traversal.SHORT_CIRCUIT;
+                case LOCKSTEP:
+                    return pulled || input > 0 ? Traversal.PULL : Traversal.PUSH;
+                case MERGE:
+                    return Traversal.PULL;
+                case HASH:
+                    return input > 0 ? Traversal.BUFFER : pulled ? Traversal.PULL : Traversal.PUSH;
+                default:
+                    return pulled ? Traversal.PULL : Traversal.PUSH;
+            }
+        }
+    }
+
+    private final String operator;
+    private final Class<?> advancer;
+    private final List<QueryPlan> inputs;
+    private final long size;
+    private final Set<Characteristic> characteristics;
+    private final Evaluation evaluation;
+
+    private QueryPlan(
+        String operator,
+        Class<?> advancer,
+        List<QueryPlan> inputs,
+        long size,
+        Set<Characteristic> characteristics,
+        Evaluation evaluation)
+    {
+        this.operator = operator;
+        this.advancer = advancer;
+        this.inputs = inputs;
+        this.size = size;
+        this.characteristics = characteristics;
+        this.evaluation = evaluation;
+    }
+
+    /**
+     * Plan of a pipeline starting with the given source, with the given size,
+     * or {@link #UNKNOWN_SIZE}, or {@link #INFINITE}.
+     */
+    public static QueryPlan source(String operator, Class<?> advancer, long size) {
+        return new QueryPlan(
+            operator,
+            advancer,
+            Collections.emptyList(),
+            size,
+            characteristics(size),
+            Evaluation.STREAM);
+    }
+
+    /**
+     * Plan of a new operation applied to this pipeline, combined with the other pipelines.
+     */
+    public QueryPlan then(Operator operator, Class<?> advancer, QueryPlan... others) {
+        QueryPlan[] inputs = new QueryPlan[others.length + 1];
+        inputs[0] = this;
+        System.arraycopy(others, 0, inputs, 1, others.length);
+        long size;
+        switch (operator.size) {
+            case SAME:
+                size = this.size;
+                break;
+            case MIN:
+                size = INFINITE;
+                for (QueryPlan input : inputs) {
+                    if(input.size < 0) {
+                        size = UNKNOWN_SIZE;
+                        break;
+                    }
+                    size = Math.min(size, input.size);
+                }
+                break;
+            case SUM:
+                size = 0;
+                for (QueryPlan input : inputs) {
+                    if(input.size < 0) {
+                        size = UNKNOWN_SIZE;
+                        break;
+                    }
+                    size = size > INFINITE - input.size ? INFINITE : size + input.size;
+                }
+                break;
+            default:
+                size = UNKNOWN_SIZE;
+        }
+        Set<Characteristic> res = characteristics(size);
+        if(operator.ordered) res.addAll(ordering());
+        res.addAll(Arrays.asList(operator.characteristics));
+        return new QueryPlan(
+            operator.name,
+            advancer,
+            Collections.unmodifiableList(Arrays.asList(inputs)),
+            size,
+            res,
+            operator.evaluation);
+    }
+
+    /**
+     * Plan of truncating this pipeline to no more than {@code n} elements.
+     */
+    public QueryPlan limit(Class<?> advancer, long n) {
+        long res = size == INFINITE || (size >= 0 && size > n) ? n : size;
+        return sized("limit", advancer, res, Evaluation.SHORT_CIRCUIT);
+    }
+
+    /**
+     * Plan of discarding the first {@code n} elements of this pipeline.
+     */
+    public QueryPlan skip(Class<?> advancer, long n) {
+        long res = size == INFINITE || size < 0 ? size : Math.max(0, size - n);
+        return sized("skip", advancer, res, Evaluation.STREAM);
+    }
+
+    /**
+     * Plan of an operation with one element for each window of {@code size} consecutive
+     * elements of this pipeline, starting every {@code step} elements.
+     */
+    public QueryPlan window(String operator, Class<?> advancer, int size, int step) {
+        long res = this.size < 0 || this.size == INFINITE ? this.size
+            : this.size < size ? 0 : (this.size - size) / step + 1;
+        return new QueryPlan(
+            operator,
+            advancer,
+            Collections.singletonList(this),
+            res,
+            characteristics(res),
+            Evaluation.STREAM);
+    }
+
+    /**
+     * Plan of grouping the elements of this pipeline in chunks of {@code n} elements.
+     */
+    public QueryPlan chunked(Class<?> advancer, int n) {
+        long res = size < 0 || size == INFINITE ? size : size / n + (size % n == 0 ? 0 : 1);
+        return new QueryPlan(
+            "chunked",
+            advancer,
+            Collections.singletonList(this),
+            res,
+            characteristics(res),
+            Evaluation.STREAM);
+    }
+
+    /**
+     * Plan of sorting the given number of elements of this pipeline.
+     */
+    public QueryPlan sorted(Class<?> advancer, long size) {
+        QueryPlan res = sized("sorted", advancer, size, Evaluation.BUFFER);
+        res.characteristics.add(Characteristic.SORTED);
+        return res;
+    }
+
+    private QueryPlan sized(String operator, Class<?> advancer, long size, Evaluation evaluation) {
+        Set<Characteristic> res = characteristics(size);
+        res.addAll(ordering());
+        return new QueryPlan(operator, advancer, Collections.singletonList(this), size, res, evaluation);
+    }
+
+    private Set<Characteristic> ordering() {
+        Set<Characteristic> res = EnumSet.copyOf(characteristics);
+        res.retainAll(EnumSet.of(Characteristic.SORTED, Characteristic.DISTINCT));
+        return res;
+    }
+
+    private static Set<Characteristic> characteristics(long size) {
+        Set<Characteristic> res = EnumSet.noneOf(Characteristic.class);
+        if(size == INFINITE) res.add(Characteristic.INFINITE);
+        else if(size >= 0) res.add(Characteristic.SIZED);
+        return res;
+    }
+
+    public String operator() {
+        return operator;
+    }
+
+    public Class<?> advancer() {
+        return advancer;
+    }
+
+    /**
+     * The upstream pipeline, if any, followed by the other pipelines combined in this operation.
+     */
+    public List<QueryPlan> inputs() {
+        return inputs;
+    }
+
+    /**
+     * The number of elements yielded by this pipeline, or {@link #UNKNOWN_SIZE},
+     * or {@link #INFINITE}.
+     */
+    public long size() {
+        return size;
+    }
+
+    public Set<Characteristic> characteristics() {
+        return Collections.unmodifiableSet(characteristics);
+    }
+
+    /**
+     * Returns the physical plan of this pipeline when it is driven by the
+     * given traversal, i.e. {@link Traversal#PUSH} for terminal operations
+     * and {@link Traversal#PULL} for iteration through hasNext() and next().
+     */
+    public PhysicalPlan explain(Traversal traversal) {
+        boolean pulled = traversal == Traversal.PULL;
+        List<PhysicalPlan> res = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            res.add(inputs.get(i).explain(evaluation.traversal(i, pulled)));
+        }
+        return new PhysicalPlan(this, traversal, evaluation.materializes(pulled), Collections.unmodifiableList(res));
+    }
+
+    /**
+     * A single line representation of this pipeline,
+     * e.g. {@code of -> filter -> zip(iterate -> limit) -> map}.
+     */
+    public String shape() {
+        StringBuilder res = new StringBuilder();
+        shape(res);
+        return res.toString();
+    }
+
+    private void shape(StringBuilder res) {
+        if(!inputs.isEmpty()) {
+            inputs.get(0).shape(res);
+            res.append(" -> ");
+        }
+        res.append(operator);
+        if(inputs.size() > 1) {
+            res.append('(');
+            for (int i = 1; i < inputs.size(); i++) {
+                if(i > 1) res.append(", ");
+                inputs.get(i).shape(res);
+            }
+            res.append(')');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return shape();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Options of an external sort, which sorts runs of elements in memory, up to a
+ * budget of bytes, and spills each run to a temporary file in a directory.
+ * Then the sorted elements are streamed from a k-way merge of all the runs.
+ * The budget includes the scratch space of the in memory sort. Runs of primitive
+ * values take up to half of the budget, since their radix or parallel sort takes a
+ * second array of the same length. Runs of objects take the whole budget, according
+ * to {@link #objectBytes()}, which should account for the temporary storage of their
+ * merge sort, of up to half a reference per element.
+ */
+public final class SortOptions {
+    /**
+     * Default estimate of the bytes taken by each object being sorted,
+     * including the reference in the run array.
+     */
+    public static final int OBJECT_BYTES = 64;
+
+    private final long budget;
+    private final Path dir;
+    private final int objectBytes;
+
+    private SortOptions(long budget, Path dir, int objectBytes) {
+        if(budget <= 0) throw new IllegalArgumentException("Illegal budget: " + budget);
+        if(objectBytes <= 0) throw new IllegalArgumentException("Illegal object bytes: " + objectBytes);
+        this.budget = budget;
+        this.dir = Objects.requireNonNull(dir);
+        this.objectBytes = objectBytes;
+    }
+
+    /**
+     * Sorts up to the given number of bytes of elements in memory and spills the
+     * exceeding elements, in sorted runs, to temporary files in the given directory.
+     */
+    public static SortOptions spillAt(long bytes, Path dir) {
+        return new SortOptions(bytes, dir, OBJECT_BYTES);
+    }
+
+    /**
+     * Returns options with the given estimate of the bytes taken by each object being sorted.
+     */
+    public SortOptions withObjectBytes(int objectBytes) {
+        return new SortOptions(budget, dir, objectBytes);
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public int objectBytes() {
+        return objectBytes;
+    }
+}
@@ -23,11 +23,20 @@ import org.jayield.Yield;
 
 public class AdvancerArray<U> implements Advancer<U> {
     private final U[] data;
+    private final int end;
     private int current;
 
     public AdvancerArray(U... data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Advancer of the elements of data from index from, inclusive, to index to, exclusive.
+     */
+    public AdvancerArray(U[] data, int from, int to) {
         this.data = data;
-        this.current = 0;
+        this.current = from;
+        this.end = to;
     }
 
     @Override
@@ -38,7 +47,7 @@ public class AdvancerArray<U> implements Advancer<U> {
 
     @Override
     public boolean hasNext() {
-        return current < data.length;
+        return current < end;
     }
 
     /**
@@ -48,7 +57,7 @@ public class AdvancerArray<U> implements Advancer<U> {
      */
     @Override
     public void traverse(Yield<? super U> yield) {
-        for (int i = current; i < data.length; i++) {
+        for (int i = current; i < end; i++) {
             yield.ret(data[i]);
         }
     }
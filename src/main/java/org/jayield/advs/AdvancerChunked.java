@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+
+/**
+ * Advancer of new arrays with the next n elements of the upstream, except the last
+ * one, which has the remaining elements.
+ */
+public class AdvancerChunked<T> implements Advancer<T[]> {
+    private final Advancer<T> upstream;
+    private final int n;
+    private final IntFunction<T[]> generator;
+
+    public AdvancerChunked(Advancer<T> upstream, int n, IntFunction<T[]> generator) {
+        if(n <= 0) throw new IllegalArgumentException("Illegal chunk size: " + n);
+        this.upstream = upstream;
+        this.n = n;
+        this.generator = generator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return upstream.hasNext();
+    }
+
+    @Override
+    public T[] next() {
+        if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+        T[] chunk = generator.apply(n);
+        int length = 0;
+        while(length < n && upstream.hasNext()) chunk[length++] = upstream.next();
+        return length == n ? chunk : Arrays.copyOf(chunk, length);
+    }
+
+    @Override
+    public void traverse(Yield<? super T[]> yield) {
+        Chunker<T> chunker = new Chunker<>(n, generator, false,
+            (chunk, length) -> yield.ret(length == n ? chunk : Arrays.copyOf(chunk, length)));
+        upstream.traverse(chunker);
+        chunker.flush();
+    }
+}
@@ -19,14 +19,20 @@ package org.jayield.advs;
 import java.util.HashSet;
 
 import org.jayield.Advancer;
+import org.jayield.QueryPlan;
 import org.jayield.Yield;
+import org.jayield.metrics.MaterializationEvent;
 
 public class AdvancerDistinct<T> extends AbstractAdvancer<T> {
     private final Advancer<T> upstream;
     final HashSet<T> mem = new HashSet<>();
+    private final QueryPlan plan;
+    private MaterializationEvent event;
+    private boolean started;
 
-    public AdvancerDistinct(Advancer<T> adv) {
+    public AdvancerDistinct(Advancer<T> adv, QueryPlan plan) {
         this.upstream = adv;
+        this.plan = plan;
     }
 
     /**
@@ -34,18 +40,39 @@ public class AdvancerDistinct<T> extends AbstractAdvancer<T> {
      * signaling it has finished.
      */
     public boolean move() {
+        startEvent();
         while(upstream.hasNext()) {
             curr = upstream.next();
             if(mem.add(curr))
                 return true;
         }
+        finishEvent();
         return false;
     }
 
     @Override
     public void traverse(Yield<? super T> yield) {
-        upstream.traverse(item -> {
-            if(mem.add(item)) yield.ret(item);
-        });
+        startEvent();
+        try {
+            upstream.traverse(item -> {
+                if(mem.add(item)) yield.ret(item);
+            });
+        } finally {
+            finishEvent();
+        }
+    }
+
+    /**
+     * Starts the event of this materialization, on the first move or traversal.
+     */
+    private void startEvent() {
+        if(started) return;
+        started = true;
+        event = MaterializationEvent.start("distinct");
+    }
+
+    private void finishEvent() {
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.HASH_ENTRY_BYTES);
+        event = null;
     }
 }
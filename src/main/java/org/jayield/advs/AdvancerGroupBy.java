@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.jayield.Advancer;
+import org.jayield.QueryPlan;
+import org.jayield.Yield;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.tables.GroupTable;
+
+/**
+ * Aggregates all the upstream elements into a {@link GroupTable}, on the first
+ * traversal or iteration, and then yields its groups in order of first occurrence.
+ */
+public class AdvancerGroupBy<T, K, R> extends AbstractAdvancer<Map.Entry<K, R>> {
+    private final Advancer<T> upstream;
+    private final Supplier<GroupTable<T, K, R>> builder;
+    private final QueryPlan plan;
+    private GroupTable<T, K, R> table;
+    private int partition;
+    private int group;
+
+    public AdvancerGroupBy(Advancer<T> upstream, Supplier<GroupTable<T, K, R>> builder, QueryPlan plan) {
+        this.upstream = upstream;
+        this.builder = builder;
+        this.plan = plan;
+    }
+
+    private GroupTable<T, K, R> table() {
+        if(table == null) {
+            MaterializationEvent event = MaterializationEvent.start("groupBy");
+            GroupTable<T, K, R> res = builder.get();
+            upstream.traverse(res::add);
+            MaterializationEvent.finish(event, plan, res.size(0), MaterializationEvent.HASH_ENTRY_BYTES);
+            table = res;
+        }
+        return table;
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        GroupTable<T, K, R> groups = table();
+        while(group >= groups.size(partition)) {
+            if(++partition >= groups.partitions()) return false;
+            group = 0;
+        }
+        curr = groups.group(partition, group++);
+        return true;
+    }
+
+    @Override
+    public void traverse(Yield<? super Map.Entry<K, R>> yield) {
+        while(hasNext()) yield.ret(next());
+    }
+}
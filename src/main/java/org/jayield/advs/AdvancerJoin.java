@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+import org.jayield.tables.JoinTable;
+
+/**
+ * Hash join streaming the upstream probe elements against a {@link JoinTable},
+ * which is built on the first traversal or iteration.
+ */
+public class AdvancerJoin<T, U, R> extends AbstractAdvancer<R> {
+    private final Advancer<T> upstream;
+    private final Supplier<JoinTable<T, U>> builder;
+    private final BiFunction<? super T, ? super U, ? extends R> combiner;
+    private JoinTable<T, U> table;
+    private T probe;
+    private int row = -1;
+
+    public AdvancerJoin(
+        Advancer<T> upstream,
+        Supplier<JoinTable<T, U>> builder,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        this.upstream = upstream;
+        this.builder = builder;
+        this.combiner = combiner;
+    }
+
+    private JoinTable<T, U> table() {
+        if(table == null) table = builder.get();
+        return table;
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        JoinTable<T, U> rows = table();
+        while(row < 0) {
+            if(!upstream.hasNext()) return false;
+            probe = upstream.next();
+            row = rows.first(probe);
+        }
+        curr = combiner.apply(probe, rows.row(row));
+        row = rows.next(row);
+        return true;
+    }
+
+    @Override
+    public void traverse(Yield<? super R> yield) {
+        JoinTable<T, U> rows = table();
+        upstream.traverse(item -> {
+            for (int r = rows.first(item); r >= 0; r = rows.next(r)) {
+                yield.ret(combiner.apply(item, rows.row(r)));
+            }
+        });
+    }
+}
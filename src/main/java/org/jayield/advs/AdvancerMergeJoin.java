@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.BiFunction;
+import java.util.function.ToIntBiFunction;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+
+/**
+ * Sort-merge join of the upstream with another advancer, both sorted by their keys.
+ * The other advancer is pulled in lockstep with the upstream and only the
+ * current run of its elements with an equal key is retained.
+ */
+public class AdvancerMergeJoin<T, U, R> extends AbstractAdvancer<R> {
+    private final Advancer<T> upstream;
+    private final Advancer<U> other;
+    private final Comparator<? super T> probeOrder;
+    private final ToIntBiFunction<? super T, ? super U> order;
+    private final BiFunction<? super T, ? super U, ? extends R> combiner;
+    private final ArrayList<U> run = new ArrayList<>();
+    private T runProbe;
+    private U pending;
+    private boolean hasPending;
+    private T probe;
+    private int row;
+
+    /**
+     * @param probeOrder compares the keys of two upstream elements.
+     * @param order compares the key of an upstream element with the key of an element of other.
+     */
+    public AdvancerMergeJoin(
+        Advancer<T> upstream,
+        Advancer<U> other,
+        Comparator<? super T> probeOrder,
+        ToIntBiFunction<? super T, ? super U> order,
+        BiFunction<? super T, ? super U, ? extends R> combiner)
+    {
+        this.upstream = upstream;
+        this.other = other;
+        this.probeOrder = probeOrder;
+        this.order = order;
+        this.combiner = combiner;
+    }
+
+    /**
+     * Positions the run on the elements of other with a key equal to the key of item,
+     * discarding the elements of other with a lower key.
+     */
+    private void seek(T item) {
+        if(!run.isEmpty() && probeOrder.compare(item, runProbe) == 0) return;
+        run.clear();
+        runProbe = item;
+        while(hasPending || other.hasNext()) {
+            if(!hasPending) {
+                pending = other.next();
+                hasPending = true;
+            }
+            int res = order.applyAsInt(item, pending);
+            if(res < 0) return;
+            if(res == 0) run.add(pending);
+            hasPending = false;
+            pending = null;
+        }
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        while(row >= run.size()) {
+            if(!upstream.hasNext()) return false;
+            probe = upstream.next();
+            seek(probe);
+            if(run.isEmpty() && !hasPending && !other.hasNext()) return false;
+            row = 0;
+        }
+        curr = combiner.apply(probe, run.get(row++));
+        return true;
+    }
+
+    @Override
+    public void traverse(Yield<? super R> yield) {
+        upstream.traverse(item -> {
+            seek(item);
+            for (int i = 0; i < run.size(); i++) {
+                yield.ret(combiner.apply(item, run.get(i)));
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.Comparator;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+
+/**
+ * K-way merge of advancers that are already sorted by the same comparator,
+ * through a binary heap with the index of each advancer that has elements.
+ * Ties are yielded in the order of the advancers, keeping the merge stable.
+ */
+public class AdvancerMergeSorted<T> extends AbstractAdvancer<T> {
+    private final Advancer<T>[] sources;
+    private final Comparator<? super T> cmp;
+    private final Object[] heads;
+    private final int[] heap;
+    private int size = -1;
+
+    public AdvancerMergeSorted(Advancer<T>[] sources, Comparator<? super T> cmp) {
+        this.sources = sources;
+        this.cmp = cmp;
+        this.heads = new Object[sources.length];
+        this.heap = new int[sources.length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean less(int a, int b) {
+        int res = cmp.compare((T) heads[a], (T) heads[b]);
+        return res < 0 || (res == 0 && a < b);
+    }
+
+    private void siftDown(int pos) {
+        int src = heap[pos];
+        for (int child = 2 * pos + 1; child < size; child = 2 * pos + 1) {
+            if(child + 1 < size && less(heap[child + 1], heap[child])) child++;
+            if(!less(heap[child], src)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = src;
+    }
+
+    private void init() {
+        size = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if(sources[i].hasNext()) {
+                heads[i] = sources[i].next();
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean move() {
+        if(size < 0) init();
+        if(size == 0) return false;
+        int src = heap[0];
+        curr = (T) heads[src];
+        if(sources[src].hasNext()) {
+            heads[src] = sources[src].next();
+        } else {
+            heads[src] = null;
+            heap[0] = heap[--size];
+        }
+        if(size > 0) siftDown(0);
+        return true;
+    }
+
+    @Override
+    public void traverse(Yield<? super T> yield) {
+        while(hasNext()) yield.ret(next());
+    }
+}
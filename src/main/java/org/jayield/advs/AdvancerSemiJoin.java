@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.function.Supplier;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+import org.jayield.tables.JoinTable;
+
+/**
+ * Keeps the upstream elements with a matching key in a {@link JoinTable}, or
+ * without a matching key, if anti.
+ * The table is built on the first traversal or iteration.
+ */
+public class AdvancerSemiJoin<T> extends AbstractAdvancer<T> {
+    private final Advancer<T> upstream;
+    private final Supplier<? extends JoinTable<T, ?>> builder;
+    private final boolean anti;
+    private JoinTable<T, ?> table;
+
+    public AdvancerSemiJoin(Advancer<T> upstream, Supplier<? extends JoinTable<T, ?>> builder, boolean anti) {
+        this.upstream = upstream;
+        this.builder = builder;
+        this.anti = anti;
+    }
+
+    private JoinTable<T, ?> table() {
+        if(table == null) table = builder.get();
+        return table;
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        JoinTable<T, ?> keys = table();
+        while(upstream.hasNext()) {
+            curr = upstream.next();
+            if(keys.contains(curr) != anti)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void traverse(Yield<? super T> yield) {
+        JoinTable<T, ?> keys = table();
+        upstream.traverse(item -> {
+            if(keys.contains(item) != anti) yield.ret(item);
+        });
+    }
+}
@@ -22,24 +22,30 @@ import java.util.function.Function;
 
 import org.jayield.Advancer;
 import org.jayield.Query;
+import org.jayield.QueryPlan;
 import org.jayield.Traverser;
 import org.jayield.Yield;
+import org.jayield.metrics.MaterializationEvent;
 
 public class AdvancerThen<T, R> implements Advancer<R> {
     private Query<T> upstream;
     private Function<Query<T>, Traverser<R>> next;
+    private final QueryPlan plan;
     private Iterator<R> curr;
     private boolean inMem = false;
 
-    public AdvancerThen(Query<T> upstream, Function<Query<T>, Traverser<R>> next) {
+    public AdvancerThen(Query<T> upstream, Function<Query<T>, Traverser<R>> next, QueryPlan plan) {
         this.upstream = upstream;
         this.next = next;
+        this.plan = plan;
     }
 
     public Iterator<R> curr() {
         if(inMem) return curr;
+        MaterializationEvent event = MaterializationEvent.start("then");
         ArrayList<R> mem = new ArrayList<>();
         next.apply(upstream).traverse(mem::add);
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.REFERENCE_BYTES);
         inMem = true;
         curr = mem.iterator();
         return curr;
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.advs;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+
+/**
+ * Advancer of the windows of size consecutive elements starting every step elements,
+ * which are views of a ring buffer with the last size elements of the upstream.
+ * All windows are the same instance, reused and valid until the next window.
+ */
+public class AdvancerWindow<T> extends AbstractAdvancer<List<T>> {
+    private final Advancer<T> upstream;
+    private final Object[] ring;
+    private final int step;
+    private final View view = new View();
+    /**
+     * Number of elements read from the upstream.
+     */
+    private long count;
+
+    public AdvancerWindow(Advancer<T> upstream, int size, int step) {
+        if(size <= 0) throw new IllegalArgumentException("Illegal window size: " + size);
+        if(step <= 0) throw new IllegalArgumentException("Illegal window step: " + step);
+        this.upstream = upstream;
+        this.ring = new Object[size];
+        this.step = step;
+    }
+
+    /**
+     * Puts the given item in the ring buffer and returns true if it completes a window.
+     */
+    private boolean add(T item) {
+        ring[(int) (count % ring.length)] = item;
+        count++;
+        if(count < ring.length || (count - ring.length) % step != 0) return false;
+        view.start = (int) (count % ring.length);
+        return true;
+    }
+
+    @Override
+    protected boolean move() {
+        while(upstream.hasNext()) {
+            if(add(upstream.next())) {
+                curr = view;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void traverse(Yield<? super List<T>> yield) {
+        upstream.traverse(item -> {
+            if(add(item)) yield.ret(view);
+        });
+    }
+
+    private class View extends AbstractList<T> implements RandomAccess {
+        int start;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if(index < 0 || index >= ring.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ring.length);
+            }
+            int i = start + index;
+            return (T) ring[i < ring.length ? i : i - ring.length];
+        }
+
+        @Override
+        public int size() {
+            return ring.length;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.Advancer;
+import org.jayield.AsyncQuery;
+import org.jayield.Yield;
+
+import java.lang.ref.Cleaner;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pull based Advancer over the elements of an AsyncQuery.
+ * Upstream elements are handed over through a bounded MpscRingBuffer.
+ * Producers wait while the buffer is full and the consumer waits while it is empty,
+ * both spinning and yielding before parking.
+ * Producers only unpark the consumer when it is parked, thus a consumer draining
+ * the buffer is not woken up on every element.
+ * <p>
+ * The state shared with the producers lives in a {@link Channel}, which never refers
+ * back to the advancer. Thus, a consumer abandoning the iteration makes the advancer
+ * unreachable and a {@link Cleaner} cancels the subscription, releasing the producers
+ * waiting on a full buffer.
+ */
+public class AsyncQueryAdvancer<T> implements Advancer<T> {
+    private static final Object END = new Object();
+    private static final int SPINS = 128;
+    private static final int YIELDS = 16;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final AsyncQuery<T> upstream;
+    private final Channel channel;
+    /**
+     * The next signal already taken from the queue, or END, or null if none.
+     */
+    private Object next;
+
+    public AsyncQueryAdvancer(AsyncQuery<T> upstream, int capacity) {
+        this.upstream = upstream;
+        this.channel = new Channel(capacity);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(next == null) next = take();
+        return next != END;
+    }
+
+    @Override
+    public T next() {
+        if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+        Object signal = next;
+        next = null;
+        return item(signal);
+    }
+
+    @Override
+    public void traverse(Yield<? super T> yield) {
+        try {
+            if(next != null) {
+                if(next == END) return;
+                Object signal = next;
+                next = null;
+                yield.ret(item(signal));
+            }
+            Object signal;
+            while((signal = take()) != END) yield.ret(item(signal));
+        } catch (RuntimeException | Error e) {
+            // Traversal finished early, either by short-circuit or error.
+            channel.cancel();
+            throw e;
+        }
+    }
+
+    private static <T> T item(Object signal) {
+        if(Signal.isFailure(signal)) throw wrap(Signal.failure(signal));
+        return Signal.item(signal);
+    }
+
+    private static CompletionException wrap(Throwable err) {
+        return err instanceof CompletionException
+            ? (CompletionException) err
+            : new CompletionException(err);
+    }
+
+    /**
+     * Subscribes on a separate thread because a synchronous upstream
+     * would otherwise block on a full buffer that the consumer never drains.
+     */
+    private void start() {
+        Channel ch = channel;
+        ch.subscription = upstream
+            .subscribeOn(Schedulers.virtual())
+            .subscribe(ch::onNext);
+        ch.subscription.whenComplete((ignore, err) -> ch.onComplete(err));
+        CLEANER.register(this, ch::cancel);
+    }
+
+    private static void backoff(int attempts) {
+        if(attempts < SPINS) Thread.onSpinWait();
+        else if(attempts < SPINS + YIELDS) Thread.yield();
+        else LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(attempts - SPINS - YIELDS, 10)));
+    }
+
+    /**
+     * Returns the next signal or END, waiting while the queue is empty.
+     */
+    private Object take() {
+        if(next == END) return END;
+        Channel ch = channel;
+        if(ch.subscription == null) start();
+        int attempts = 0;
+        for (;;) {
+            Object signal = ch.queue.poll();
+            if(signal != null) return signal;
+            if(ch.done) {
+                signal = ch.queue.poll();
+                if(signal != null) return signal;
+                next = END;
+                Throwable err = ch.error;
+                if(err != null && !ch.cancelled) throw wrap(err);
+                return END;
+            }
+            if(attempts < SPINS + YIELDS) {
+                backoff(attempts++);
+            } else {
+                ch.waiter = Thread.currentThread();
+                if(ch.queue.isEmpty() && !ch.done) LockSupport.park(this);
+                ch.waiter = null;
+            }
+        }
+    }
+
+    /**
+     * State shared by the producers and the consumer.
+     */
+    private static final class Channel {
+        final MpscRingBuffer queue;
+        volatile CompletableFuture<Void> subscription;
+        volatile Thread waiter;
+        volatile boolean done;
+        volatile boolean cancelled;
+        volatile Throwable error;
+
+        Channel(int capacity) {
+            this.queue = new MpscRingBuffer(capacity);
+        }
+
+        void onNext(Object item, Throwable err) {
+            if(cancelled) return;
+            Object signal = Signal.of(item, err);
+            int attempts = 0;
+            while(!queue.offer(signal)) {
+                CompletableFuture<Void> sub = subscription;
+                if(cancelled || (sub != null && sub.isDone())) return;
+                backoff(attempts++);
+            }
+            unpark();
+        }
+
+        void onComplete(Throwable err) {
+            error = err;
+            done = true;
+            unpark();
+        }
+
+        void cancel() {
+            cancelled = true;
+            CompletableFuture<Void> sub = subscription;
+            if(sub != null) sub.complete(null);
+        }
+
+        private void unpark() {
+            Thread th = waiter;
+            if(th != null) LockSupport.unpark(th);
+        }
+    }
+}
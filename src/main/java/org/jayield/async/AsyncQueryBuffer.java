@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+public class AsyncQueryBuffer<T> extends AsyncQuery<List<T>> {
+    private final AsyncQuery<T> upstream;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final Executor executor;
+
+    public AsyncQueryBuffer(AsyncQuery<T> upstream, int maxSize, Duration maxDelay, Executor executor) {
+        if(maxSize <= 0) throw new IllegalArgumentException("maxSize must be positive but was " + maxSize);
+        if(maxDelay.isNegative() || maxDelay.isZero())
+            throw new IllegalArgumentException("maxDelay must be positive but was " + maxDelay);
+        this.upstream = upstream;
+        this.maxSize = maxSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super List<T>, ? super Throwable> cons) {
+        Batcher batcher = new Batcher(cons);
+        CompletableFuture<Void> subscription = upstream.subscribe(batcher::onNext);
+        subscription.whenComplete((ignore, err) -> batcher.onComplete(err));
+        // Propagate cancellation from downstream to upstream.
+        batcher.result.whenComplete((ignore, err) -> {
+            batcher.cancelTimeout();
+            subscription.complete(null);
+        });
+        return batcher.result;
+    }
+
+    /**
+     * Gathers items into the current batch and flushes it when it reaches
+     * maxSize or when the timeout, started by its first item, expires.
+     * The generation identifies the batch that scheduled a timeout, thus
+     * a late timeout never flushes a following batch.
+     * The lock only guards the current batch. Flushed batches are enqueued and
+     * delivered by a drain loop outside the lock, on the upstream thread or, for
+     * timeouts, on the executor, since the timer thread is shared by all the
+     * buffers and never runs downstream code.
+     * The wip counter guarantees a single drain loop at a time, thus the
+     * downstream consumer is never called concurrently.
+     */
+    private class Batcher {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final BiConsumer<? super List<T>, ? super Throwable> cons;
+        private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable error;
+        private List<T> batch;
+        private long generation;
+        private ScheduledFuture<?> timeout;
+
+        Batcher(BiConsumer<? super List<T>, ? super Throwable> cons) {
+            this.cons = cons;
+        }
+
+        void onNext(T item, Throwable err) {
+            synchronized (this) {
+                if(result.isDone()) return;
+                if(err != null) {
+                    queue.offer(Signal.of(null, err));
+                } else {
+                    if(batch == null) {
+                        batch = new ArrayList<>(Math.min(maxSize, 1024));
+                        final long gen = ++generation;
+                        timeout = Schedulers.timer().schedule(
+                            () -> dispatchTimeout(gen),
+                            maxDelayNanos,
+                            TimeUnit.NANOSECONDS);
+                    }
+                    batch.add(item);
+                    if(batch.size() < maxSize) return;
+                    flush();
+                }
+            }
+            drain();
+        }
+
+        /**
+         * Runs on the timer thread, thus it only hands the timeout over to the executor.
+         */
+        private void dispatchTimeout(long gen) {
+            try {
+                executor.execute(() -> onTimeout(gen));
+            } catch (Throwable err) {
+                result.completeExceptionally(err);
+            }
+        }
+
+        void onTimeout(long gen) {
+            synchronized (this) {
+                if(gen != generation || batch == null || result.isDone()) return;
+                flush();
+            }
+            drain();
+        }
+
+        void onComplete(Throwable err) {
+            synchronized (this) {
+                if(batch != null) flush();
+                error = err;
+                done = true;
+            }
+            drain();
+        }
+
+        synchronized void cancelTimeout() {
+            if(timeout != null) timeout.cancel(false);
+            timeout = null;
+            batch = null;
+        }
+
+        /**
+         * Enqueues the current batch, called while holding the lock.
+         */
+        private void flush() {
+            List<T> items = batch;
+            cancelTimeout();
+            queue.offer(items);
+        }
+
+        private void drain() {
+            if(wip.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                Object signal;
+                while((signal = queue.poll()) != null) {
+                    if(result.isDone()) continue; // Cancelled thus discard
+                    try {
+                        Signal.emit(signal, cons);
+                    } catch (Throwable err) {
+                        result.completeExceptionally(err);
+                    }
+                }
+                if(done && queue.isEmpty()) {
+                    Throwable err = error;
+                    if(err != null) result.completeExceptionally(err);
+                    else result.complete(null);
+                }
+                missed = wip.addAndGet(-missed);
+            } while(missed != 0);
+        }
+    }
+}
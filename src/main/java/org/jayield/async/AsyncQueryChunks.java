@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+/**
+ * Emits the content of a file in chunks of bufferSize bytes,
+ * except for the last one that may be shorter.
+ */
+public class AsyncQueryChunks extends AsyncQueryFile<byte[]> {
+
+    public AsyncQueryChunks(Path path, int chunkSize) {
+        super(path, chunkSize);
+    }
+
+    @Override
+    protected Sink sink(BiConsumer<? super byte[], ? super Throwable> cons) {
+        return new Sink() {
+            @Override
+            public void onBytes(ByteBuffer buf) {
+                // A read may be shorter than requested, thus wait for a full chunk.
+                if(buf.remaining() == buf.capacity()) emit(buf);
+            }
+
+            @Override
+            public void onEnd(ByteBuffer buf) {
+                if(buf.hasRemaining()) emit(buf);
+            }
+
+            private void emit(ByteBuffer buf) {
+                byte[] chunk = new byte[buf.remaining()];
+                buf.get(chunk);
+                cons.accept(chunk, null);
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+public class AsyncQueryCombineLatest<T, U, R> extends AsyncQuery<R> {
+    private final AsyncQuery<T> first;
+    private final AsyncQuery<U> second;
+    private final BiFunction<? super T, ? super U, ? extends R> combiner;
+
+    public AsyncQueryCombineLatest(AsyncQuery<T> first, AsyncQuery<U> second, BiFunction<? super T, ? super U, ? extends R> combiner) {
+        this.first = first;
+        this.second = second;
+        this.combiner = combiner;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super R, ? super Throwable> cons) {
+        return new MultiSourceDrain<R>(cons, 2) {
+            private T latestA;
+            private U latestB;
+            private boolean hasA;
+            private boolean hasB;
+
+            /**
+             * Each element of either source is combined with the latest element of the
+             * other source, once both sources have emitted at least one element.
+             * It completes when both sources have finished, or when one source
+             * finishes without any element, since there is nothing left to combine.
+             */
+            @Override
+            void drainLoop() {
+                Source a = sources[0];
+                Source b = sources[1];
+                boolean doneA = a.done;
+                boolean doneB = b.done;
+                Object x;
+                Object y;
+                do {
+                    if((x = a.queue.poll()) != null) {
+                        if(Signal.isFailure(x)) emitFailure(x);
+                        else {
+                            latestA = Signal.item(x);
+                            hasA = true;
+                            if(hasB) cons.accept(combiner.apply(latestA, latestB), null);
+                        }
+                    }
+                    if((y = b.queue.poll()) != null) {
+                        if(Signal.isFailure(y)) emitFailure(y);
+                        else {
+                            latestB = Signal.item(y);
+                            hasB = true;
+                            if(hasA) cons.accept(combiner.apply(latestA, latestB), null);
+                        }
+                    }
+                    if(result.isDone()) return;
+                } while(x != null || y != null);
+                if((doneA && doneB) || (doneA && !hasA) || (doneB && !hasB)) result.complete(null);
+            }
+        }.subscribe(new AsyncQuery<?>[] {first, second});
+    }
+}
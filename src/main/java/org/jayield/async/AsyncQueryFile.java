@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Base of the sources reading a file through an AsynchronousFileChannel.
+ * There is a single read in flight per subscription and the next read only
+ * starts after the previous bytes have been handed over to downstream and
+ * the subscription has not been cancelled, thus no thread is ever blocked
+ * and memory is bounded by the size of the buffer.
+ */
+public abstract class AsyncQueryFile<T> extends AsyncQuery<T> {
+    private final Path path;
+    private final int bufferSize;
+
+    protected AsyncQueryFile(Path path, int bufferSize) {
+        if(bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive but was " + bufferSize);
+        this.path = path;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns the consumer of the read bytes for a new subscription.
+     */
+    protected abstract Sink sink(BiConsumer<? super T, ? super Throwable> cons);
+
+    /**
+     * Consumer of the bytes read from the file.
+     */
+    protected interface Sink {
+        /**
+         * Consumes the available bytes of the buffer, which is ready for get operations.
+         * Bytes that are not consumed, e.g. an incomplete character, remain in the buffer
+         * and are handed over again, followed by the next read.
+         */
+        void onBytes(ByteBuffer buf);
+
+        /**
+         * Consumes the remaining bytes of the buffer at the end of the file.
+         */
+        void onEnd(ByteBuffer buf);
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException | RuntimeException err) {
+            result.completeExceptionally(err);
+            return result;
+        }
+        new Reader(channel, sink(cons), result).read();
+        return result;
+    }
+
+    private class Reader implements CompletionHandler<Integer, Void> {
+        private final AsynchronousFileChannel channel;
+        private final Sink sink;
+        private final CompletableFuture<Void> result;
+        private final ByteBuffer buffer = DirectBufferPool.acquire(bufferSize);
+        private long position;
+
+        Reader(AsynchronousFileChannel channel, Sink sink, CompletableFuture<Void> result) {
+            this.channel = channel;
+            this.sink = sink;
+            this.result = result;
+        }
+
+        void read() {
+            try {
+                channel.read(buffer, position, null, this);
+            } catch (RuntimeException err) {
+                failed(err, null);
+            }
+        }
+
+        @Override
+        public void completed(Integer n, Void attachment) {
+            if(result.isDone()) { // Cancelled
+                close();
+                return;
+            }
+            try {
+                buffer.flip();
+                if(n < 0) {
+                    sink.onEnd(buffer);
+                    close();
+                    result.complete(null);
+                    return;
+                }
+                position += n;
+                sink.onBytes(buffer);
+                buffer.compact();
+            } catch (Throwable err) {
+                failed(err, null);
+                return;
+            }
+            read();
+        }
+
+        @Override
+        public void failed(Throwable err, Void attachment) {
+            close();
+            result.completeExceptionally(err);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* Proceed. There is nothing else to release. */
+            }
+            DirectBufferPool.release(buffer);
+        }
+    }
+}
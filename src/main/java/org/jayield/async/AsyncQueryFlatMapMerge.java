@@ -21,13 +21,14 @@ import org.jayield.AsyncQuery;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 public class AsyncQueryFlatMapMerge<T, R> extends AsyncQuery<R> {
     private final AsyncQuery<T> upstream;
     private final Function<? super T, ? extends AsyncQuery<? extends R>> mapper;
-
+    private final AtomicInteger inFlight = new AtomicInteger();
 
     public AsyncQueryFlatMapMerge(AsyncQuery<T> upstream, Function<? super T, ? extends AsyncQuery<? extends R>> mapper) {
         this.upstream = upstream;
@@ -43,10 +44,20 @@ public class AsyncQueryFlatMapMerge<T, R> extends AsyncQuery<R> {
                     cons.accept(null, err);
                     return;
                 }
-                cfs.add(mapper
+                inFlight.incrementAndGet();
+                CompletableFuture<Void> inner = mapper
                     .apply(item)
-                    .subscribe(cons::accept));
+                    .subscribe(cons::accept);
+                inner.whenComplete((ignore, ex) -> inFlight.decrementAndGet());
+                cfs.add(inner);
             })
             .thenCompose(ignore -> CompletableFuture.allOf(cfs.toArray(new CompletableFuture[cfs.size()])));
     }
+
+    /**
+     * Number of inner subscriptions not yet completed, across all subscriptions of this query.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
 }
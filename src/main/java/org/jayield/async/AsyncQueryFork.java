@@ -20,14 +20,17 @@ import org.jayield.AsyncQuery;
 import org.jayield.Query;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 
 import static java.util.concurrent.CompletableFuture.runAsync;
 
 public class AsyncQueryFork<U> extends AsyncQuery<U> {
+    private final Executor executor;
     private final U[] data;
 
-    public AsyncQueryFork(U[] data) {
+    public AsyncQueryFork(Executor executor, U[] data) {
+        this.executor = executor;
         this.data = data;
     }
 
@@ -35,6 +38,6 @@ public class AsyncQueryFork<U> extends AsyncQuery<U> {
     public CompletableFuture<Void> subscribe(BiConsumer<? super U, ? super Throwable> cons) {
         return runAsync(() -> Query
             .of(data)
-            .traverse(item -> cons.accept(item, null)));
+            .traverse(item -> cons.accept(item, null)), executor);
     }
 }
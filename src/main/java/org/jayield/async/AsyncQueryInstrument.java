@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+import org.jayield.metrics.StageMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Transparent stage recording the {@link StageMetrics} of the signals passing through it.
+ * Signals arriving after the subscription has finished, e.g. cancelled by downstream,
+ * are counted as dropped and are not forwarded.
+ */
+public class AsyncQueryInstrument<T> extends AsyncQuery<T> {
+
+    private final AsyncQuery<T> upstream;
+    private final StageMetrics metrics;
+
+    public AsyncQueryInstrument(AsyncQuery<T> upstream, StageMetrics metrics) {
+        this.upstream = upstream;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
+        metrics.subscriptions().increment();
+        final long start = System.nanoTime();
+        Subscription subscription = new Subscription();
+        CompletableFuture<Void> cf = upstream.subscribe((item, err) -> {
+            CompletableFuture<Void> curr = subscription.cf;
+            if(curr != null && curr.isDone()) {
+                metrics.dropped().increment();
+                return;
+            }
+            long begin = System.nanoTime();
+            cons.accept(item, err);
+            metrics.callbackNanos().record(System.nanoTime() - begin);
+            if(err != null) metrics.errors().increment();
+            else metrics.emitted().increment();
+        });
+        subscription.cf = cf;
+        cf.whenComplete((ignore, err) -> metrics.completionNanos().record(System.nanoTime() - start));
+        return cf;
+    }
+
+    private static class Subscription {
+        volatile CompletableFuture<Void> cf;
+    }
+}
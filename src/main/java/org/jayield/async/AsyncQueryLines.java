@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.util.function.BiConsumer;
+
+/**
+ * Emits the lines of a file, which are decoded incrementally, thus lines
+ * and characters may span several reads.
+ * A line is terminated by any one of a line feed, a carriage return,
+ * or a carriage return followed immediately by a line feed, like BufferedReader.
+ */
+public class AsyncQueryLines extends AsyncQueryFile<String> {
+    private final Charset charset;
+
+    public AsyncQueryLines(Path path, Charset charset, int bufferSize) {
+        // The buffer must fit the bytes of any incomplete character.
+        super(path, Math.max(bufferSize, 16));
+        this.charset = charset;
+    }
+
+    @Override
+    protected Sink sink(BiConsumer<? super String, ? super Throwable> cons) {
+        return new LineSink(cons, charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    private static class LineSink implements Sink {
+        private final BiConsumer<? super String, ? super Throwable> cons;
+        private final CharsetDecoder decoder;
+        private final StringBuilder line = new StringBuilder();
+        private CharBuffer chars;
+        /**
+         * True if the last char was a carriage return, thus a following line feed is skipped.
+         */
+        private boolean skipLF;
+
+        LineSink(BiConsumer<? super String, ? super Throwable> cons, CharsetDecoder decoder) {
+            this.cons = cons;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void onBytes(ByteBuffer buf) {
+            decode(buf, false);
+        }
+
+        @Override
+        public void onEnd(ByteBuffer buf) {
+            decode(buf, true);
+            decoder.flush(chars);
+            scan();
+            if(line.length() > 0) emit();
+        }
+
+        private void decode(ByteBuffer buf, boolean endOfInput) {
+            if(chars == null) chars = CharBuffer.allocate(Math.max(16, buf.capacity()));
+            CoderResult res;
+            do {
+                res = decoder.decode(buf, chars, endOfInput);
+                scan();
+            } while(res.isOverflow());
+        }
+
+        /**
+         * Splits the decoded chars into lines and clears the chars buffer.
+         */
+        private void scan() {
+            chars.flip();
+            char[] arr = chars.array();
+            int start = chars.arrayOffset() + chars.position();
+            int end = chars.arrayOffset() + chars.limit();
+            for (int i = start; i < end; i++) {
+                char c = arr[i];
+                if(c != '\n' && c != '\r') continue;
+                line.append(arr, start, i - start);
+                start = i + 1;
+                if(c == '\n' && skipLF && line.length() == 0) {
+                    skipLF = false;
+                    continue;
+                }
+                skipLF = c == '\r';
+                emit();
+            }
+            line.append(arr, start, end - start);
+            if(start < end) skipLF = false;
+            chars.clear();
+        }
+
+        private void emit() {
+            String str = line.toString();
+            line.setLength(0);
+            cons.accept(str, null);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+public class AsyncQueryMapAsync<T, R> extends AsyncQuery<R> {
+    private final AsyncQuery<T> upstream;
+    private final Function<? super T, ? extends CompletableFuture<? extends R>> mapper;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    public AsyncQueryMapAsync(
+        AsyncQuery<T> upstream,
+        Function<? super T, ? extends CompletableFuture<? extends R>> mapper,
+        int maxInFlight,
+        boolean ordered)
+    {
+        if(maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive but was " + maxInFlight);
+        this.upstream = upstream;
+        this.mapper = mapper;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super R, ? super Throwable> cons) {
+        Dispatcher dispatcher = new Dispatcher(cons);
+        CompletableFuture<Void> subscription = upstream.subscribe(dispatcher::onNext);
+        subscription.whenComplete((ignore, err) -> dispatcher.onComplete(err));
+        // Propagate cancellation from downstream to upstream.
+        dispatcher.result.whenComplete((ignore, err) -> subscription.complete(null));
+        return dispatcher.result;
+    }
+
+    /**
+     * Holds upstream items in the pending queue until there is a free slot,
+     * i.e. less than maxInFlight calls in flight.
+     * Each slot is the completion callback of one call and it is reused
+     * across calls.
+     * All state except the pending and completed queues is confined to the
+     * drain loop, which the wip counter guarantees to run on a single
+     * thread at a time.
+     */
+    private final class Dispatcher {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final BiConsumer<? super R, ? super Throwable> cons;
+        private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Slot> completed = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        /**
+         * On ordered mode slots is a ring from head to tail with the calls
+         * in flight. Otherwise, it is a stack of free slots with top elements.
+         */
+        private final Slot[] slots;
+        private int head;
+        private int tail;
+        private int top;
+        private int inFlight;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        @SuppressWarnings("unchecked")
+        Dispatcher(BiConsumer<? super R, ? super Throwable> cons) {
+            this.cons = cons;
+            this.slots = (Slot[]) new AsyncQueryMapAsync<?, ?>.Dispatcher.Slot[maxInFlight];
+            for (int i = 0; i < maxInFlight; i++) slots[i] = new Slot();
+            this.top = maxInFlight;
+        }
+
+        void onNext(T item, Throwable err) {
+            pending.offer(Signal.of(item, err));
+            drain();
+        }
+
+        void onComplete(Throwable err) {
+            error = err;
+            done = true;
+            drain();
+        }
+
+        private void drain() {
+            if(wip.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                if(result.isDone()) {
+                    pending.clear(); // Cancelled thus discard
+                } else {
+                    if(ordered) emitOrdered();
+                    else emitUnordered();
+                    launch();
+                    if(done && inFlight == 0 && pending.isEmpty()) {
+                        Throwable err = error;
+                        if(err != null) result.completeExceptionally(err);
+                        else result.complete(null);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while(missed != 0);
+        }
+
+        private void launch() {
+            Object signal;
+            while(inFlight < maxInFlight && (signal = pending.poll()) != null) {
+                Slot slot;
+                if(ordered) {
+                    slot = slots[tail];
+                    tail = (tail + 1) % maxInFlight;
+                } else {
+                    slot = slots[--top];
+                }
+                inFlight++;
+                if(Signal.isFailure(signal)) {
+                    slot.accept(null, Signal.failure(signal));
+                    continue;
+                }
+                try {
+                    CompletableFuture<? extends R> call = mapper.apply(Signal.item(signal));
+                    if(call == null) throw new NullPointerException("mapper returned null");
+                    call.whenComplete(slot);
+                } catch (Throwable err) {
+                    slot.accept(null, err);
+                }
+            }
+        }
+
+        private void emitOrdered() {
+            while(inFlight > 0 && slots[head].done) {
+                Slot slot = slots[head];
+                head = (head + 1) % maxInFlight;
+                inFlight--;
+                emit(slot);
+            }
+        }
+
+        private void emitUnordered() {
+            Slot slot;
+            while((slot = completed.poll()) != null) {
+                inFlight--;
+                emit(slot);
+                slots[top++] = slot;
+            }
+        }
+
+        private void emit(Slot slot) {
+            R value = slot.value;
+            Throwable err = slot.err;
+            slot.value = null;
+            slot.err = null;
+            slot.done = false;
+            if(result.isDone()) return;
+            try {
+                if(err != null) cons.accept(null, unwrap(err));
+                else cons.accept(value, null);
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        }
+
+        private final class Slot implements BiConsumer<R, Throwable> {
+            R value;
+            Throwable err;
+            volatile boolean done;
+
+            @Override
+            public void accept(R value, Throwable err) {
+                this.value = value;
+                this.err = err;
+                this.done = true;
+                if(!ordered) completed.offer(this);
+                drain();
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable err) {
+        return err instanceof CompletionException && err.getCause() != null
+            ? err.getCause()
+            : err;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+public class AsyncQueryMerge<T> extends AsyncQuery<T> {
+    private final AsyncQuery<?>[] queries;
+
+    /**
+     * The queries must emit elements of type T, which is not checked since
+     * generic arrays cannot be created without heap pollution warnings.
+     */
+    public AsyncQueryMerge(AsyncQuery<?>[] queries) {
+        this.queries = queries;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
+        return new MultiSourceDrain<T>(cons, queries.length) {
+            /**
+             * Takes turns between sources, emitting all available signals of each one.
+             */
+            @Override
+            void drainLoop() {
+                boolean finished = true;
+                for (Source src : sources) {
+                    boolean done = src.done;
+                    Object signal;
+                    while((signal = src.queue.poll()) != null) {
+                        if(result.isDone()) return;
+                        Signal.emit(signal, cons);
+                    }
+                    finished &= done;
+                }
+                if(finished) result.complete(null);
+            }
+        }.subscribe(queries);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+public class AsyncQueryObserveOn<T> extends AsyncQuery<T> {
+    private final AsyncQuery<T> upstream;
+    private final Executor executor;
+
+    public AsyncQueryObserveOn(AsyncQuery<T> upstream, Executor executor) {
+        this.upstream = upstream;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
+        Observer<T> observer = new Observer<>(cons, executor);
+        CompletableFuture<Void> subscription = upstream.subscribe(observer::onNext);
+        subscription.whenComplete((ignore, err) -> observer.onComplete(err));
+        // Propagate cancellation from downstream to upstream.
+        observer.result.whenComplete((ignore, err) -> subscription.complete(null));
+        return observer.result;
+    }
+
+    /**
+     * Enqueues signals from upstream and delivers them in order on the executor.
+     * The wip counter guarantees a single drain loop at a time, thus the
+     * downstream consumer is never called concurrently.
+     */
+    private static class Observer<T> {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final BiConsumer<? super T, ? super Throwable> cons;
+        private final Executor executor;
+        private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        Observer(BiConsumer<? super T, ? super Throwable> cons, Executor executor) {
+            this.cons = cons;
+            this.executor = executor;
+        }
+
+        void onNext(T item, Throwable err) {
+            queue.offer(Signal.of(item, err));
+            schedule();
+        }
+
+        void onComplete(Throwable err) {
+            error = err;
+            done = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if(wip.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this::drain);
+            } catch (Throwable err) {
+                result.completeExceptionally(err);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                Object signal;
+                while((signal = queue.poll()) != null) {
+                    if(result.isDone()) continue; // Cancelled thus discard
+                    try {
+                        Signal.emit(signal, cons);
+                    } catch (Throwable err) {
+                        result.completeExceptionally(err);
+                    }
+                }
+                if(done && queue.isEmpty()) {
+                    Throwable err = error;
+                    if(err != null) result.completeExceptionally(err);
+                    else result.complete(null);
+                }
+                missed = wip.addAndGet(-missed);
+            } while(missed != 0);
+        }
+    }
+}
@@ -17,23 +17,30 @@
 package org.jayield.async;
 
 import org.jayield.AsyncQuery;
-import org.jayield.Query;
+import org.jayield.advs.AdvancerArray;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 
-import static java.util.concurrent.CompletableFuture.runAsync;
-
 public class AsyncQueryOf<U> extends AsyncQuery<U> {
+    private final Executor executor;
     private final U[] data;
 
     public AsyncQueryOf(U[] data) {
+        this(Schedulers.common(), data);
+    }
+
+    public AsyncQueryOf(Executor executor, U[] data) {
+        this.executor = executor;
         this.data = data;
     }
 
+    /**
+     * Returns immediately and emits the elements in bursts on the executor.
+     */
     @Override
     public CompletableFuture<Void> subscribe(BiConsumer<? super U, ? super Throwable> cons) {
-        Query.of(data).traverse(item -> cons.accept(item, null));
-        return CompletableFuture.completedFuture(null);
+        return new IteratorEmitter<>(new AdvancerArray<>(data), cons, executor).start();
     }
 }
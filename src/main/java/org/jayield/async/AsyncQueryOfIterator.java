@@ -20,20 +20,27 @@ import org.jayield.AsyncQuery;
 
 import java.util.Iterator;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 
 public class AsyncQueryOfIterator<T> extends AsyncQuery<T> {
+    private final Executor executor;
     private final Iterator<T> iter;
 
     public AsyncQueryOfIterator(Iterator<T> iter) {
+        this(Schedulers.common(), iter);
+    }
+
+    public AsyncQueryOfIterator(Executor executor, Iterator<T> iter) {
+        this.executor = executor;
         this.iter = iter;
     }
 
+    /**
+     * Returns immediately and emits the elements in bursts on the executor.
+     */
     @Override
     public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
-        while(iter.hasNext()) {
-            cons.accept(iter.next(), null);
-        }
-        return CompletableFuture.completedFuture(null);
+        return new IteratorEmitter<>(iter, cons, executor).start();
     }
 }
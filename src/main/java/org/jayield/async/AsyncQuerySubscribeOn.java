@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+public class AsyncQuerySubscribeOn<T> extends AsyncQuery<T> {
+    private final AsyncQuery<T> upstream;
+    private final Executor executor;
+
+    public AsyncQuerySubscribeOn(AsyncQuery<T> upstream, Executor executor) {
+        this.upstream = upstream;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super T, ? super Throwable> cons) {
+        CompletableFuture<Void> cf = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if(cf.isDone()) return; // Cancelled before subscription.
+                try {
+                    CompletableFuture<Void> subscription = upstream.subscribe(cons);
+                    subscription.whenComplete((ignore, err) -> {
+                        if (err != null) cf.completeExceptionally(err);
+                        else cf.complete(null);
+                    });
+                    // Propagate cancellation from downstream to upstream.
+                    cf.whenComplete((ignore, err) -> subscription.complete(null));
+                } catch (Throwable err) {
+                    cf.completeExceptionally(err);
+                }
+            });
+        } catch (Throwable err) {
+            cf.completeExceptionally(err);
+        }
+        return cf;
+    }
+}
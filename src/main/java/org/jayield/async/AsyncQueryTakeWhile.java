@@ -67,6 +67,8 @@ public class AsyncQueryTakeWhile<T> extends AsyncQuery<T> {
                 }
             }
         });
+        // The predicate may have failed before subscribe() has returned.
+        if(finished) subscription.complete(null);
         return subscription;
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+public class AsyncQueryZip<T, U, R> extends AsyncQuery<R> {
+    private final AsyncQuery<T> first;
+    private final AsyncQuery<U> second;
+    private final BiFunction<? super T, ? super U, ? extends R> zipper;
+
+    public AsyncQueryZip(AsyncQuery<T> first, AsyncQuery<U> second, BiFunction<? super T, ? super U, ? extends R> zipper) {
+        this.first = first;
+        this.second = second;
+        this.zipper = zipper;
+    }
+
+    @Override
+    public CompletableFuture<Void> subscribe(BiConsumer<? super R, ? super Throwable> cons) {
+        return new MultiSourceDrain<R>(cons, 2) {
+            /**
+             * Emits a pair while both sources have an element available, thus the queue
+             * of the faster source only buffers the skew between sources.
+             * It completes as soon as one source has finished.
+             */
+            @Override
+            void drainLoop() {
+                Source a = sources[0];
+                Source b = sources[1];
+                while(!result.isDone()) {
+                    boolean doneA = a.done;
+                    boolean doneB = b.done;
+                    Object x = a.queue.peek();
+                    Object y = b.queue.peek();
+                    if(x != null && Signal.isFailure(x)) {
+                        a.queue.poll();
+                        emitFailure(x);
+                        continue;
+                    }
+                    if(y != null && Signal.isFailure(y)) {
+                        b.queue.poll();
+                        emitFailure(y);
+                        continue;
+                    }
+                    if((x == null && doneA) || (y == null && doneB)) {
+                        result.complete(null);
+                        return;
+                    }
+                    if(x == null || y == null) return;
+                    a.queue.poll();
+                    b.queue.poll();
+                    cons.accept(zipper.apply(Signal.item(x), Signal.item(y)), null);
+                }
+            }
+        }.subscribe(new AsyncQuery<?>[] {first, second});
+    }
+}
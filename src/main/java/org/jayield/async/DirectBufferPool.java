@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small pool of direct ByteBuffers, grouped by capacity, shared by the
+ * file sources, which avoids the cost of allocating a direct buffer
+ * per subscription.
+ * It keeps at most MAX_POOLED buffers per capacity and simply drops
+ * the exceeding ones on release.
+ */
+final class DirectBufferPool {
+    static final int MAX_POOLED = 16;
+
+    private static final Map<Integer, Pool> pools = new ConcurrentHashMap<>();
+
+    private DirectBufferPool() {
+    }
+
+    static ByteBuffer acquire(int capacity) {
+        ByteBuffer buf = pool(capacity).buffers.poll();
+        if(buf == null) return ByteBuffer.allocateDirect(capacity);
+        pool(capacity).size.decrementAndGet();
+        return buf;
+    }
+
+    static void release(ByteBuffer buf) {
+        Pool pool = pool(buf.capacity());
+        if(pool.size.incrementAndGet() > MAX_POOLED) {
+            pool.size.decrementAndGet();
+            return;
+        }
+        buf.clear();
+        pool.buffers.offer(buf);
+    }
+
+    private static Pool pool(int capacity) {
+        return pools.computeIfAbsent(capacity, key -> new Pool());
+    }
+
+    private static class Pool {
+        final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Trampolined emission loop of the elements of an Iterator.
+ * Each run emits a bounded burst of elements and then resubmits itself
+ * to the executor, rather than recursing, thus yielding the thread between
+ * bursts and keeping a constant stack depth.
+ * The emission stops as soon as the result is completed, which is how
+ * downstream operators cancel a subscription.
+ */
+final class IteratorEmitter<T> implements Runnable {
+    static final int BURST = 256;
+
+    private final Iterator<? extends T> iter;
+    private final BiConsumer<? super T, ? super Throwable> cons;
+    private final Executor executor;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    IteratorEmitter(Iterator<? extends T> iter, BiConsumer<? super T, ? super Throwable> cons, Executor executor) {
+        this.iter = iter;
+        this.cons = cons;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the first burst and returns immediately.
+     */
+    CompletableFuture<Void> start() {
+        resubmit();
+        return result;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < BURST; i++) {
+                if(result.isDone()) return;
+                if(!iter.hasNext()) {
+                    result.complete(null);
+                    return;
+                }
+                cons.accept(iter.next(), null);
+            }
+        } catch (Throwable err) {
+            result.completeExceptionally(err);
+            return;
+        }
+        resubmit();
+    }
+
+    private void resubmit() {
+        try {
+            executor.execute(this);
+        } catch (Throwable err) {
+            result.completeExceptionally(err);
+        }
+    }
+}
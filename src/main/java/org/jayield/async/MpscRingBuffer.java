@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded array-backed queue for multiple producers and a single consumer.
+ * Each slot has a sequence number telling whether it is free for the producer
+ * of a given position or ready for the consumer, thus producers only
+ * contend on the CAS of the producer index and never allocate.
+ * The array has a power of two length, but producers also check the consumer
+ * index so that it never holds more than the requested capacity.
+ * Null elements are not allowed.
+ */
+final class MpscRingBuffer {
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLong producerIndex = new AtomicLong();
+    /**
+     * Only written by the consumer and read by producers to enforce the capacity.
+     */
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    MpscRingBuffer(int capacity) {
+        if(capacity <= 0) throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+        // At least 2 slots, otherwise the sequence of a ready slot, pos + 1, would
+        // be the same of a free slot for the next position.
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.capacity = capacity;
+        for (int i = 0; i < size; i++) sequences.lazySet(i, i);
+    }
+
+    /**
+     * Returns false if the buffer is full.
+     */
+    boolean offer(Object e) {
+        long pos = producerIndex.get();
+        for (;;) {
+            int idx = (int) pos & mask;
+            long dif = sequences.get(idx) - pos;
+            if(dif == 0) {
+                if(pos - consumerIndex.get() >= capacity) return false;
+                if(producerIndex.compareAndSet(pos, pos + 1)) {
+                    buffer[idx] = e;
+                    // A volatile write, rather than lazySet, so that the following read of the
+                    // parked consumer by the producer cannot be reordered before it.
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+            } else if(dif < 0) {
+                return false;
+            }
+            pos = producerIndex.get();
+        }
+    }
+
+    /**
+     * Returns null if the buffer is empty.
+     */
+    Object poll() {
+        long pos = consumerIndex.get();
+        int idx = (int) pos & mask;
+        if(sequences.get(idx) != pos + 1) return null;
+        Object e = buffer[idx];
+        buffer[idx] = null;
+        sequences.lazySet(idx, pos + mask + 1);
+        consumerIndex.lazySet(pos + 1);
+        return e;
+    }
+
+    boolean isEmpty() {
+        long pos = consumerIndex.get();
+        return sequences.get((int) pos & mask) != pos + 1;
+    }
+}
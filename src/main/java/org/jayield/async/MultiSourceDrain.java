@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import org.jayield.AsyncQuery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Subscription to several sources whose signals are combined by a single
+ * drain loop, implemented by subclasses in drainLoop().
+ * Each source has its own SpscQueue, thus sources emitting from different
+ * threads never contend with each other.
+ * A source may still emit from several threads at once, such as flatMapMerge,
+ * thus the offers of each source are serialized by its own lock, which is
+ * uncontended for sources emitting sequentially.
+ * The wip counter guarantees that the drain loop runs on a single thread at a time
+ * and downstream is never called concurrently.
+ */
+abstract class MultiSourceDrain<R> {
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+    final BiConsumer<? super R, ? super Throwable> cons;
+    final Source[] sources;
+    private final AtomicInteger wip = new AtomicInteger();
+
+    MultiSourceDrain(BiConsumer<? super R, ? super Throwable> cons, int size) {
+        this.cons = cons;
+        this.sources = new Source[size];
+        for (int i = 0; i < size; i++) sources[i] = new Source();
+    }
+
+    /**
+     * Subscribes all sources and returns the resulting future that completes
+     * when drainLoop() decides, or when any source fails.
+     * Completing the result, e.g. due to cancellation, cancels all sources.
+     */
+    CompletableFuture<Void> subscribe(AsyncQuery<?>[] queries) {
+        for (int i = 0; i < queries.length; i++) {
+            Source src = sources[i];
+            src.subscription = queries[i].subscribe((item, err) -> {
+                src.offer(Signal.of(item, err));
+                drain();
+            });
+            src.subscription.whenComplete((ignore, err) -> {
+                if(err != null) result.completeExceptionally(err);
+                src.done = true;
+                drain();
+            });
+        }
+        result.whenComplete((ignore, err) -> {
+            for (Source src : sources) src.subscription.complete(null);
+        });
+        return result;
+    }
+
+    /**
+     * Called by the drain loop, thus never concurrently.
+     * A source is finished when it is done and its queue is empty.
+     * Notice that done must be read before checking the queue.
+     */
+    abstract void drainLoop();
+
+    final void drain() {
+        if(wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            if(!result.isDone()) {
+                try {
+                    drainLoop();
+                } catch (Throwable err) {
+                    result.completeExceptionally(err);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    /**
+     * Emits the error of the given failure signal to downstream.
+     */
+    final void emitFailure(Object signal) {
+        cons.accept(null, Signal.failure(signal));
+    }
+
+    static final class Source {
+        final SpscQueue queue = new SpscQueue();
+        volatile boolean done;
+        CompletableFuture<Void> subscription;
+
+        synchronized void offer(Object signal) {
+            queue.offer(signal);
+        }
+    }
+}
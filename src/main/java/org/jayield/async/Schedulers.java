@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Built-in executors to choose where the work of an AsyncQuery runs,
+ * through subscribeOn(), observeOn() or fork().
+ */
+public final class Schedulers {
+
+    private Schedulers() {
+    }
+
+    /**
+     * The common ForkJoinPool, which is the default choice of fork().
+     */
+    public static Executor common() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * An executor starting a new virtual thread per task, suitable for
+     * blocking per-element work.
+     * On runtimes without virtual threads (before Java 21) it falls back
+     * to a cached pool of daemon platform threads, which still keeps
+     * blocking work away from the common pool.
+     */
+    public static Executor virtual() {
+        return VirtualHolder.EXECUTOR;
+    }
+
+    /**
+     * A single daemon thread shared by all time based operators, such as buffer(),
+     * which only use it to hand their timeouts over to other executors and never
+     * run user code on it.
+     */
+    static ScheduledExecutorService timer() {
+        return TimerHolder.TIMER;
+    }
+
+    static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread th = new Thread(task, prefix + counter.incrementAndGet());
+            th.setDaemon(true);
+            return th;
+        };
+    }
+
+    /**
+     * Lazy initialization holder, thus the executor is only created on first use.
+     */
+    private static class VirtualHolder {
+        static final Executor EXECUTOR = create();
+
+        private static Executor create() {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+                return Executors.newCachedThreadPool(daemonFactory("jayield-virtual-"));
+            }
+        }
+    }
+
+    private static class TimerHolder {
+        static final ScheduledExecutorService TIMER = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, daemonFactory("jayield-timer-"));
+            timer.setRemoveOnCancelPolicy(true); // Most timeouts are cancelled by a flush on size.
+            return timer;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Encoding of the signals (item or error) received by an AsyncQuery consumer
+ * into a single Object that may be stored in non-null queues.
+ * Items are stored as they are, avoiding an allocation per element.
+ */
+final class Signal {
+    private static final Object NULL = new Object();
+
+    private Signal() {
+    }
+
+    static Object of(Object item, Throwable err) {
+        if(err != null) return new Failure(err);
+        return item == null ? NULL : item;
+    }
+
+    static boolean isFailure(Object signal) {
+        return signal instanceof Failure;
+    }
+
+    static Throwable failure(Object signal) {
+        return ((Failure) signal).err;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T item(Object signal) {
+        return signal == NULL ? null : (T) signal;
+    }
+
+    /**
+     * Dispatches the given signal to the consumer.
+     */
+    static <T> void emit(Object signal, BiConsumer<? super T, ? super Throwable> cons) {
+        if(signal instanceof Failure) cons.accept(null, ((Failure) signal).err);
+        else cons.accept(item(signal), null);
+    }
+
+    private static class Failure {
+        final Throwable err;
+
+        Failure(Throwable err) {
+            this.err = err;
+        }
+    }
+}
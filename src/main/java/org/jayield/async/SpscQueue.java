@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unbounded lock-free queue for a single producer and a single consumer.
+ * Several producers must serialize their offers, e.g. through a lock.
+ * Elements are stored in linked chunks of a fixed size, thus a new chunk
+ * is only allocated every CHUNK elements and memory follows the number of
+ * elements waiting in the queue.
+ * Null elements are not allowed.
+ */
+final class SpscQueue {
+    private static final int CHUNK = 64;
+
+    /**
+     * Only accessed by the producer.
+     */
+    private Node producerNode;
+    private int producerIndex;
+    /**
+     * Only accessed by the consumer.
+     */
+    private Node consumerNode;
+    private int consumerIndex;
+
+    SpscQueue() {
+        producerNode = consumerNode = new Node();
+    }
+
+    void offer(Object e) {
+        if(producerIndex == CHUNK) {
+            Node node = new Node();
+            node.items.lazySet(0, e);
+            producerNode.next = node; // Publishes the node with its first element.
+            producerNode = node;
+            producerIndex = 1;
+            return;
+        }
+        producerNode.items.lazySet(producerIndex++, e);
+    }
+
+    /**
+     * Returns null if the queue is empty.
+     */
+    Object peek() {
+        if(consumerIndex == CHUNK) {
+            Node next = consumerNode.next;
+            if(next == null) return null;
+            consumerNode = next;
+            consumerIndex = 0;
+        }
+        return consumerNode.items.get(consumerIndex);
+    }
+
+    /**
+     * Returns null if the queue is empty.
+     */
+    Object poll() {
+        Object e = peek();
+        if(e != null) consumerIndex++;
+        return e;
+    }
+
+    private static final class Node {
+        final AtomicReferenceArray<Object> items = new AtomicReferenceArray<>(CHUNK);
+        volatile Node next;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.async;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates items concurrently into a set of cells, each one with its own
+ * partial result, which are merged on completion, like a LongAdder for
+ * any kind of accumulation.
+ * Items go to the base cell while there is no contention, thus items emitted
+ * sequentially, even from different threads, keep their encounter order.
+ * On contention a thread moves to other cell chosen by its hash.
+ */
+public final class StripedAccumulator<A> {
+    private static final int MAX_CELLS = nextPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+    private final Supplier<? extends A> supplier;
+    private final AtomicReferenceArray<Cell<A>> cells = new AtomicReferenceArray<>(MAX_CELLS);
+
+    /**
+     * @param supplier creates the initial partial result of each cell.
+     */
+    public StripedAccumulator(Supplier<? extends A> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * Replaces the partial result of one cell by the result of the given
+     * function applied to that partial result and the item.
+     */
+    public <T> void accumulate(T item, BiFunction<A, ? super T, ? extends A> fn) {
+        Cell<A> cell = cell(0);
+        if(!cell.tryLock()) {
+            int h = hash(Thread.currentThread());
+            for (;;) {
+                cell = cell(h & (MAX_CELLS - 1));
+                if(cell.tryLock()) break;
+                h = rehash(h);
+                Thread.onSpinWait();
+            }
+        }
+        try {
+            if(!cell.initialized) {
+                cell.value = supplier.get();
+                cell.initialized = true;
+            }
+            cell.value = fn.apply(cell.value, item);
+        } finally {
+            cell.unlock();
+        }
+    }
+
+    /**
+     * Combines the partial results of all cells, by index order, or
+     * returns a new initial result if there were no items.
+     * It must be called only after all accumulate() calls have returned.
+     */
+    public A merge(BinaryOperator<A> combiner) {
+        A result = null;
+        boolean present = false;
+        for (int i = 0; i < MAX_CELLS; i++) {
+            Cell<A> cell = cells.get(i);
+            if(cell == null || !cell.initialized) continue;
+            result = present ? combiner.apply(result, cell.value) : cell.value;
+            present = true;
+        }
+        return present ? result : supplier.get();
+    }
+
+    private Cell<A> cell(int index) {
+        Cell<A> cell = cells.get(index);
+        if(cell != null) return cell;
+        cells.compareAndSet(index, null, new Cell<>());
+        return cells.get(index);
+    }
+
+    private static int hash(Thread th) {
+        int h = (int) th.getId() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int rehash(int h) {
+        // Xorshift, as ThreadLocalRandom probes.
+        h ^= h << 13;
+        h ^= h >>> 17;
+        h ^= h << 5;
+        return h;
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static final class Cell<A> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Cell> BUSY =
+            AtomicIntegerFieldUpdater.newUpdater(Cell.class, "busy");
+        private volatile int busy;
+        A value;
+        boolean initialized;
+
+        boolean tryLock() {
+            return busy == 0 && BUSY.compareAndSet(this, 0, 1);
+        }
+
+        void unlock() {
+            busy = 0;
+        }
+    }
+}
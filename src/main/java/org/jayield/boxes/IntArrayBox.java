@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.boxes;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of int values, which are never boxed.
+ */
+public class IntArrayBox {
+    private int[] values = new int[16];
+    private int length;
+
+    public void add(int value) {
+        if(length == values.length) {
+            values = Arrays.copyOf(values, (int) Math.min(Integer.MAX_VALUE - 8, 2L * length));
+        }
+        values[length++] = value;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The backing array, whose values from index {@link #length()} on are unused.
+     */
+    public int[] array() {
+        return values;
+    }
+
+    /**
+     * A copy of the values added, unless they already fill the backing array.
+     */
+    public int[] toArray() {
+        return length == values.length ? values : Arrays.copyOf(values, length);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of the lifecycle of a subscription of an AsyncQuery terminal operation,
+ * from subscription until completion, failure or cancellation.
+ * It is committed by the thread completing the subscription.
+ */
+@Name("org.jayield.AsyncSubscription")
+@Label("AsyncQuery Subscription")
+@Category("JaYield")
+@Description("Subscription of an asynchronous query by a terminal operation")
+public final class AsyncSubscriptionEvent extends Event {
+    private static final AsyncSubscriptionEvent PROBE = new AsyncSubscriptionEvent();
+
+    @Label("Query")
+    @Description("Class of the last operation of the subscribed query")
+    String query;
+
+    @Label("Elements")
+    long elements;
+
+    @Label("Outcome")
+    String outcome;
+
+    private final transient LongAdder counter = new LongAdder();
+
+    private AsyncSubscriptionEvent() {
+    }
+
+    /**
+     * Returns a started event, or null if this event is disabled.
+     */
+    public static AsyncSubscriptionEvent start(Object query) {
+        if(!PROBE.isEnabled()) return null;
+        AsyncSubscriptionEvent event = new AsyncSubscriptionEvent();
+        event.query = query.getClass().getName();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Counts an element, which may be signaled concurrently by different threads.
+     */
+    public void element() {
+        counter.increment();
+    }
+
+    public void finish(Throwable err) {
+        end();
+        if(shouldCommit()) {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            outcome = cause == null ? "completed" : cause instanceof CancellationException ? "cancelled" : "failed";
+            elements = counter.sum();
+            commit();
+        }
+    }
+}
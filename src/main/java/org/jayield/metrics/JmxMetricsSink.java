@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers each stage in the platform MBeanServer, replacing any previous
+ * stage with the same name.
+ */
+final class JmxMetricsSink implements MetricsSink {
+    static final JmxMetricsSink INSTANCE = new JmxMetricsSink();
+
+    private JmxMetricsSink() {
+    }
+
+    @Override
+    public void register(StageMetrics stage) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("org.jayield:type=AsyncQueryStage,name=" + ObjectName.quote(stage.name()));
+            synchronized (this) {
+                if(server.isRegistered(name)) server.unregisterMBean(name);
+                server.registerMBean(new Bean(stage), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics of stage " + stage.name(), e);
+        }
+    }
+
+    private static class Bean implements StageMetricsMXBean {
+        private final StageMetrics stage;
+
+        Bean(StageMetrics stage) {
+            this.stage = stage;
+        }
+
+        @Override
+        public long getSubscriptions() {
+            return stage.subscriptions().sum();
+        }
+
+        @Override
+        public long getEmitted() {
+            return stage.emitted().sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return stage.errors().sum();
+        }
+
+        @Override
+        public long getDropped() {
+            return stage.dropped().sum();
+        }
+
+        @Override
+        public long getInFlight() {
+            return stage.inFlight();
+        }
+
+        @Override
+        public double getCallbackMeanNanos() {
+            return stage.callbackNanos().mean();
+        }
+
+        @Override
+        public long getCallbackP50Nanos() {
+            return stage.callbackNanos().valueAt(0.5);
+        }
+
+        @Override
+        public long getCallbackP99Nanos() {
+            return stage.callbackNanos().valueAt(0.99);
+        }
+
+        @Override
+        public long getCallbackMaxNanos() {
+            return stage.callbackNanos().max();
+        }
+
+        @Override
+        public double getCompletionMeanNanos() {
+            return stage.completionNanos().mean();
+        }
+
+        @Override
+        public long getCompletionP50Nanos() {
+            return stage.completionNanos().valueAt(0.5);
+        }
+
+        @Override
+        public long getCompletionP99Nanos() {
+            return stage.completionNanos().valueAt(0.99);
+        }
+
+        @Override
+        public long getCompletionMaxNanos() {
+            return stage.completionNanos().max();
+        }
+    }
+}
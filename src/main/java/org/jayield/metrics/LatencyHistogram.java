@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket histogram of non negative values, such as latencies in nanoseconds,
+ * in the style of HdrHistogram.
+ * Values below 2^SUB_BITS have their own bucket and each following power of two
+ * is split into 2^SUB_BITS linear sub-buckets, thus the relative error of any
+ * recorded value is below 1/2^SUB_BITS (about 3%).
+ * All buckets are allocated upfront, thus recording never allocates and it is
+ * safe to record from multiple threads concurrently.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records the given value, or 0 if it is negative.
+     */
+    public void record(long value) {
+        if(value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+        long curr;
+        while(value > (curr = max.get()) && !max.compareAndSet(curr, value)) {
+            /* Retry */
+        }
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value at the given quantile, between 0 and 1, or 0 if empty.
+     * The result is the highest value of its bucket, capped by the maximum
+     * recorded value.
+     */
+    public long valueAt(double quantile) {
+        if(quantile < 0 || quantile > 1) throw new IllegalArgumentException("quantile must be between 0 and 1 but was " + quantile);
+        long n = total.sum();
+        if(n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long acc = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acc += counts.get(i);
+            if(acc >= rank) return Math.min(highestValue(i), max());
+        }
+        return max();
+    }
+
+    static int index(long value) {
+        if(value < SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    static long highestValue(int index) {
+        if(index < SUB_COUNT) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        long lowest = (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jayield.QueryPlan;
+
+/**
+ * JFR event of an operation buffering all elements of a query,
+ * such as {@code sorted}, {@code distinct}, {@code then} or {@code toArray}.
+ * The retained size is a shallow estimate of the buffer, excluding the elements
+ * themselves when these are objects.
+ */
+@Name("org.jayield.QueryMaterialization")
+@Label("Query Materialization")
+@Category("JaYield")
+@Description("Operation buffering the elements of a query pipeline")
+public final class MaterializationEvent extends Event {
+    /**
+     * Estimated bytes of a reference in an array or list.
+     */
+    public static final int REFERENCE_BYTES = 8;
+    /**
+     * Estimated bytes of each entry of a HashSet, excluding the element.
+     */
+    public static final int HASH_ENTRY_BYTES = 48;
+
+    private static final MaterializationEvent PROBE = new MaterializationEvent();
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Pipeline")
+    @Description("Pipeline of the materialized query, if known")
+    String pipeline;
+
+    @Label("Elements")
+    long elements;
+
+    @Label("Retained")
+    @DataAmount
+    long retainedBytes;
+
+    private MaterializationEvent() {
+    }
+
+    /**
+     * Returns a started event, or null if this event is disabled.
+     */
+    public static MaterializationEvent start(String operation) {
+        if(!PROBE.isEnabled()) return null;
+        MaterializationEvent event = new MaterializationEvent();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Finishes and commits the event, if it is not null.
+     * The plan may be null when the pipeline is unknown.
+     */
+    public static void finish(MaterializationEvent event, QueryPlan plan, long elements, int bytesPerElement) {
+        if(event == null) return;
+        event.end();
+        if(event.shouldCommit()) {
+            event.pipeline = plan == null ? null : plan.shape();
+            event.elements = elements;
+            event.retainedBytes = elements * bytesPerElement;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+/**
+ * Destination of the metrics of instrumented stages.
+ * It is notified once per stage, when the stage is instrumented, and it may
+ * read the metrics of that stage at any time afterwards.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+
+    void register(StageMetrics stage);
+
+    /**
+     * The default sink, which exposes each stage as a JMX MXBean named
+     * {@code org.jayield:type=AsyncQueryStage,name=<stage name>}.
+     */
+    static MetricsSink jmx() {
+        return JmxMetricsSink.INSTANCE;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.jayield.QueryPlan;
+
+/**
+ * JFR event of the execution of a terminal operation of a Query.
+ * Its stack trace identifies the terminal operation.
+ */
+@Name("org.jayield.QueryExecution")
+@Label("Query Execution")
+@Category("JaYield")
+@Description("Execution of a terminal operation of a query pipeline")
+public final class QueryExecutionEvent extends Event {
+    private static final QueryExecutionEvent PROBE = new QueryExecutionEvent();
+
+    @Label("Pipeline")
+    String pipeline;
+
+    @Label("Elements")
+    @Description("Elements reaching the terminal operation")
+    long elements;
+
+    private QueryExecutionEvent() {
+    }
+
+    /**
+     * Returns a started event, or null if this event is disabled.
+     */
+    public static QueryExecutionEvent start() {
+        if(!PROBE.isEnabled()) return null;
+        QueryExecutionEvent event = new QueryExecutionEvent();
+        event.begin();
+        return event;
+    }
+
+    public void element() {
+        elements++;
+    }
+
+    public void finish(QueryPlan plan) {
+        end();
+        if(shouldCommit()) {
+            pipeline = plan.shape();
+            commit();
+        }
+    }
+}
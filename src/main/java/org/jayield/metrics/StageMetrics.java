@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of an instrumented AsyncQuery stage, aggregated over all its subscriptions.
+ */
+public final class StageMetrics {
+    private final String name;
+    private final LongAdder subscriptions = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram callbackNanos = new LatencyHistogram();
+    private final LatencyHistogram completionNanos = new LatencyHistogram();
+    private volatile LongSupplier inFlight = () -> 0;
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public LongAdder subscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Items passed to downstream.
+     */
+    public LongAdder emitted() {
+        return emitted;
+    }
+
+    /**
+     * Errors passed to downstream.
+     */
+    public LongAdder errors() {
+        return errors;
+    }
+
+    /**
+     * Signals arriving after the subscription has finished, e.g. due to cancellation,
+     * which are discarded rather than forwarded to downstream.
+     */
+    public LongAdder dropped() {
+        return dropped;
+    }
+
+    /**
+     * Time spent by downstream handling each signal.
+     */
+    public LatencyHistogram callbackNanos() {
+        return callbackNanos;
+    }
+
+    /**
+     * Time from subscription until completion.
+     */
+    public LatencyHistogram completionNanos() {
+        return completionNanos;
+    }
+
+    /**
+     * Inner subscriptions in flight, for stages with inner subscriptions such as flatMapMerge,
+     * or 0 otherwise.
+     */
+    public long inFlight() {
+        return inFlight.getAsLong();
+    }
+
+    public void inFlightGauge(LongSupplier gauge) {
+        this.inFlight = gauge;
+    }
+}
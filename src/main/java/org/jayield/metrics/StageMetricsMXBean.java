@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+/**
+ * Management interface of the metrics of an instrumented stage.
+ * Latencies are in nanoseconds.
+ */
+public interface StageMetricsMXBean {
+    long getSubscriptions();
+
+    long getEmitted();
+
+    long getErrors();
+
+    long getDropped();
+
+    long getInFlight();
+
+    double getCallbackMeanNanos();
+
+    long getCallbackP50Nanos();
+
+    long getCallbackP99Nanos();
+
+    long getCallbackMaxNanos();
+
+    double getCompletionMeanNanos();
+
+    long getCompletionP50Nanos();
+
+    long getCompletionP99Nanos();
+
+    long getCompletionMaxNanos();
+}
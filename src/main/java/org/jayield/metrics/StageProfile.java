@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.jayield.Advancer;
+import org.jayield.advs.AdvancerProfile;
+import org.jayield.primitives.dbl.DoubleAdvancer;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerProfile;
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.advs.IntAdvancerProfile;
+import org.jayield.primitives.lng.LongAdvancer;
+import org.jayield.primitives.lng.advs.LongAdvancerProfile;
+
+/**
+ * Counters of a stage of a profiled Query pipeline, linked to the profile of its upstream stage.
+ * It counts every element leaving the stage and times the first element and then every
+ * {@code sampleEvery} elements.
+ * When the pipeline is traversed, the sampled time is spent downstream of this stage,
+ * whereas when it is iterated, the sampled time is spent upstream, including this stage.
+ * The time of each stage is estimated from the differences between these times.
+ * Like the Query itself, it is not thread safe.
+ */
+public final class StageProfile {
+    private final String operator;
+    private final StageProfile upstream;
+    private final int sampleEvery;
+    private int countdown = 1;
+    private long out;
+    private long samples;
+    private long sampledNanos;
+    private long traversalNanos;
+    private boolean traversed;
+
+    private StageProfile(String operator, StageProfile upstream, int sampleEvery) {
+        this.operator = operator;
+        this.upstream = upstream;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Profile of the first stage of a pipeline.
+     */
+    public static StageProfile source(int sampleEvery) {
+        if(sampleEvery < 1) throw new IllegalArgumentException("sampleEvery must be positive but was " + sampleEvery);
+        return new StageProfile("source", null, sampleEvery);
+    }
+
+    /**
+     * Profile of a new stage downstream of this one.
+     */
+    public StageProfile then(String operator) {
+        return new StageProfile(operator, this, sampleEvery);
+    }
+
+    /**
+     * If upstream is profiled, then returns next wrapped with the profile of a new stage.
+     * Otherwise, returns next.
+     */
+    public static <T> Advancer<T> stage(Advancer<?> upstream, String operator, Advancer<T> next) {
+        return upstream instanceof Profiled
+            ? new AdvancerProfile<>(next, ((Profiled) upstream).profile().then(operator))
+            : next;
+    }
+
+    public static IntAdvancer stage(Advancer<?> upstream, String operator, IntAdvancer next) {
+        return upstream instanceof Profiled
+            ? new IntAdvancerProfile(next, ((Profiled) upstream).profile().then(operator))
+            : next;
+    }
+
+    public static LongAdvancer stage(Advancer<?> upstream, String operator, LongAdvancer next) {
+        return upstream instanceof Profiled
+            ? new LongAdvancerProfile(next, ((Profiled) upstream).profile().then(operator))
+            : next;
+    }
+
+    public static DoubleAdvancer stage(Advancer<?> upstream, String operator, DoubleAdvancer next) {
+        return upstream instanceof Profiled
+            ? new DoubleAdvancerProfile(next, ((Profiled) upstream).profile().then(operator))
+            : next;
+    }
+
+    /**
+     * Returns the report of the given advancer.
+     * @throws IllegalStateException if it is not profiled.
+     */
+    public static String report(Advancer<?> adv) {
+        if(!(adv instanceof Profiled))
+            throw new IllegalStateException("Query is not profiled! Call profiled() before the operations to analyze.");
+        return ((Profiled) adv).profile().report();
+    }
+
+    /**
+     * Returns true if the next element leaving this stage will be timed.
+     */
+    public boolean sampling() {
+        return countdown == 1;
+    }
+
+    /**
+     * Counts an element leaving this stage and returns true if it should be timed.
+     */
+    public boolean emit() {
+        out++;
+        if(--countdown != 0) return false;
+        countdown = sampleEvery;
+        return true;
+    }
+
+    public void sample(long nanos) {
+        samples++;
+        sampledNanos += nanos;
+    }
+
+    public void traversal(long nanos) {
+        traversed = true;
+        traversalNanos += nanos;
+    }
+
+    public String operator() {
+        return operator;
+    }
+
+    public long out() {
+        return out;
+    }
+
+    /**
+     * A table with the elements in and out, the selectivity and the estimated
+     * time of each stage from the source up to this one.
+     */
+    public String report() {
+        List<StageProfile> stages = new ArrayList<>();
+        for (StageProfile s = this; s != null; s = s.upstream) stages.add(s);
+        Collections.reverse(stages);
+        double[] self = new double[stages.size()];
+        double prev = traversed ? stages.get(0).traversalNanos : 0;
+        for (int i = 0; i < self.length; i++) {
+            double curr = stages.get(i).estimatedNanos();
+            self[i] = Math.max(0, traversed ? prev - curr : curr - prev);
+            prev = curr;
+        }
+        double terminal = traversed ? prev : 0;
+        double total = traversed ? stages.get(0).traversalNanos : prev;
+        StringBuilder res = new StringBuilder(String.format(Locale.ROOT,
+            "%-16s %12s %12s %12s %12s %8s%n", "Stage", "In", "Out", "Selectivity", "Time(ms)", "Time(%)"));
+        for (int i = 0; i < self.length; i++) {
+            StageProfile s = stages.get(i);
+            String in = i == 0 ? "-" : String.valueOf(stages.get(i - 1).out);
+            String selectivity = i == 0 || stages.get(i - 1).out == 0
+                ? "-"
+                : String.format(Locale.ROOT, "%.2f%%", 100.0 * s.out / stages.get(i - 1).out);
+            res.append(row(s.operator, in, String.valueOf(s.out), selectivity, self[i], total));
+        }
+        if(traversed) res.append(row("(terminal)", "-", "-", "-", terminal, total));
+        return res.toString();
+    }
+
+    private double estimatedNanos() {
+        return samples == 0 ? 0 : (double) sampledNanos / samples * out;
+    }
+
+    private static String row(String stage, String in, String out, String selectivity, double nanos, double total) {
+        return String.format(Locale.ROOT, "%-16s %12s %12s %12s %12.3f %8.1f%n",
+            stage, in, out, selectivity, nanos / 1e6, total == 0 ? 0 : 100 * nanos / total);
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Sorting of primitive arrays, which chooses among {@link Arrays#sort},
+ * an LSD radix sort and {@link Arrays#parallelSort} by the number of elements.
+ * All of them sort according to the same logic as {@code Arrays.sort}.
+ */
+public final class Sorts {
+    /**
+     * From this number of elements on, the radix sort is used.
+     */
+    static final int RADIX_THRESHOLD = 1 << 12;
+    /**
+     * From this number of elements on, a parallel sort is used, if there is more than one core.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 22;
+
+    private static final int INSERTION_THRESHOLD = 32;
+    private static final int BITS = 8;
+    private static final int RADIX = 1 << BITS;
+    private static final int MASK = RADIX - 1;
+
+    private Sorts() {
+    }
+
+    private static boolean parallel(int length) {
+        return length >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Sorts the elements of a from index from, inclusive, to index to, exclusive.
+     */
+    public static void sort(int[] a, int from, int to) {
+        int length = to - from;
+        if(parallel(length)) Arrays.parallelSort(a, from, to);
+        else if(length >= RADIX_THRESHOLD) radixSort(a, from, to);
+        else Arrays.sort(a, from, to);
+    }
+
+    public static void sort(long[] a, int from, int to) {
+        int length = to - from;
+        if(parallel(length)) Arrays.parallelSort(a, from, to);
+        else if(length >= RADIX_THRESHOLD) radixSort(a, from, to);
+        else Arrays.sort(a, from, to);
+    }
+
+    public static void sort(double[] a, int from, int to) {
+        int length = to - from;
+        if(parallel(length)) Arrays.parallelSort(a, from, to);
+        else if(length >= RADIX_THRESHOLD) radixSort(a, from, to);
+        else Arrays.sort(a, from, to);
+    }
+
+    /**
+     * Stable LSD radix sort, one byte at a time, with the sign bit flipped so that
+     * negative values come first. The counts of all bytes are taken in a single pass
+     * and the bytes with the same value in all elements are skipped.
+     * It takes a buffer with the length of the range.
+     */
+    public static void radixSort(int[] a, int from, int to) {
+        int length = to - from;
+        int[][] counts = new int[Integer.BYTES][RADIX];
+        for (int i = from; i < to; i++) {
+            int key = a[i] ^ Integer.MIN_VALUE;
+            for (int d = 0; d < Integer.BYTES; d++) counts[d][(key >>> (d * BITS)) & MASK]++;
+        }
+        int[] src = a;
+        int[] dst = new int[length];
+        int srcFrom = from;
+        int dstFrom = 0;
+        int first = a[from] ^ Integer.MIN_VALUE;
+        for (int d = 0; d < Integer.BYTES; d++) {
+            int shift = d * BITS;
+            int[] offsets = counts[d];
+            if(offsets[(first >>> shift) & MASK] == length) continue;
+            for (int b = 0, sum = dstFrom; b < RADIX; b++) {
+                int count = offsets[b];
+                offsets[b] = sum;
+                sum += count;
+            }
+            for (int i = srcFrom; i < srcFrom + length; i++) {
+                int item = src[i];
+                dst[offsets[((item ^ Integer.MIN_VALUE) >>> shift) & MASK]++] = item;
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapFrom = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = swapFrom;
+        }
+        if(src != a) System.arraycopy(src, srcFrom, a, from, length);
+    }
+
+    /**
+     * Version of {@link #radixSort(int[], int, int)} for long values.
+     */
+    public static void radixSort(long[] a, int from, int to) {
+        int length = to - from;
+        int[][] counts = new int[Long.BYTES][RADIX];
+        for (int i = from; i < to; i++) {
+            long key = a[i] ^ Long.MIN_VALUE;
+            for (int d = 0; d < Long.BYTES; d++) counts[d][(int) (key >>> (d * BITS)) & MASK]++;
+        }
+        long[] src = a;
+        long[] dst = new long[length];
+        int srcFrom = from;
+        int dstFrom = 0;
+        long first = a[from] ^ Long.MIN_VALUE;
+        for (int d = 0; d < Long.BYTES; d++) {
+            int shift = d * BITS;
+            int[] offsets = counts[d];
+            if(offsets[(int) (first >>> shift) & MASK] == length) continue;
+            for (int b = 0, sum = dstFrom; b < RADIX; b++) {
+                int count = offsets[b];
+                offsets[b] = sum;
+                sum += count;
+            }
+            for (int i = srcFrom; i < srcFrom + length; i++) {
+                long item = src[i];
+                dst[offsets[(int) ((item ^ Long.MIN_VALUE) >>> shift) & MASK]++] = item;
+            }
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapFrom = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = swapFrom;
+        }
+        if(src != a) System.arraycopy(src, srcFrom, a, from, length);
+    }
+
+    /**
+     * Version of {@link #radixSort(int[], int, int)} for double values, whose IEEE-754 bits
+     * are flipped into unsigned keys in the order of {@link Double#compare}: all bits of
+     * negative values and the sign bit of the others. NaN values are collapsed into the
+     * canonical NaN, which is greater than positive infinity.
+     */
+    public static void radixSort(double[] a, int from, int to) {
+        int length = to - from;
+        int[][] counts = new int[Long.BYTES][RADIX];
+        for (int i = from; i < to; i++) {
+            long key = key(a[i]);
+            for (int d = 0; d < Long.BYTES; d++) counts[d][(int) (key >>> (d * BITS)) & MASK]++;
+        }
+        double[] src = a;
+        double[] dst = new double[length];
+        int srcFrom = from;
+        int dstFrom = 0;
+        long first = key(a[from]);
+        for (int d = 0; d < Long.BYTES; d++) {
+            int shift = d * BITS;
+            int[] offsets = counts[d];
+            if(offsets[(int) (first >>> shift) & MASK] == length) continue;
+            for (int b = 0, sum = dstFrom; b < RADIX; b++) {
+                int count = offsets[b];
+                offsets[b] = sum;
+                sum += count;
+            }
+            for (int i = srcFrom; i < srcFrom + length; i++) {
+                double item = src[i];
+                dst[offsets[(int) (key(item) >>> shift) & MASK]++] = item;
+            }
+            double[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapFrom = srcFrom;
+            srcFrom = dstFrom;
+            dstFrom = swapFrom;
+        }
+        if(src != a) System.arraycopy(src, srcFrom, a, from, length);
+    }
+
+    private static long key(double value) {
+        return sortableLong(value) ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns a long whose order is that of the given value according to {@link Double#compare},
+     * by flipping all bits but the sign of the negative values. NaN values are collapsed into
+     * the canonical NaN.
+     */
+    public static long sortableLong(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * The double value of a long returned by {@link #sortableLong(double)}.
+     */
+    public static double sortableDouble(long sortable) {
+        return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the elements at the given quantiles, each one between 0 and 1, of the first
+     * length elements of a, which are the least elements whose rank is at least q * length,
+     * or the minimum for 0. They are found through {@link #select(long[], int, int, int)},
+     * in increasing order, each one in the range above the previous one.
+     */
+    public static long[] quantiles(long[] a, int length, double... qs) {
+        long[] res = new long[qs.length];
+        int from = 0;
+        for (long rank : ranks(length, qs)) {
+            res[(int) rank] = select(a, from, length, (int) (rank >>> 32));
+            from = (int) (rank >>> 32);
+        }
+        return res;
+    }
+
+    /**
+     * Version of {@link #quantiles(long[], int, double...)} for double values,
+     * ordered according to {@link Double#compare}.
+     */
+    public static double[] quantiles(double[] a, int length, double... qs) {
+        double[] res = new double[qs.length];
+        int from = 0;
+        for (long rank : ranks(length, qs)) {
+            res[(int) rank] = select(a, from, length, (int) (rank >>> 32));
+            from = (int) (rank >>> 32);
+        }
+        return res;
+    }
+
+    /**
+     * The zero based ranks of the given quantiles in increasing order, each one in the
+     * high bits of a long with the position of its quantile in the low bits.
+     */
+    private static long[] ranks(int length, double[] qs) {
+        if(length == 0) throw new NoSuchElementException("No quantiles of an empty sequence!");
+        long[] res = new long[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            double q = qs[i];
+            if(!(q >= 0 && q <= 1)) throw new IllegalArgumentException("Illegal quantile: " + q);
+            res[i] = ((long) Math.max(0, (int) Math.ceil(q * length) - 1) << 32) | i;
+        }
+        Arrays.sort(res);
+        return res;
+    }
+
+    /**
+     * Quickselect, with median of three pivots, of the element that would be at index k
+     * if the range from index from, inclusive, to index to, exclusive, was sorted. It leaves
+     * that element at index k, the lesser or equal ones before it and the greater or equal after it.
+     */
+    public static long select(long[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while(hi - lo > INSERTION_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if(a[mid] < a[lo]) swap(a, lo, mid);
+            if(a[hi] < a[lo]) swap(a, lo, hi);
+            if(a[hi] < a[mid]) swap(a, mid, hi);
+            long pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while(i <= j) {
+                while(a[i] < pivot) i++;
+                while(a[j] > pivot) j--;
+                if(i <= j) swap(a, i++, j--);
+            }
+            if(k <= j) hi = j;
+            else if(k >= i) lo = i;
+            else return a[k];
+        }
+        Arrays.sort(a, lo, hi + 1);
+        return a[k];
+    }
+
+    /**
+     * Version of {@link #select(long[], int, int, int)} for double values,
+     * ordered according to {@link Double#compare}.
+     */
+    public static double select(double[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while(hi - lo > INSERTION_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if(Double.compare(a[mid], a[lo]) < 0) swap(a, lo, mid);
+            if(Double.compare(a[hi], a[lo]) < 0) swap(a, lo, hi);
+            if(Double.compare(a[hi], a[mid]) < 0) swap(a, mid, hi);
+            double pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while(i <= j) {
+                while(Double.compare(a[i], pivot) < 0) i++;
+                while(Double.compare(a[j], pivot) > 0) j--;
+                if(i <= j) swap(a, i++, j--);
+            }
+            if(k <= j) hi = j;
+            else if(k >= i) lo = i;
+            else return a[k];
+        }
+        Arrays.sort(a, lo, hi + 1);
+        return a[k];
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    /**
+     * Stable LSD radix sort of the first length keys, which moves the values of index
+     * along with them, such as the positions of the elements the keys were extracted from.
+     */
+    public static void sort(long[] keys, int[] index, int length) {
+        int[][] counts = new int[Long.BYTES][RADIX];
+        for (int i = 0; i < length; i++) {
+            long key = keys[i] ^ Long.MIN_VALUE;
+            for (int d = 0; d < Long.BYTES; d++) counts[d][(int) (key >>> (d * BITS)) & MASK]++;
+        }
+        long[] src = keys;
+        int[] srcIndex = index;
+        long[] dst = new long[length];
+        int[] dstIndex = new int[length];
+        long first = length == 0 ? 0 : keys[0] ^ Long.MIN_VALUE;
+        for (int d = 0; d < Long.BYTES; d++) {
+            int shift = d * BITS;
+            int[] offsets = counts[d];
+            if(offsets[(int) (first >>> shift) & MASK] == length) continue;
+            for (int b = 0, sum = 0; b < RADIX; b++) {
+                int count = offsets[b];
+                offsets[b] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < length; i++) {
+                long item = src[i];
+                int to = offsets[(int) ((item ^ Long.MIN_VALUE) >>> shift) & MASK]++;
+                dst[to] = item;
+                dstIndex[to] = srcIndex[i];
+            }
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+            int[] swapIndex = srcIndex;
+            srcIndex = dstIndex;
+            dstIndex = swapIndex;
+        }
+        if(src != keys) {
+            System.arraycopy(src, 0, keys, 0, length);
+            System.arraycopy(srcIndex, 0, index, 0, length);
+        }
+    }
+
+    /**
+     * Stable merge sort of the first length keys according to the given comparator,
+     * which moves the values of index along with them.
+     */
+    public static <K> void sort(K[] keys, int[] index, int length, Comparator<? super K> comparator) {
+        K[] keysBuffer = keys.clone();
+        int[] indexBuffer = index.clone();
+        mergeSort(keysBuffer, indexBuffer, keys, index, 0, length, comparator);
+    }
+
+    /**
+     * Sorts the range of src into dst, which start with the same content.
+     */
+    private static <K> void mergeSort(
+        K[] src, int[] srcIndex,
+        K[] dst, int[] dstIndex,
+        int from, int to,
+        Comparator<? super K> comparator)
+    {
+        if(to - from <= INSERTION_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                K key = dst[i];
+                int pos = dstIndex[i];
+                int j = i;
+                for (; j > from && comparator.compare(dst[j - 1], key) > 0; j--) {
+                    dst[j] = dst[j - 1];
+                    dstIndex[j] = dstIndex[j - 1];
+                }
+                dst[j] = key;
+                dstIndex[j] = pos;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(dst, dstIndex, src, srcIndex, from, mid, comparator);
+        mergeSort(dst, dstIndex, src, srcIndex, mid, to, comparator);
+        if(comparator.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from);
+            System.arraycopy(srcIndex, from, dstIndex, from, to - from);
+            return;
+        }
+        for (int i = from, l = from, r = mid; i < to; i++) {
+            if(r >= to || l < mid && comparator.compare(src[l], src[r]) <= 0) {
+                dst[i] = src[l];
+                dstIndex[i] = srcIndex[l++];
+            } else {
+                dst[i] = src[r];
+                dstIndex[i] = srcIndex[r++];
+            }
+        }
+    }
+}
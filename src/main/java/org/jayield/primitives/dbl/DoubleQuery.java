@@ -17,7 +17,6 @@
 package org.jayield.primitives.dbl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.DoubleSummaryStatistics;
 import java.util.List;
 import java.util.OptionalDouble;
@@ -33,16 +32,28 @@ import java.util.function.DoubleToLongFunction;
 import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Supplier;
 import java.util.stream.DoubleStream;
 import java.util.stream.StreamSupport;
 
+import org.jayield.PhysicalPlan;
+import org.jayield.PhysicalPlan.Traversal;
 import org.jayield.Query;
+import org.jayield.QueryPlan;
+import org.jayield.QueryPlan.Operator;
+import org.jayield.SortOptions;
 import org.jayield.TraversableFinishError;
 import org.jayield.Yield;
 import org.jayield.boxes.BoolBox;
+import org.jayield.boxes.DoubleArrayBox;
 import org.jayield.boxes.DoubleBox;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.metrics.QueryExecutionEvent;
+import org.jayield.metrics.StageProfile;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerArray;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerChunked;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerConcat;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerDistinct;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerDropWhile;
@@ -54,15 +65,21 @@ import org.jayield.primitives.dbl.advs.DoubleAdvancerLimit;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerMap;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerMapToObj;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerPeek;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerProfile;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerRolling;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerSkip;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerStream;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerTakeWhile;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerThen;
 import org.jayield.primitives.dbl.advs.DoubleAdvancerZip;
+import org.jayield.primitives.dbl.advs.DoubleChunker;
+import org.jayield.primitives.dbl.advs.DoubleRollingAggregate;
 import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntQuery;
 import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongQuery;
+import org.jayield.sketches.KllSketch;
+import org.jayield.spill.DoubleExternalSort;
 
 /**
  * A sequence of primitive double-valued elements supporting sequential
@@ -71,9 +88,15 @@ import org.jayield.primitives.lng.LongQuery;
 public class DoubleQuery {
 
     private final DoubleAdvancer adv;
+    private final QueryPlan plan;
 
     public DoubleQuery(DoubleAdvancer adv) {
+        this(adv, QueryPlan.source(adv.getClass().getSimpleName(), adv.getClass(), QueryPlan.UNKNOWN_SIZE));
+    }
+
+    public DoubleQuery(DoubleAdvancer adv, QueryPlan plan) {
         this.adv = adv;
+        this.plan = plan;
     }
 
     /**
@@ -81,7 +104,9 @@ public class DoubleQuery {
      * from the provided {@link DoubleStream} data.
      */
     public static DoubleQuery fromStream(DoubleStream src) {
-        return new DoubleQuery(new DoubleAdvancerStream(src));
+        return new DoubleQuery(
+            new DoubleAdvancerStream(src),
+            QueryPlan.source("fromStream", DoubleAdvancerStream.class, QueryPlan.UNKNOWN_SIZE));
     }
 
     /**
@@ -91,7 +116,9 @@ public class DoubleQuery {
      * {@code f(f(seed))}, etc.
      */
     public static DoubleQuery iterate(double seed, DoubleUnaryOperator f) {
-        return new DoubleQuery(new DoubleAdvancerIterate(seed, f));
+        return new DoubleQuery(
+            new DoubleAdvancerIterate(seed, f),
+            QueryPlan.source("iterate", DoubleAdvancerIterate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -99,7 +126,9 @@ public class DoubleQuery {
      * where each element is generated by the provided Supplier.
      */
     public static DoubleQuery generate(DoubleSupplier s) {
-        return new DoubleQuery(new DoubleAdvancerGenerate(s));
+        return new DoubleQuery(
+            new DoubleAdvancerGenerate(s),
+            QueryPlan.source("generate", DoubleAdvancerGenerate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -108,7 +137,20 @@ public class DoubleQuery {
      * exception is thrown.
      */
     public final void forEach(DoubleYield yield) {
-        this.traverse(yield);
+        this.execute(yield);
+    }
+
+    /**
+     * Passes the elements of this {@code DoubleQuery} to the consumer in chunks of {@code n} elements,
+     * together with the number of elements in the chunk, which is less than n for the last one.
+     * <p>
+     * All chunks are the same array, allocated once, thus it is only valid during the call
+     * to the consumer and its content from the given length on is undefined.
+     */
+    public final void forEachChunk(int n, ObjIntConsumer<double[]> consumer) {
+        DoubleChunker chunker = new DoubleChunker(n, true, consumer);
+        this.execute(chunker);
+        chunker.flush();
     }
 
     /**
@@ -125,7 +167,7 @@ public class DoubleQuery {
      * the given predicate.
      */
     public DoubleQuery filter(DoublePredicate p) {
-        return new DoubleQuery(new DoubleAdvancerFilter(adv, p));
+        return stage(new DoubleAdvancerFilter(adv, p), plan.then(Operator.FILTER, DoubleAdvancerFilter.class));
     }
 
     /**
@@ -136,7 +178,7 @@ public class DoubleQuery {
      *         DoubleUnaryOperator used to map the elements of this DoubleQuery
      */
     public DoubleQuery map(DoubleUnaryOperator op) {
-        return new DoubleQuery(new DoubleAdvancerMap(adv, op));
+        return stage(new DoubleAdvancerMap(adv, op), plan.then(Operator.MAP, DoubleAdvancerMap.class));
     }
 
     /**
@@ -147,7 +189,9 @@ public class DoubleQuery {
      *         DoubleFunction used to map the elements of this DoubleQuery
      */
     public <U> Query<U> mapToObj(DoubleFunction<? extends U> function) {
-        return new Query<>(new DoubleAdvancerMapToObj<>(adv, function));
+        return new Query<>(
+            StageProfile.stage(adv, "mapToObj", new DoubleAdvancerMapToObj<>(adv, function)),
+            plan.then(Operator.MAP_TO_OBJ, DoubleAdvancerMapToObj.class));
     }
 
     /**
@@ -156,7 +200,9 @@ public class DoubleQuery {
      * the provided mapping function to each element.
      */
     public DoubleQuery flatMap(DoubleFunction<? extends DoubleQuery> function) {
-        return new DoubleQuery(new DoubleAdvancerFlatMap(this, function));
+        return stage(
+            new DoubleAdvancerFlatMap(this, function),
+            plan.then(Operator.FLAT_MAP, DoubleAdvancerFlatMap.class));
     }
 
     /**
@@ -164,30 +210,51 @@ public class DoubleQuery {
      * {@link Object#equals(Object)}) of this query.
      */
     public DoubleQuery distinct() {
-        return new DoubleQuery(new DoubleAdvancerDistinct(adv));
+        return stage(new DoubleAdvancerDistinct(adv, plan), plan.then(Operator.DISTINCT, DoubleAdvancerDistinct.class));
     }
 
     /**
      * Returns a {@code DoubleQuery} consisting of the elements of this {@code DoubleQuery},
-     * sorted according to the same logic as {@code Arrays.sort(double[] a)}.
+     * sorted according to the same logic as {@code Arrays.sort(double[] a)}, without boxing.
+     * Large inputs are sorted through a radix sort, or a parallel sort when there
+     * are several cores, as chosen by {@link Sorts#sort(double[], int, int)}.
      * <p>
      * This is a stateful intermediate operation.
      */
     public DoubleQuery sorted() {
-        double[] state = this.toArray();
-        Arrays.sort(state);
-        return new DoubleQuery(new DoubleAdvancerArray(state));
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        DoubleArrayBox box = new DoubleArrayBox();
+        this.execute(box::add);
+        Sorts.sort(box.array(), 0, box.length());
+        MaterializationEvent.finish(event, plan, box.length(), Double.BYTES);
+        return stage(new DoubleAdvancerArray(box.array(), 0, box.length()), plan.sorted(DoubleAdvancerArray.class, box.length()));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} consisting of the elements of this {@code DoubleQuery},
+     * sorted according to the same logic as {@code Arrays.sort(double[] a)}, through an
+     * external merge sort with the given options, which spills binary runs beyond the
+     * memory budget to disk.
+     * <p>
+     * This is a stateful intermediate operation.
+     */
+    public DoubleQuery sorted(SortOptions options) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        DoubleExternalSort sort = new DoubleExternalSort(options);
+        DoubleAdvancer res = sort.sort(this);
+        MaterializationEvent.finish(event, plan, sort.size(), Double.BYTES);
+        return stage(res, plan.sorted(DoubleExternalSort.class, sort.size()));
     }
 
     /**
      * Returns an array containing the elements of this {@code DoubleQuery}.
      */
     public double[] toArray() {
-        List<Double> list = toList();
-        double[] result = new double[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            result[i] = list.get(i);
-        }
+        MaterializationEvent event = MaterializationEvent.start("toArray");
+        DoubleArrayBox box = new DoubleArrayBox();
+        this.execute(box::add);
+        double[] result = box.toArray();
+        MaterializationEvent.finish(event, plan, result.length, Double.BYTES);
         return result;
     }
 
@@ -196,7 +263,7 @@ public class DoubleQuery {
      */
     public List<Double> toList() {
         ArrayList<Double> result = new ArrayList<>();
-        this.traverse(result::add);
+        this.execute(result::add);
         return result;
     }
 
@@ -206,7 +273,7 @@ public class DoubleQuery {
      * from the resulting {@code DoubleQuery}.
      */
     public DoubleQuery peek(DoubleConsumer action) {
-        return new DoubleQuery(new DoubleAdvancerPeek(adv, action));
+        return stage(new DoubleAdvancerPeek(adv, action), plan.then(Operator.PEEK, DoubleAdvancerPeek.class));
     }
 
     /**
@@ -217,7 +284,7 @@ public class DoubleQuery {
      *         maximum amount of elements to retrieve from this {@code DoubleQuery}
      */
     public DoubleQuery limit(int n) {
-        return new DoubleQuery(new DoubleAdvancerLimit(this, n));
+        return stage(new DoubleAdvancerLimit(this, n), plan.limit(DoubleAdvancerLimit.class, n));
     }
 
     /**
@@ -228,7 +295,67 @@ public class DoubleQuery {
      *         number of elements to discard
      */
     public DoubleQuery skip(int n) {
-        return new DoubleQuery(new DoubleAdvancerSkip(adv, n));
+        return stage(new DoubleAdvancerSkip(adv, n), plan.skip(DoubleAdvancerSkip.class, n));
+    }
+
+    /**
+     * Returns a {@code Query} of arrays with the next {@code n} elements of this {@code DoubleQuery},
+     * except the last one, which has the remaining elements.
+     * Each chunk is a new array.
+     */
+    public Query<double[]> chunked(int n) {
+        return new Query<>(
+            StageProfile.stage(adv, "chunked", new DoubleAdvancerChunked(adv, n)),
+            plan.chunked(DoubleAdvancerChunked.class, n));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} with the sum of each window of {@code n} consecutive
+     * elements of this {@code DoubleQuery}, one for each element from the n-th on.
+     * The sum is kept in O(1) per element from a ring buffer, with Kahan compensation.
+     */
+    public DoubleQuery rollingSum(int n) {
+        return rolling("rollingSum", n, DoubleRollingAggregate.sum(n));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} with the arithmetic mean of each window of {@code n}
+     * consecutive elements of this {@code DoubleQuery}, one for each element from the n-th on.
+     */
+    public DoubleQuery rollingMean(int n) {
+        return rolling("rollingMean", n, DoubleRollingAggregate.mean(n));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} with the maximum of each window of {@code n} consecutive
+     * elements of this {@code DoubleQuery}, according to {@link Double#compare}, one for each
+     * element from the n-th on. It keeps a monotonic deque taking O(1) amortized time per element.
+     */
+    public DoubleQuery rollingMax(int n) {
+        return rolling("rollingMax", n, DoubleRollingAggregate.max(n));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} with the minimum of each window of {@code n} consecutive
+     * elements of this {@code DoubleQuery}, according to {@link Double#compare}, one for each
+     * element from the n-th on. It keeps a monotonic deque taking O(1) amortized time per element.
+     */
+    public DoubleQuery rollingMin(int n) {
+        return rolling("rollingMin", n, DoubleRollingAggregate.min(n));
+    }
+
+    /**
+     * Returns a {@code DoubleQuery} with the exponentially weighted moving average of the
+     * elements of this {@code DoubleQuery} up to each one, starting with the first element
+     * and then weighting each element by alpha, in ]0, 1], and the previous average by 1 - alpha.
+     */
+    public DoubleQuery ewma(double alpha) {
+        DoubleRollingAggregate aggregate = DoubleRollingAggregate.ewma(alpha);
+        return stage(new DoubleAdvancerRolling(adv, aggregate), plan.then(Operator.EWMA, DoubleAdvancerRolling.class));
+    }
+
+    private DoubleQuery rolling(String operator, int n, DoubleRollingAggregate aggregate) {
+        return stage(new DoubleAdvancerRolling(adv, aggregate), plan.window(operator, DoubleAdvancerRolling.class, n, 1));
     }
 
     /**
@@ -259,7 +386,7 @@ public class DoubleQuery {
     public double reduce(double identity, DoubleBinaryOperator accumulator) {
         DoubleBox result = new DoubleBox();
         result.setValue(identity);
-        this.traverse(elem -> result.setValue(accumulator.applyAsDouble(result.getValue(), elem)));
+        this.execute(elem -> result.setValue(accumulator.applyAsDouble(result.getValue(), elem)));
         return result.getValue();
     }
 
@@ -275,7 +402,7 @@ public class DoubleQuery {
      */
     public OptionalDouble min() {
         DoubleBox b = new DoubleBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e < b.getValue()) {
@@ -290,7 +417,7 @@ public class DoubleQuery {
      */
     public OptionalDouble max() {
         DoubleBox b = new DoubleBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e > b.getValue()) {
@@ -300,6 +427,44 @@ public class DoubleQuery {
         return b.isPresent() ? OptionalDouble.of(b.getValue()) : OptionalDouble.empty();
     }
 
+    /**
+     * Returns a {@link KllSketch} with parameter k of the elements of this {@code DoubleQuery},
+     * which keeps about 3k of them, may be merged with the sketches of other queries
+     * with the same k and may be queried for any quantiles.
+     */
+    public final KllSketch quantileSketch(int k) {
+        KllSketch sketch = new KllSketch(k);
+        this.execute(sketch::add);
+        return sketch;
+    }
+
+    /**
+     * Returns estimates of the given quantiles, each one between 0 and 1, of the elements of
+     * this {@code DoubleQuery}, ignoring NaN, through a {@link KllSketch} with the default k,
+     * whose normalized rank error is about 1.33%.
+     *
+     * @throws java.util.NoSuchElementException if there are no elements
+     */
+    public final double[] quantiles(double... qs) {
+        return quantileSketch(KllSketch.DEFAULT_K).quantiles(qs);
+    }
+
+    /**
+     * Returns the given quantiles, each one between 0 and 1, of the elements of this
+     * {@code DoubleQuery}, according to {@link Double#compare}, which are the least elements
+     * whose rank is at least q * count(). The elements are buffered without boxing and each
+     * quantile is found through quickselect, in linear expected time, instead of a full sort.
+     *
+     * @throws java.util.NoSuchElementException if there are no elements
+     */
+    public final double[] exactQuantiles(double... qs) {
+        MaterializationEvent event = MaterializationEvent.start("exactQuantiles");
+        DoubleArrayBox box = new DoubleArrayBox();
+        this.execute(box::add);
+        MaterializationEvent.finish(event, plan, box.length(), Double.BYTES);
+        return Sorts.quantiles(box.array(), box.length(), qs);
+    }
+
     /**
      * Returns the count of elements in this {@code DoubleQuery}.
      */
@@ -313,7 +478,7 @@ public class DoubleQuery {
             }
         }
         Counter c = new Counter();
-        this.traverse(c);
+        this.execute(c);
         return c.n;
     }
 
@@ -347,7 +512,9 @@ public class DoubleQuery {
      * are the specified values in data parameter.
      */
     public static DoubleQuery of(double... data) {
-        return new DoubleQuery(new DoubleAdvancerArray(data));
+        return new DoubleQuery(
+            new DoubleAdvancerArray(data),
+            QueryPlan.source("of", DoubleAdvancerArray.class, data.length));
     }
 
     /**
@@ -367,7 +534,7 @@ public class DoubleQuery {
      */
     public <R> R collect(Supplier<R> supplier, ObjDoubleConsumer<R> accumulator) {
         R result = supplier.get();
-        this.traverse(elem -> accumulator.accept(result, elem));
+        this.execute(elem -> accumulator.accept(result, elem));
         return result;
     }
 
@@ -382,7 +549,7 @@ public class DoubleQuery {
      */
     public boolean allMatch(DoublePredicate p) {
         BoolBox succeed = new BoolBox(true);
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (!p.test(item)) {
                 succeed.set(false);
                 Yield.bye();
@@ -428,7 +595,7 @@ public class DoubleQuery {
      */
     public boolean anyMatch(DoublePredicate p) {
         BoolBox found = new BoolBox();
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (p.test(item)) {
                 found.set();
                 Yield.bye();
@@ -451,7 +618,7 @@ public class DoubleQuery {
      */
     public OptionalDouble findFirst() {
         DoubleBox box = new DoubleBox();
-        this.shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             box.turnPresent(item);
             Yield.bye();
         });
@@ -477,7 +644,9 @@ public class DoubleQuery {
      * @param function DoubleToLongFunction used to map the elements of this DoubleQuery
      */
     public LongQuery mapToLong(DoubleToLongFunction function) {
-        return new LongQuery(LongAdvancer.from(adv, function));
+        return new LongQuery(
+            StageProfile.stage(adv, "mapToLong", LongAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_LONG, LongAdvancer.class));
     }
 
     /**
@@ -497,7 +666,9 @@ public class DoubleQuery {
      * @param function DoubleToIntFunction used to map the elements of this DoubleQuery
      */
     public IntQuery mapToInt(DoubleToIntFunction function) {
-        return new IntQuery(IntAdvancer.from(adv, function));
+        return new IntQuery(
+            StageProfile.stage(adv, "mapToInt", IntAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_INT, IntAdvancer.class));
     }
 
     /**
@@ -505,7 +676,7 @@ public class DoubleQuery {
      * each boxed to an Double.
      */
     public Query<Double> boxed() {
-        return new Query<>(adv);
+        return new Query<>(adv, plan.then(Operator.BOXED, DoubleAdvancer.class));
     }
 
     public DoubleStream toStream() {
@@ -534,7 +705,7 @@ public class DoubleQuery {
      * {@code DoubleTraverser} object that is encapsulated in the resulting {@code DoubleQuery}.
      */
     public final DoubleQuery then(Function<DoubleQuery, DoubleTraverser> next) {
-        return new DoubleQuery(new DoubleAdvancerThen(this, next));
+        return stage(new DoubleAdvancerThen(this, next, plan), plan.then(Operator.THEN, DoubleAdvancerThen.class));
     }
 
     /**
@@ -542,7 +713,9 @@ public class DoubleQuery {
      * this {@code DoubleQuery} that match the given predicate.
      */
     public final DoubleQuery takeWhile(DoublePredicate predicate) {
-        return new DoubleQuery(new DoubleAdvancerTakeWhile(this, predicate));
+        return stage(
+            new DoubleAdvancerTakeWhile(this, predicate),
+            plan.then(Operator.TAKE_WHILE, DoubleAdvancerTakeWhile.class));
     }
 
     /**
@@ -551,7 +724,9 @@ public class DoubleQuery {
      * elements of the other {@code Query}.
      */
     public final DoubleQuery concat(DoubleQuery other) {
-        return new DoubleQuery(new DoubleAdvancerConcat(this, other));
+        return stage(
+            new DoubleAdvancerConcat(this, other),
+            plan.then(Operator.CONCAT, DoubleAdvancerConcat.class, other.plan));
     }
 
     /**
@@ -559,7 +734,9 @@ public class DoubleQuery {
      * after discarding the first sequence of elements that match the given Predicate.
      */
     public final DoubleQuery dropWhile(DoublePredicate predicate) {
-        return new DoubleQuery(new DoubleAdvancerDropWhile(this, predicate));
+        return stage(
+            new DoubleAdvancerDropWhile(this, predicate),
+            plan.then(Operator.DROP_WHILE, DoubleAdvancerDropWhile.class));
     }
 
     /**
@@ -567,6 +744,95 @@ public class DoubleQuery {
      * sequences, producing a sequence of the results.
      */
     public final DoubleQuery zip(DoubleQuery other, DoubleBinaryOperator zipper) {
-        return new DoubleQuery(new DoubleAdvancerZip(this.adv, other.adv, zipper));
+        return stage(
+            new DoubleAdvancerZip(this.adv, other.adv, zipper),
+            plan.then(Operator.ZIP, DoubleAdvancerZip.class, other.plan));
+    }
+
+    /**
+     * Returns the physical plan of this {@code DoubleQuery} when it is consumed by a
+     * terminal operation, showing the advancer of each operation, whether it
+     * is pushed, pulled or buffered, its known size and characteristics and
+     * which operations materialize their input.
+     */
+    public PhysicalPlan explain() {
+        return plan.explain(Traversal.PUSH);
+    }
+
+    /**
+     * Returns an equivalent {@code DoubleQuery} that profiles each following operation,
+     * counting the elements leaving each stage and timing one element every 64.
+     * After a terminal operation, {@link #explainAnalyze()} reports the selectivity
+     * and the estimated time of each stage.
+     */
+    public DoubleQuery profiled() {
+        return profiled(64);
+    }
+
+    /**
+     * Returns an equivalent {@code DoubleQuery} that profiles each following operation,
+     * timing one element every {@code sampleEvery}.
+     *
+     * @see #profiled()
+     */
+    public DoubleQuery profiled(int sampleEvery) {
+        return new DoubleQuery(new DoubleAdvancerProfile(adv, StageProfile.source(sampleEvery)), plan);
+    }
+
+    /**
+     * Returns a report with the elements in and out, the selectivity and the
+     * estimated time of each stage of this profiled {@code DoubleQuery}, after it
+     * has been consumed.
+     *
+     * @throws IllegalStateException if this query is not profiled.
+     */
+    public String explainAnalyze() {
+        return StageProfile.report(adv);
+    }
+
+    /**
+     * Returns a query with the given advancer as the next stage of this pipeline.
+     */
+    private DoubleQuery stage(DoubleAdvancer next, QueryPlan nextPlan) {
+        return new DoubleQuery(StageProfile.stage(adv, nextPlan.operator(), next), nextPlan);
+    }
+
+    /**
+     * Traverses this query on behalf of a terminal operation, recording
+     * a {@link QueryExecutionEvent} if enabled.
+     */
+    private void execute(DoubleYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.traverse(yield);
+            return;
+        }
+        try {
+            this.traverse(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
+    }
+
+    /**
+     * Short circuit version of {@link #execute}.
+     */
+    private void executeShortCircuit(DoubleYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.shortCircuit(yield);
+            return;
+        }
+        try {
+            this.shortCircuit(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
     }
 }
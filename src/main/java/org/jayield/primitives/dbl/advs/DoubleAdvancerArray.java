@@ -23,11 +23,20 @@ import org.jayield.primitives.dbl.DoubleYield;
 
 public class DoubleAdvancerArray implements DoubleAdvancer {
     private final double[] data;
+    private final int end;
     private int current;
 
     public DoubleAdvancerArray(double... data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Advancer of the elements of data from index from, inclusive, to index to, exclusive.
+     */
+    public DoubleAdvancerArray(double[] data, int from, int to) {
         this.data = data;
-        this.current = 0;
+        this.current = from;
+        this.end = to;
     }
 
 
@@ -40,7 +49,7 @@ public class DoubleAdvancerArray implements DoubleAdvancer {
 
     @Override
     public boolean hasNext() {
-        return current < data.length;
+        return current < end;
     }
 
     /**
@@ -51,7 +60,7 @@ public class DoubleAdvancerArray implements DoubleAdvancer {
      */
     @Override
     public void traverse(DoubleYield yield) {
-        for (int i = current; i < data.length; i++) {
+        for (int i = current; i < end; i++) {
             yield.ret(data[i]);
         }
     }
@@ -18,15 +18,21 @@ package org.jayield.primitives.dbl.advs;
 
 import java.util.HashSet;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.dbl.DoubleAdvancer;
 import org.jayield.primitives.dbl.DoubleYield;
 
 public class DoubleAdvancerDistinct extends AbstractDoubleAdvancer {
     final HashSet<Double> mem = new HashSet<>();
+    private MaterializationEvent event;
+    private boolean started;
     private final DoubleAdvancer upstream;
+    private final QueryPlan plan;
 
-    public DoubleAdvancerDistinct(DoubleAdvancer adv) {
+    public DoubleAdvancerDistinct(DoubleAdvancer adv, QueryPlan plan) {
         this.upstream = adv;
+        this.plan = plan;
     }
 
     /**
@@ -34,21 +40,42 @@ public class DoubleAdvancerDistinct extends AbstractDoubleAdvancer {
      * signaling it has finished.
      */
     public boolean move() {
+        startEvent();
         while (upstream.hasNext()) {
             currDouble = upstream.nextDouble();
             if (mem.add(currDouble)) {
                 return true;
             }
         }
+        finishEvent();
         return false;
     }
 
     @Override
     public void traverse(DoubleYield yield) {
-        upstream.traverse(item -> {
-            if (mem.add(item)) {
-                yield.ret(item);
-            }
-        });
+        startEvent();
+        try {
+            upstream.traverse(item -> {
+                if (mem.add(item)) {
+                    yield.ret(item);
+                }
+            });
+        } finally {
+            finishEvent();
+        }
+    }
+
+    /**
+     * Starts the event of this materialization, on the first move or traversal.
+     */
+    private void startEvent() {
+        if(started) return;
+        started = true;
+        event = MaterializationEvent.start("distinct");
+    }
+
+    private void finishEvent() {
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.HASH_ENTRY_BYTES);
+        event = null;
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.dbl.advs;
+
+import org.jayield.primitives.dbl.DoubleAdvancer;
+import org.jayield.primitives.dbl.DoubleYield;
+
+/**
+ * K-way merge of advancers that are already sorted in ascending order, according
+ * to {@link Double#compare}, through a binary heap with the index of each advancer
+ * that has elements.
+ */
+public class DoubleAdvancerMergeSorted extends AbstractDoubleAdvancer {
+    private final DoubleAdvancer[] sources;
+    private final double[] heads;
+    private final int[] heap;
+    private int size = -1;
+
+    public DoubleAdvancerMergeSorted(DoubleAdvancer[] sources) {
+        this.sources = sources;
+        this.heads = new double[sources.length];
+        this.heap = new int[sources.length];
+    }
+
+    private boolean less(int a, int b) {
+        int res = Double.compare(heads[a], heads[b]);
+        return res < 0 || (res == 0 && a < b);
+    }
+
+    private void siftDown(int pos) {
+        int src = heap[pos];
+        for (int child = 2 * pos + 1; child < size; child = 2 * pos + 1) {
+            if(child + 1 < size && less(heap[child + 1], heap[child])) child++;
+            if(!less(heap[child], src)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = src;
+    }
+
+    private void init() {
+        size = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if(sources[i].hasNext()) {
+                heads[i] = sources[i].nextDouble();
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        if(size < 0) init();
+        if(size == 0) return false;
+        int src = heap[0];
+        currDouble = heads[src];
+        if(sources[src].hasNext()) {
+            heads[src] = sources[src].nextDouble();
+        } else {
+            heap[0] = heap[--size];
+        }
+        if(size > 0) siftDown(0);
+        return true;
+    }
+
+    @Override
+    public void traverse(DoubleYield yield) {
+        while(hasNext()) yield.ret(nextDouble());
+    }
+}
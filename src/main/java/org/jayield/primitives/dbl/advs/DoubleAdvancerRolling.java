@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.dbl.advs;
+
+import org.jayield.primitives.dbl.DoubleAdvancer;
+import org.jayield.primitives.dbl.DoubleYield;
+
+/**
+ * Advancer of the results of the given aggregate over the upstream elements,
+ * whenever the aggregate has one.
+ */
+public class DoubleAdvancerRolling extends AbstractDoubleAdvancer {
+    private final DoubleAdvancer upstream;
+    private final DoubleRollingAggregate aggregate;
+
+    public DoubleAdvancerRolling(DoubleAdvancer upstream, DoubleRollingAggregate aggregate) {
+        this.upstream = upstream;
+        this.aggregate = aggregate;
+    }
+
+    @Override
+    protected boolean move() {
+        while(upstream.hasNext()) {
+            if(aggregate.add(upstream.nextDouble())) {
+                currDouble = aggregate.result();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void traverse(DoubleYield yield) {
+        upstream.traverse(item -> {
+            if(aggregate.add(item)) yield.ret(aggregate.result());
+        });
+    }
+}
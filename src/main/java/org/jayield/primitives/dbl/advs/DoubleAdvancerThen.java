@@ -19,6 +19,8 @@ package org.jayield.primitives.dbl.advs;
 import java.util.ArrayList;
 import java.util.function.Function;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.dbl.DoubleAdvancer;
 import org.jayield.primitives.dbl.DoubleIterator;
 import org.jayield.primitives.dbl.DoubleQuery;
@@ -28,12 +30,14 @@ import org.jayield.primitives.dbl.DoubleYield;
 public class DoubleAdvancerThen implements DoubleAdvancer {
     private DoubleQuery upstream;
     private Function<DoubleQuery, DoubleTraverser> next;
+    private final QueryPlan plan;
     private DoubleIterator curr;
     private boolean inMem = false;
 
-    public DoubleAdvancerThen(DoubleQuery upstream, Function<DoubleQuery, DoubleTraverser> next) {
+    public DoubleAdvancerThen(DoubleQuery upstream, Function<DoubleQuery, DoubleTraverser> next, QueryPlan plan) {
         this.upstream = upstream;
         this.next = next;
+        this.plan = plan;
     }
 
     @Override
@@ -45,8 +49,10 @@ public class DoubleAdvancerThen implements DoubleAdvancer {
         if (inMem) {
             return curr;
         }
+        MaterializationEvent event = MaterializationEvent.start("then");
         ArrayList<Double> mem = new ArrayList<>();
         next.apply(upstream).traverse(mem::add);
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.REFERENCE_BYTES);
         inMem = true;
         curr = DoubleIterator.from(mem.iterator());
         return curr;
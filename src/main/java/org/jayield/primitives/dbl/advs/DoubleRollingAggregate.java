@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.dbl.advs;
+
+/**
+ * State of an aggregate over the last elements of a sequence of double values,
+ * which takes O(1) amortized time per element and never boxes.
+ */
+public interface DoubleRollingAggregate {
+    /**
+     * Adds the next element and returns true if there is a result for the elements added so far.
+     */
+    boolean add(double item);
+
+    /**
+     * The result for the elements added so far.
+     */
+    double result();
+
+    /**
+     * Sum of the last n elements, compensated for the rounding errors of the additions
+     * and subtractions of the elements entering and leaving the window.
+     */
+    static DoubleRollingAggregate sum(int n) {
+        return new DoubleRollingAggregates.Sum(n);
+    }
+
+    /**
+     * Arithmetic mean of the last n elements.
+     */
+    static DoubleRollingAggregate mean(int n) {
+        DoubleRollingAggregates.Sum sum = new DoubleRollingAggregates.Sum(n);
+        return new DoubleRollingAggregate() {
+            @Override
+            public boolean add(double item) {
+                return sum.add(item);
+            }
+
+            @Override
+            public double result() {
+                return sum.result() / n;
+            }
+        };
+    }
+
+    /**
+     * Maximum of the last n elements according to {@link Double#compare}.
+     */
+    static DoubleRollingAggregate max(int n) {
+        return new DoubleRollingAggregates.Extreme(n, 1);
+    }
+
+    /**
+     * Minimum of the last n elements according to {@link Double#compare}.
+     */
+    static DoubleRollingAggregate min(int n) {
+        return new DoubleRollingAggregates.Extreme(n, -1);
+    }
+
+    /**
+     * Exponentially weighted moving average, starting with the first element and then
+     * weighting each element by alpha and the previous average by 1 - alpha.
+     */
+    static DoubleRollingAggregate ewma(double alpha) {
+        if(!(alpha > 0 && alpha <= 1)) throw new IllegalArgumentException("Illegal smoothing factor: " + alpha);
+        return new DoubleRollingAggregate() {
+            private boolean started;
+            private double average;
+
+            @Override
+            public boolean add(double item) {
+                average = started ? average + alpha * (item - average) : item;
+                started = true;
+                return true;
+            }
+
+            @Override
+            public double result() {
+                return average;
+            }
+        };
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.dbl.advs;
+
+/**
+ * Ring buffer based implementations of {@link DoubleRollingAggregate}.
+ */
+final class DoubleRollingAggregates {
+    private DoubleRollingAggregates() {
+    }
+
+    static int checkWindow(int n) {
+        if(n <= 0) throw new IllegalArgumentException("Illegal window size: " + n);
+        return n;
+    }
+
+    /**
+     * Running sum of a ring buffer with the last n elements, with Kahan compensation.
+     */
+    static final class Sum implements DoubleRollingAggregate {
+        private final double[] ring;
+        private int count;
+        private int next;
+        private double sum;
+        private double compensation;
+
+        Sum(int n) {
+            this.ring = new double[checkWindow(n)];
+        }
+
+        @Override
+        public boolean add(double item) {
+            double evicted = ring[next];
+            ring[next] = item;
+            next = next + 1 == ring.length ? 0 : next + 1;
+            if(count < ring.length) count++;
+            else accumulate(-evicted);
+            accumulate(item);
+            return count == ring.length;
+        }
+
+        private void accumulate(double value) {
+            double y = value - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+
+        @Override
+        public double result() {
+            return sum;
+        }
+    }
+
+    /**
+     * Maximum, or minimum if the sign is negative, of the last n elements, through a
+     * monotonic deque kept in ring buffers with the candidate values and their positions.
+     * Each element is pushed and removed once.
+     */
+    static final class Extreme implements DoubleRollingAggregate {
+        private final double[] values;
+        private final long[] positions;
+        private final int sign;
+        private int head;
+        private int length;
+        private long position;
+
+        Extreme(int n, int sign) {
+            this.values = new double[checkWindow(n)];
+            this.positions = new long[n];
+            this.sign = sign;
+        }
+
+        @Override
+        public boolean add(double item) {
+            int n = values.length;
+            while(length > 0 && sign * Double.compare(values[slot(length - 1)], item) <= 0) length--;
+            if(length > 0 && positions[head] <= position - n) {
+                head = slot(1);
+                length--;
+            }
+            int tail = slot(length++);
+            values[tail] = item;
+            positions[tail] = position++;
+            return position >= n;
+        }
+
+        private int slot(int offset) {
+            int i = head + offset;
+            return i < values.length ? i : i - values.length;
+        }
+
+        @Override
+        public double result() {
+            return values[head];
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr;
+
+import java.util.Arrays;
+
+import org.jayield.tables.IntIndexTable;
+
+/**
+ * Frequencies of the int values within a range [min, max].
+ * Small ranges are counted in a dense array indexed by value - min.
+ * Larger ranges start counting in a hash table, which is replaced by the
+ * dense array when the number of distinct values makes it the smaller one,
+ * unless the range exceeds {@link #MAX_DENSE_RANGE}.
+ * Values outside the range are not counted, but their number is given by {@link #outliers()}.
+ */
+public final class IntHistogram {
+    /**
+     * Ranges up to this size are always counted in a dense array.
+     */
+    static final int DENSE_RANGE = 1 << 16;
+    /**
+     * Ranges beyond this size are always counted in a hash table, as their dense
+     * array would take more than 128 MB, or exceed the maximum array length.
+     */
+    static final int MAX_DENSE_RANGE = 1 << 24;
+    /**
+     * A hash table entry takes about this times the memory of a dense counter.
+     */
+    private static final int SPARSE_COST = 4;
+
+    private final int min;
+    private final int max;
+    private long[] dense;
+    private IntIndexTable index;
+    private long[] sparse;
+    private long total;
+    private long outliers;
+
+    IntHistogram(int min, int max) {
+        if(min > max) {
+            throw new IllegalArgumentException("Empty range [" + min + ", " + max + "]");
+        }
+        this.min = min;
+        this.max = max;
+        if(range() <= DENSE_RANGE) {
+            dense = new long[(int) range()];
+        } else {
+            index = new IntIndexTable();
+            sparse = new long[16];
+        }
+    }
+
+    private long range() {
+        return (long) max - min + 1;
+    }
+
+    void add(int value) {
+        if(value < min || value > max) {
+            outliers++;
+            return;
+        }
+        total++;
+        if(dense != null) {
+            dense[value - min]++;
+            return;
+        }
+        int id = index.add(value);
+        if(id == sparse.length) {
+            if(range() <= MAX_DENSE_RANGE && (long) id * SPARSE_COST >= range()) {
+                densify();
+                dense[value - min]++;
+                return;
+            }
+            sparse = Arrays.copyOf(sparse, id * 2);
+        }
+        sparse[id]++;
+    }
+
+    /**
+     * Moves the counts to a dense array. The last key added to the index
+     * may have no counter yet, which is why only sparse.length ids are moved.
+     */
+    private void densify() {
+        dense = new long[(int) range()];
+        for (int id = 0; id < Math.min(index.size(), sparse.length); id++) {
+            dense[index.key(id) - min] = sparse[id];
+        }
+        index = null;
+        sparse = null;
+    }
+
+    public int min() {
+        return min;
+    }
+
+    public int max() {
+        return max;
+    }
+
+    /**
+     * Returns true if the values are counted in a dense array.
+     */
+    public boolean isDense() {
+        return dense != null;
+    }
+
+    /**
+     * The number of occurrences of the given value.
+     */
+    public long count(int value) {
+        if(value < min || value > max) return 0;
+        if(dense != null) return dense[value - min];
+        int id = index.find(value);
+        return id < 0 ? 0 : sparse[id];
+    }
+
+    /**
+     * The number of values within the range.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * The number of values outside the range.
+     */
+    public long outliers() {
+        return outliers;
+    }
+
+    /**
+     * The distinct values counted, in ascending order.
+     */
+    public int[] values() {
+        if(dense == null) {
+            int[] res = new int[index.size()];
+            for (int id = 0; id < res.length; id++) res[id] = index.key(id);
+            Arrays.sort(res);
+            return res;
+        }
+        int size = 0;
+        for (long c : dense) if(c > 0) size++;
+        int[] res = new int[size];
+        for (int i = 0, j = 0; j < size; i++) {
+            if(dense[i] > 0) res[j++] = min + i;
+        }
+        return res;
+    }
+
+    /**
+     * The number of occurrences of each of the {@link #values()}.
+     */
+    public long[] counts() {
+        int[] values = values();
+        long[] res = new long[values.length];
+        for (int i = 0; i < values.length; i++) res[i] = count(values[i]);
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        int[] values = values();
+        StringBuilder res = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if(i > 0) res.append(", ");
+            res.append(values[i]).append('=').append(count(values[i]));
+        }
+        return res.append('}').toString();
+    }
+}
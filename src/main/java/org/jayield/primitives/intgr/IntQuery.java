@@ -38,32 +38,53 @@ import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
+import org.jayield.PhysicalPlan;
+import org.jayield.PhysicalPlan.Traversal;
 import org.jayield.Query;
+import org.jayield.QueryPlan;
+import org.jayield.QueryPlan.Operator;
+import org.jayield.SortOptions;
 import org.jayield.TraversableFinishError;
 import org.jayield.Yield;
 import org.jayield.boxes.BoolBox;
+import org.jayield.boxes.IntArrayBox;
 import org.jayield.boxes.IntBox;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.metrics.QueryExecutionEvent;
+import org.jayield.metrics.StageProfile;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.dbl.DoubleAdvancer;
 import org.jayield.primitives.dbl.DoubleQuery;
 import org.jayield.primitives.intgr.advs.IntAdvancerArray;
+import org.jayield.primitives.intgr.advs.IntAdvancerChunked;
 import org.jayield.primitives.intgr.advs.IntAdvancerConcat;
+import org.jayield.primitives.intgr.advs.IntAdvancerDifferenceSorted;
 import org.jayield.primitives.intgr.advs.IntAdvancerDistinct;
 import org.jayield.primitives.intgr.advs.IntAdvancerDropWhile;
 import org.jayield.primitives.intgr.advs.IntAdvancerFilter;
 import org.jayield.primitives.intgr.advs.IntAdvancerFlatMap;
 import org.jayield.primitives.intgr.advs.IntAdvancerGenerate;
+import org.jayield.primitives.intgr.advs.IntAdvancerIntersectSorted;
 import org.jayield.primitives.intgr.advs.IntAdvancerIterate;
 import org.jayield.primitives.intgr.advs.IntAdvancerLimit;
 import org.jayield.primitives.intgr.advs.IntAdvancerMap;
 import org.jayield.primitives.intgr.advs.IntAdvancerMapToObj;
+import org.jayield.primitives.intgr.advs.IntAdvancerMergeJoin;
+import org.jayield.primitives.intgr.advs.IntAdvancerMergeSorted;
 import org.jayield.primitives.intgr.advs.IntAdvancerPeek;
+import org.jayield.primitives.intgr.advs.IntAdvancerProfile;
 import org.jayield.primitives.intgr.advs.IntAdvancerSkip;
 import org.jayield.primitives.intgr.advs.IntAdvancerStream;
 import org.jayield.primitives.intgr.advs.IntAdvancerTakeWhile;
 import org.jayield.primitives.intgr.advs.IntAdvancerThen;
 import org.jayield.primitives.intgr.advs.IntAdvancerZip;
+import org.jayield.primitives.intgr.advs.IntChunker;
 import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongQuery;
+import org.jayield.sketches.BloomFilter;
+import org.jayield.sketches.HyperLogLog;
+import org.jayield.spill.IntExternalSort;
+import org.jayield.tables.ParallelAggregation;
 
 /**
  * A sequence of primitive int-valued elements supporting sequential
@@ -72,9 +93,15 @@ import org.jayield.primitives.lng.LongQuery;
 public class IntQuery {
 
     private final IntAdvancer adv;
+    private final QueryPlan plan;
 
     public IntQuery(IntAdvancer adv) {
+        this(adv, QueryPlan.source(adv.getClass().getSimpleName(), adv.getClass(), QueryPlan.UNKNOWN_SIZE));
+    }
+
+    public IntQuery(IntAdvancer adv, QueryPlan plan) {
         this.adv = adv;
+        this.plan = plan;
     }
 
     /**
@@ -82,7 +109,9 @@ public class IntQuery {
      * from the provided {@link IntStream} data.
      */
     public static IntQuery fromStream(IntStream src) {
-        return new IntQuery(new IntAdvancerStream(src));
+        return new IntQuery(
+            new IntAdvancerStream(src),
+            QueryPlan.source("fromStream", IntAdvancerStream.class, QueryPlan.UNKNOWN_SIZE));
     }
 
     /**
@@ -92,7 +121,9 @@ public class IntQuery {
      * {@code f(f(seed))}, etc.
      */
     public static IntQuery iterate(int seed, IntUnaryOperator f) {
-        return new IntQuery(new IntAdvancerIterate(seed, f));
+        return new IntQuery(
+            new IntAdvancerIterate(seed, f),
+            QueryPlan.source("iterate", IntAdvancerIterate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -100,7 +131,9 @@ public class IntQuery {
      * where each element is generated by the provided Supplier.
      */
     public static IntQuery generate(IntSupplier s) {
-        return new IntQuery(new IntAdvancerGenerate(s));
+        return new IntQuery(
+            new IntAdvancerGenerate(s),
+            QueryPlan.source("generate", IntAdvancerGenerate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -109,7 +142,20 @@ public class IntQuery {
      * exception is thrown.
      */
     public final void forEach(IntYield yield) {
-        this.traverse(yield);
+        this.execute(yield);
+    }
+
+    /**
+     * Passes the elements of this {@code IntQuery} to the consumer in chunks of {@code n} elements,
+     * together with the number of elements in the chunk, which is less than n for the last one.
+     * <p>
+     * All chunks are the same array, allocated once, thus it is only valid during the call
+     * to the consumer and its content from the given length on is undefined.
+     */
+    public final void forEachChunk(int n, ObjIntConsumer<int[]> consumer) {
+        IntChunker chunker = new IntChunker(n, true, consumer);
+        this.execute(chunker);
+        chunker.flush();
     }
 
     /**
@@ -126,7 +172,7 @@ public class IntQuery {
      * the given predicate.
      */
     public IntQuery filter(IntPredicate p) {
-        return new IntQuery(new IntAdvancerFilter(adv, p));
+        return stage(new IntAdvancerFilter(adv, p), plan.then(Operator.FILTER, IntAdvancerFilter.class));
     }
 
     /**
@@ -137,7 +183,7 @@ public class IntQuery {
      *         IntUnaryOperator used to map the elements of this IntQuery
      */
     public IntQuery map(IntUnaryOperator op) {
-        return new IntQuery(new IntAdvancerMap(adv, op));
+        return stage(new IntAdvancerMap(adv, op), plan.then(Operator.MAP, IntAdvancerMap.class));
     }
 
     /**
@@ -148,7 +194,9 @@ public class IntQuery {
      *         IntFunction used to map the elements of this IntQuery
      */
     public <U> Query<U> mapToObj(IntFunction<? extends U> function) {
-        return new Query<>(new IntAdvancerMapToObj<>(adv, function));
+        return new Query<>(
+            StageProfile.stage(adv, "mapToObj", new IntAdvancerMapToObj<>(adv, function)),
+            plan.then(Operator.MAP_TO_OBJ, IntAdvancerMapToObj.class));
     }
 
     /**
@@ -157,7 +205,7 @@ public class IntQuery {
      * the provided mapping function to each element.
      */
     public IntQuery flatMap(IntFunction<? extends IntQuery> function) {
-        return new IntQuery(new IntAdvancerFlatMap(this, function));
+        return stage(new IntAdvancerFlatMap(this, function), plan.then(Operator.FLAT_MAP, IntAdvancerFlatMap.class));
     }
 
     /**
@@ -165,30 +213,78 @@ public class IntQuery {
      * {@link Object#equals(Object)}) of this query.
      */
     public IntQuery distinct() {
-        return new IntQuery(new IntAdvancerDistinct(adv));
+        return stage(new IntAdvancerDistinct(adv, plan), plan.then(Operator.DISTINCT, IntAdvancerDistinct.class));
+    }
+
+    /**
+     * Returns a {@code IntQuery} consisting of distinct elements of this {@code IntQuery},
+     * through a {@link BloomFilter} sized for the expected number of distinct elements and
+     * false positive probability, instead of a set of all elements. It never repeats an element,
+     * but it misses each distinct element with a probability near fpp, or greater beyond the expected size.
+     */
+    public IntQuery approxDistinct(long expectedSize, double fpp) {
+        BloomFilter filter = BloomFilter.of(expectedSize, fpp);
+        return stage(
+            new IntAdvancerFilter(adv, filter::put),
+            plan.then(Operator.APPROX_DISTINCT, IntAdvancerFilter.class));
+    }
+
+    /**
+     * Returns a query with the distinct elements of this query, in no particular order,
+     * which are aggregated in parallel by the workers of the common ForkJoinPool
+     * into primitive hash tables.
+     * The elements are eagerly traversed by the calling thread, which hands them,
+     * in chunks, to the workers.
+     */
+    public IntQuery parallelDistinct() {
+        MaterializationEvent event = MaterializationEvent.start("parallelDistinct");
+        int[] state = ParallelAggregation.distinct(this);
+        MaterializationEvent.finish(event, plan, state.length, MaterializationEvent.HASH_ENTRY_BYTES);
+        return stage(new IntAdvancerArray(state), plan.then(Operator.PARALLEL_DISTINCT, IntAdvancerArray.class));
     }
 
     /**
      * Returns a {@code IntQuery} consisting of the elements of this {@code IntQuery},
-     * sorted according to the same logic as {@code Arrays.sort(int[] a)}.
+     * sorted according to the same logic as {@code Arrays.sort(int[] a)}, without boxing.
+     * Large inputs are sorted through a radix sort, or a parallel sort when there
+     * are several cores, as chosen by {@link Sorts#sort(int[], int, int)}.
      * <p>
      * This is a stateful intermediate operation.
      */
     public IntQuery sorted() {
-        int[] state = this.toArray();
-        Arrays.sort(state);
-        return new IntQuery(new IntAdvancerArray(state));
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        IntArrayBox box = new IntArrayBox();
+        this.execute(box::add);
+        Sorts.sort(box.array(), 0, box.length());
+        MaterializationEvent.finish(event, plan, box.length(), Integer.BYTES);
+        return stage(new IntAdvancerArray(box.array(), 0, box.length()), plan.sorted(IntAdvancerArray.class, box.length()));
+    }
+
+    /**
+     * Returns a {@code IntQuery} consisting of the elements of this {@code IntQuery},
+     * sorted according to the same logic as {@code Arrays.sort(int[] a)}, through an
+     * external merge sort with the given options, which spills binary runs beyond the
+     * memory budget to disk.
+     * <p>
+     * This is a stateful intermediate operation.
+     */
+    public IntQuery sorted(SortOptions options) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        IntExternalSort sort = new IntExternalSort(options);
+        IntAdvancer res = sort.sort(this);
+        MaterializationEvent.finish(event, plan, sort.size(), Integer.BYTES);
+        return stage(res, plan.sorted(IntExternalSort.class, sort.size()));
     }
 
     /**
      * Returns an array containing the elements of this {@code IntQuery}.
      */
     public int[] toArray() {
-        List<Integer> list = toList();
-        int[] result = new int[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            result[i] = list.get(i);
-        }
+        MaterializationEvent event = MaterializationEvent.start("toArray");
+        IntArrayBox box = new IntArrayBox();
+        this.execute(box::add);
+        int[] result = box.toArray();
+        MaterializationEvent.finish(event, plan, result.length, Integer.BYTES);
         return result;
     }
 
@@ -197,7 +293,7 @@ public class IntQuery {
      */
     public List<Integer> toList() {
         ArrayList<Integer> result = new ArrayList<>();
-        this.traverse(result::add);
+        this.execute(result::add);
         return result;
     }
 
@@ -207,7 +303,7 @@ public class IntQuery {
      * from the resulting {@code IntQuery}.
      */
     public IntQuery peek(IntConsumer action) {
-        return new IntQuery(new IntAdvancerPeek(adv, action));
+        return stage(new IntAdvancerPeek(adv, action), plan.then(Operator.PEEK, IntAdvancerPeek.class));
     }
 
     /**
@@ -218,7 +314,7 @@ public class IntQuery {
      *         maximum amount of elements to retrieve from this {@code IntQuery}
      */
     public IntQuery limit(int n) {
-        return new IntQuery(new IntAdvancerLimit(this, n));
+        return stage(new IntAdvancerLimit(this, n), plan.limit(IntAdvancerLimit.class, n));
     }
 
     /**
@@ -229,7 +325,18 @@ public class IntQuery {
      *         number of elements to discard
      */
     public IntQuery skip(int n) {
-        return new IntQuery(new IntAdvancerSkip(adv, n));
+        return stage(new IntAdvancerSkip(adv, n), plan.skip(IntAdvancerSkip.class, n));
+    }
+
+    /**
+     * Returns a {@code Query} of arrays with the next {@code n} elements of this {@code IntQuery},
+     * except the last one, which has the remaining elements.
+     * Each chunk is a new array.
+     */
+    public Query<int[]> chunked(int n) {
+        return new Query<>(
+            StageProfile.stage(adv, "chunked", new IntAdvancerChunked(adv, n)),
+            plan.chunked(IntAdvancerChunked.class, n));
     }
 
     /**
@@ -260,7 +367,7 @@ public class IntQuery {
     public int reduce(int identity, IntBinaryOperator accumulator) {
         IntBox result = new IntBox();
         result.setValue(identity);
-        this.traverse(elem -> result.setValue(accumulator.applyAsInt(result.getValue(), elem)));
+        this.execute(elem -> result.setValue(accumulator.applyAsInt(result.getValue(), elem)));
         return result.getValue();
     }
 
@@ -276,7 +383,7 @@ public class IntQuery {
      */
     public OptionalInt min() {
         IntBox b = new IntBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e < b.getValue()) {
@@ -291,7 +398,7 @@ public class IntQuery {
      */
     public OptionalInt max() {
         IntBox b = new IntBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e > b.getValue()) {
@@ -301,6 +408,18 @@ public class IntQuery {
         return b.isPresent() ? OptionalInt.of(b.getValue()) : OptionalInt.empty();
     }
 
+    /**
+     * Returns an estimate of the number of distinct elements in this {@code IntQuery}, through
+     * a {@link HyperLogLog} sketch of the given precision, between 4 and 18, which takes
+     * 2^precision bytes and has a relative standard error of 1.04 / sqrt(2^precision),
+     * e.g. 16 KB and 0.81% for a precision of 14.
+     */
+    public final long approxCountDistinct(int precision) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        this.execute(sketch::add);
+        return sketch.estimate();
+    }
+
     /**
      * Returns the count of elements in this {@code IntQuery}.
      */
@@ -314,7 +433,7 @@ public class IntQuery {
             }
         }
         Counter c = new Counter();
-        this.traverse(c);
+        this.execute(c);
         return c.n;
     }
 
@@ -348,7 +467,7 @@ public class IntQuery {
      * are the specified values in data parameter.
      */
     public static IntQuery of(int... data) {
-        return new IntQuery(new IntAdvancerArray(data));
+        return new IntQuery(new IntAdvancerArray(data), QueryPlan.source("of", IntAdvancerArray.class, data.length));
     }
 
     /**
@@ -361,6 +480,27 @@ public class IntQuery {
         return this.collect(IntSummaryStatistics::new, IntSummaryStatistics::accept);
     }
 
+    /**
+     * Returns the frequencies of the elements of this {@code IntQuery} within the range [min, max].
+     * Counts are kept in an int indexed array, or in a primitive hash table while the
+     * values are sparse in a large range.
+     * <p>
+     * This is a terminal operation.
+     */
+    public IntHistogram histogram(int min, int max) {
+        return this.collect(() -> new IntHistogram(min, max), IntHistogram::add);
+    }
+
+    /**
+     * Returns the number of elements of this {@code IntQuery} in each bucket, from 0 until buckets,
+     * given by bucketFn. Elements mapped outside those buckets are only counted as outliers.
+     * <p>
+     * This is a terminal operation.
+     */
+    public IntHistogram countBy(IntUnaryOperator bucketFn, int buckets) {
+        return this.collect(() -> new IntHistogram(0, buckets - 1), (h, item) -> h.add(bucketFn.applyAsInt(item)));
+    }
+
     /**
      * Performs a mutable reduction operation on the elements of this {@code IntQuery}.
      * A mutable reduction is one in which the reduced value is a mutable result container, such as an ArrayList,
@@ -368,7 +508,7 @@ public class IntQuery {
      */
     public <R> R collect(Supplier<R> supplier, ObjIntConsumer<R> accumulator) {
         R result = supplier.get();
-        this.traverse(elem -> accumulator.accept(result, elem));
+        this.execute(elem -> accumulator.accept(result, elem));
         return result;
     }
 
@@ -383,7 +523,7 @@ public class IntQuery {
      */
     public boolean allMatch(IntPredicate p) {
         BoolBox succeed = new BoolBox(true);
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (!p.test(item)) {
                 succeed.set(false);
                 Yield.bye();
@@ -429,7 +569,7 @@ public class IntQuery {
      */
     public boolean anyMatch(IntPredicate p) {
         BoolBox found = new BoolBox();
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (p.test(item)) {
                 found.set();
                 Yield.bye();
@@ -452,7 +592,7 @@ public class IntQuery {
      */
     public OptionalInt findFirst() {
         IntBox box = new IntBox();
-        this.shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             box.turnPresent(item);
             Yield.bye();
         });
@@ -479,7 +619,9 @@ public class IntQuery {
      *         IntToLongFunction used to map the elements of this IntQuery
      */
     public LongQuery mapToLong(IntToLongFunction function) {
-        return new LongQuery(LongAdvancer.from(adv, function));
+        return new LongQuery(
+            StageProfile.stage(adv, "mapToLong", LongAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_LONG, LongAdvancer.class));
     }
 
     /**
@@ -500,7 +642,9 @@ public class IntQuery {
      *         IntToDoubleFunction used to map the elements of this IntQuery
      */
     public DoubleQuery mapToDouble(IntToDoubleFunction function) {
-        return new DoubleQuery(DoubleAdvancer.from(adv, function));
+        return new DoubleQuery(
+            StageProfile.stage(adv, "mapToDouble", DoubleAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_DOUBLE, DoubleAdvancer.class));
     }
 
     /**
@@ -508,7 +652,7 @@ public class IntQuery {
      * each boxed to an Integer.
      */
     public Query<Integer> boxed() {
-        return new Query<>(adv);
+        return new Query<>(adv, plan.then(Operator.BOXED, IntAdvancer.class));
     }
 
     public IntStream toStream() {
@@ -537,7 +681,7 @@ public class IntQuery {
      * {@code IntTraverser} object that is encapsulated in the resulting {@code IntQuery}.
      */
     public final IntQuery then(Function<IntQuery, IntTraverser> next) {
-        return new IntQuery(new IntAdvancerThen(this, next));
+        return stage(new IntAdvancerThen(this, next, plan), plan.then(Operator.THEN, IntAdvancerThen.class));
     }
 
     /**
@@ -545,7 +689,9 @@ public class IntQuery {
      * this {@code IntQuery} that match the given predicate.
      */
     public final IntQuery takeWhile(IntPredicate predicate) {
-        return new IntQuery(new IntAdvancerTakeWhile(this, predicate));
+        return stage(
+            new IntAdvancerTakeWhile(this, predicate),
+            plan.then(Operator.TAKE_WHILE, IntAdvancerTakeWhile.class));
     }
 
     /**
@@ -554,7 +700,90 @@ public class IntQuery {
      * elements of the other {@code Query}.
      */
     public final IntQuery concat(IntQuery other) {
-        return new IntQuery(new IntAdvancerConcat(this, other));
+        return stage(
+            new IntAdvancerConcat(this, other),
+            plan.then(Operator.CONCAT, IntAdvancerConcat.class, other.plan));
+    }
+
+    /**
+     * Returns a {@code IntQuery} with the elements of all the given queries, which must be
+     * already sorted in ascending order, merged in that order.
+     * Each query is iterated lazily and only its current element is retained.
+     */
+    public static IntQuery mergeSorted(IntQuery... queries) {
+        return combine(Operator.MERGE_SORTED, IntAdvancerMergeSorted.class, IntAdvancerMergeSorted::new, queries);
+    }
+
+    /**
+     * Returns a {@code IntQuery} with the elements common to all the given queries,
+     * which must be already sorted in ascending order.
+     * The queries are leapfrogged, each one skipping ahead to the greatest element
+     * seen so far, which takes logarithmic time on the distance skipped in array
+     * based queries, such as the result of {@link #of} or {@link #sorted()}.
+     */
+    public static IntQuery intersectSorted(IntQuery... queries) {
+        return combine(
+            Operator.INTERSECT_SORTED,
+            IntAdvancerIntersectSorted.class,
+            IntAdvancerIntersectSorted::new,
+            queries);
+    }
+
+    /**
+     * Returns a {@code IntQuery} with the distinct elements of all the given queries,
+     * which must be already sorted in ascending order.
+     */
+    public static IntQuery unionSorted(IntQuery... queries) {
+        return combine(
+            Operator.UNION_SORTED,
+            IntAdvancerMergeSorted.class,
+            sources -> new IntAdvancerMergeSorted(sources, true),
+            queries);
+    }
+
+    /**
+     * Returns a {@code IntQuery} with the elements of the given query that are missing
+     * from all the others, all of them already sorted in ascending order.
+     * The others skip ahead to each element of query, which takes logarithmic time on the
+     * distance skipped in array based queries.
+     */
+    public static IntQuery differenceSorted(IntQuery query, IntQuery... others) {
+        IntQuery[] queries = new IntQuery[others.length + 1];
+        queries[0] = query;
+        System.arraycopy(others, 0, queries, 1, others.length);
+        return combine(
+            Operator.DIFFERENCE_SORTED,
+            IntAdvancerDifferenceSorted.class,
+            sources -> new IntAdvancerDifferenceSorted(sources[0], Arrays.copyOfRange(sources, 1, sources.length)),
+            queries);
+    }
+
+    private static IntQuery combine(
+        Operator operator,
+        Class<?> advancer,
+        Function<IntAdvancer[], IntAdvancer> combiner,
+        IntQuery... queries)
+    {
+        if(queries.length == 0) return IntQuery.of();
+        IntAdvancer[] sources = new IntAdvancer[queries.length];
+        QueryPlan[] others = new QueryPlan[queries.length - 1];
+        for (int i = 0; i < queries.length; i++) {
+            sources[i] = queries[i].adv;
+            if(i > 0) others[i - 1] = queries[i].plan;
+        }
+        return queries[0].stage(combiner.apply(sources), queries[0].plan.then(operator, advancer, others));
+    }
+
+    /**
+     * Returns a {@code IntQuery} where each element of this query is repeated once
+     * for each equal element of the other query, both already sorted in ascending order.
+     * The other query is iterated in lockstep with this query and only the number of
+     * its current run of equal elements is retained.
+     */
+    public final IntQuery mergeJoin(IntQuery other) {
+        return stage(
+            new IntAdvancerMergeJoin(adv, other.adv),
+            plan.then(Operator.MERGE_JOIN, IntAdvancerMergeJoin.class, other.plan));
     }
 
     /**
@@ -562,7 +791,9 @@ public class IntQuery {
      * after discarding the first sequence of elements that match the given Predicate.
      */
     public final IntQuery dropWhile(IntPredicate predicate) {
-        return new IntQuery(new IntAdvancerDropWhile(this, predicate));
+        return stage(
+            new IntAdvancerDropWhile(this, predicate),
+            plan.then(Operator.DROP_WHILE, IntAdvancerDropWhile.class));
     }
 
     /**
@@ -570,6 +801,95 @@ public class IntQuery {
      * sequences, producing a sequence of the results.
      */
     public final IntQuery zip(IntQuery other, IntBinaryOperator zipper) {
-        return new IntQuery(new IntAdvancerZip(this.adv, other.adv, zipper));
+        return stage(
+            new IntAdvancerZip(this.adv, other.adv, zipper),
+            plan.then(Operator.ZIP, IntAdvancerZip.class, other.plan));
+    }
+
+    /**
+     * Returns the physical plan of this {@code IntQuery} when it is consumed by a
+     * terminal operation, showing the advancer of each operation, whether it
+     * is pushed, pulled or buffered, its known size and characteristics and
+     * which operations materialize their input.
+     */
+    public PhysicalPlan explain() {
+        return plan.explain(Traversal.PUSH);
+    }
+
+    /**
+     * Returns an equivalent {@code IntQuery} that profiles each following operation,
+     * counting the elements leaving each stage and timing one element every 64.
+     * After a terminal operation, {@link #explainAnalyze()} reports the selectivity
+     * and the estimated time of each stage.
+     */
+    public IntQuery profiled() {
+        return profiled(64);
+    }
+
+    /**
+     * Returns an equivalent {@code IntQuery} that profiles each following operation,
+     * timing one element every {@code sampleEvery}.
+     *
+     * @see #profiled()
+     */
+    public IntQuery profiled(int sampleEvery) {
+        return new IntQuery(new IntAdvancerProfile(adv, StageProfile.source(sampleEvery)), plan);
+    }
+
+    /**
+     * Returns a report with the elements in and out, the selectivity and the
+     * estimated time of each stage of this profiled {@code IntQuery}, after it
+     * has been consumed.
+     *
+     * @throws IllegalStateException if this query is not profiled.
+     */
+    public String explainAnalyze() {
+        return StageProfile.report(adv);
+    }
+
+    /**
+     * Returns a query with the given advancer as the next stage of this pipeline.
+     */
+    private IntQuery stage(IntAdvancer next, QueryPlan nextPlan) {
+        return new IntQuery(StageProfile.stage(adv, nextPlan.operator(), next), nextPlan);
+    }
+
+    /**
+     * Traverses this query on behalf of a terminal operation, recording
+     * a {@link QueryExecutionEvent} if enabled.
+     */
+    private void execute(IntYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.traverse(yield);
+            return;
+        }
+        try {
+            this.traverse(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
+    }
+
+    /**
+     * Short circuit version of {@link #execute}.
+     */
+    private void executeShortCircuit(IntYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.shortCircuit(yield);
+            return;
+        }
+        try {
+            this.shortCircuit(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr;
+
+/**
+ * A {@link IntAdvancer} of ascending elements that is able to skip ahead,
+ * such as an array based source.
+ */
+public interface SeekableIntAdvancer extends IntAdvancer {
+
+    /**
+     * Skips the elements lower than target, so that the next element, if any,
+     * is greater than or equal to target.
+     * Returns true if there is a next element.
+     */
+    boolean advanceTo(int target);
+
+    /**
+     * Returns the given advancer, if it is seekable, or a seekable view of it
+     * that skips elements one by one.
+     */
+    static SeekableIntAdvancer of(IntAdvancer source) {
+        if(source instanceof SeekableIntAdvancer) return (SeekableIntAdvancer) source;
+        return new SeekableIntAdvancer() {
+            private int head;
+            private boolean hasHead;
+
+            @Override
+            public boolean advanceTo(int target) {
+                while(hasNext()) {
+                    int item = nextInt();
+                    if(item >= target) {
+                        head = item;
+                        hasHead = true;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return hasHead || source.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if(hasHead) {
+                    hasHead = false;
+                    return head;
+                }
+                return source.nextInt();
+            }
+
+            @Override
+            public void traverse(IntYield yield) {
+                if(hasHead) {
+                    hasHead = false;
+                    yield.ret(head);
+                }
+                source.traverse(yield);
+            }
+        };
+    }
+}
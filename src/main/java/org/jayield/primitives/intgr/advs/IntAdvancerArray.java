@@ -18,16 +18,25 @@ package org.jayield.primitives.intgr.advs;
 
 import java.util.NoSuchElementException;
 
-import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntYield;
+import org.jayield.primitives.intgr.SeekableIntAdvancer;
 
-public class IntAdvancerArray implements IntAdvancer {
+public class IntAdvancerArray implements SeekableIntAdvancer {
     private final int[] data;
+    private final int end;
     private int current;
 
     public IntAdvancerArray(int... data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Advancer of the elements of data from index from, inclusive, to index to, exclusive.
+     */
+    public IntAdvancerArray(int[] data, int from, int to) {
         this.data = data;
-        this.current = 0;
+        this.current = from;
+        this.end = to;
     }
 
 
@@ -40,7 +49,31 @@ public class IntAdvancerArray implements IntAdvancer {
 
     @Override
     public boolean hasNext() {
-        return current < data.length;
+        return current < end;
+    }
+
+    /**
+     * Gallops from the current position, doubling the step until an element
+     * greater than or equal to target, and then binary searches the last step.
+     * Thus it takes O(log d) for a distance d.
+     */
+    @Override
+    public boolean advanceTo(int target) {
+        int lo = current;
+        long step = 1; // A long step, as well as the bound of hi, never overflow on huge arrays.
+        int hi = lo;
+        while(hi < end && data[hi] < target) {
+            lo = hi + 1;
+            hi = (int) Math.min(end, current + step);
+            step <<= 1;
+        }
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(data[mid] < target) lo = mid + 1;
+            else hi = mid;
+        }
+        current = lo;
+        return current < end;
     }
 
     /**
@@ -51,7 +84,7 @@ public class IntAdvancerArray implements IntAdvancer {
      */
     @Override
     public void traverse(IntYield yield) {
-        for (int i = current; i < data.length; i++) {
+        for (int i = current; i < end; i++) {
             yield.ret(data[i]);
         }
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr.advs;
+
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.IntYield;
+import org.jayield.primitives.intgr.SeekableIntAdvancer;
+
+/**
+ * The elements of the upstream that are missing from all the other advancers,
+ * all of them in ascending order.
+ * Each of the others is sought to the current upstream element, thus array based
+ * sources are sought in logarithmic time on the distance skipped.
+ */
+public class IntAdvancerDifferenceSorted extends AbstractIntAdvancer {
+    private final IntAdvancer upstream;
+    private final SeekableIntAdvancer[] others;
+    private final int[] heads;
+    private final boolean[] sought;
+
+    public IntAdvancerDifferenceSorted(IntAdvancer upstream, IntAdvancer[] others) {
+        this.upstream = upstream;
+        this.others = new SeekableIntAdvancer[others.length];
+        for (int i = 0; i < others.length; i++) {
+            this.others[i] = SeekableIntAdvancer.of(others[i]);
+        }
+        this.heads = new int[others.length];
+        this.sought = new boolean[others.length];
+    }
+
+    /**
+     * Returns true if some other advancer contains the given item.
+     */
+    private boolean excluded(int item) {
+        for (int i = 0; i < others.length; i++) {
+            if(!sought[i] || heads[i] < item) {
+                if(others[i] == null) continue;
+                if(!others[i].advanceTo(item)) {
+                    others[i] = null;
+                    continue;
+                }
+                heads[i] = others[i].nextInt();
+                sought[i] = true;
+            }
+            if(heads[i] == item) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        while(upstream.hasNext()) {
+            currInt = upstream.nextInt();
+            if(!excluded(currInt)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void traverse(IntYield yield) {
+        upstream.traverse(item -> {
+            if(!excluded(item)) yield.ret(item);
+        });
+    }
+}
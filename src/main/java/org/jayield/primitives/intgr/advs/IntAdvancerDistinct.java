@@ -18,15 +18,21 @@ package org.jayield.primitives.intgr.advs;
 
 import java.util.HashSet;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntYield;
 
 public class IntAdvancerDistinct extends AbstractIntAdvancer {
     final HashSet<Integer> mem = new HashSet<>();
+    private MaterializationEvent event;
+    private boolean started;
     private final IntAdvancer upstream;
+    private final QueryPlan plan;
 
-    public IntAdvancerDistinct(IntAdvancer adv) {
+    public IntAdvancerDistinct(IntAdvancer adv, QueryPlan plan) {
         this.upstream = adv;
+        this.plan = plan;
     }
 
     /**
@@ -34,21 +40,42 @@ public class IntAdvancerDistinct extends AbstractIntAdvancer {
      * signaling it has finished.
      */
     public boolean move() {
+        startEvent();
         while (upstream.hasNext()) {
             currInt = upstream.nextInt();
             if (mem.add(currInt)) {
                 return true;
             }
         }
+        finishEvent();
         return false;
     }
 
     @Override
     public void traverse(IntYield yield) {
-        upstream.traverse(item -> {
-            if (mem.add(item)) {
-                yield.ret(item);
-            }
-        });
+        startEvent();
+        try {
+            upstream.traverse(item -> {
+                if (mem.add(item)) {
+                    yield.ret(item);
+                }
+            });
+        } finally {
+            finishEvent();
+        }
+    }
+
+    /**
+     * Starts the event of this materialization, on the first move or traversal.
+     */
+    private void startEvent() {
+        if(started) return;
+        started = true;
+        event = MaterializationEvent.start("distinct");
+    }
+
+    private void finishEvent() {
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.HASH_ENTRY_BYTES);
+        event = null;
     }
 }
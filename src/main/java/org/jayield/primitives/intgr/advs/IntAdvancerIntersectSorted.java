@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr.advs;
+
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.IntYield;
+import org.jayield.primitives.intgr.SeekableIntAdvancer;
+
+/**
+ * Intersection of advancers of ascending elements, which leapfrogs through
+ * the sources seeking each one to the greatest element seen so far.
+ * Array based sources are sought in logarithmic time on the distance skipped.
+ */
+public class IntAdvancerIntersectSorted extends AbstractIntAdvancer {
+    private final SeekableIntAdvancer[] sources;
+
+    public IntAdvancerIntersectSorted(IntAdvancer[] sources) {
+        this.sources = new SeekableIntAdvancer[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            this.sources[i] = SeekableIntAdvancer.of(sources[i]);
+        }
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        if(sources.length == 0 || !sources[0].hasNext()) return false;
+        int target = sources[0].nextInt();
+        int agreed = 1;
+        for (int i = 1; agreed < sources.length; i = (i + 1) % sources.length) {
+            if(!sources[i].advanceTo(target)) return false;
+            int item = sources[i].nextInt();
+            if(item == target) {
+                agreed++;
+            } else {
+                target = item;
+                agreed = 1;
+            }
+        }
+        currInt = target;
+        return true;
+    }
+
+    @Override
+    public void traverse(IntYield yield) {
+        while(hasNext()) yield.ret(nextInt());
+    }
+}
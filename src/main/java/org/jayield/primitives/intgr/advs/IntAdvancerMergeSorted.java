@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr.advs;
+
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.IntYield;
+
+/**
+ * K-way merge of advancers that are already sorted in ascending order,
+ * through a binary heap with the index of each advancer that has elements.
+ * If distinct, then repeated elements are yielded once, which is the union of the sources.
+ */
+public class IntAdvancerMergeSorted extends AbstractIntAdvancer {
+    private final IntAdvancer[] sources;
+    private final int[] heads;
+    private final int[] heap;
+    private final boolean distinct;
+    private int size = -1;
+    private boolean started;
+
+    public IntAdvancerMergeSorted(IntAdvancer[] sources) {
+        this(sources, false);
+    }
+
+    public IntAdvancerMergeSorted(IntAdvancer[] sources, boolean distinct) {
+        this.sources = sources;
+        this.distinct = distinct;
+        this.heads = new int[sources.length];
+        this.heap = new int[sources.length];
+    }
+
+    private boolean less(int a, int b) {
+        return heads[a] < heads[b] || (heads[a] == heads[b] && a < b);
+    }
+
+    private void siftDown(int pos) {
+        int src = heap[pos];
+        for (int child = 2 * pos + 1; child < size; child = 2 * pos + 1) {
+            if(child + 1 < size && less(heap[child + 1], heap[child])) child++;
+            if(!less(heap[child], src)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = src;
+    }
+
+    private void init() {
+        size = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if(sources[i].hasNext()) {
+                heads[i] = sources[i].nextInt();
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        if(size < 0) init();
+        while(size > 0) {
+            int item = pop();
+            if(!distinct || !started || item != currInt) {
+                currInt = item;
+                started = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int pop() {
+        int src = heap[0];
+        int res = heads[src];
+        if(sources[src].hasNext()) {
+            heads[src] = sources[src].nextInt();
+        } else {
+            heap[0] = heap[--size];
+        }
+        if(size > 0) siftDown(0);
+        return res;
+    }
+
+    @Override
+    public void traverse(IntYield yield) {
+        while(hasNext()) yield.ret(nextInt());
+    }
+}
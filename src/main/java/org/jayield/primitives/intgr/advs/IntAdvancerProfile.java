@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.intgr.advs;
+
+import org.jayield.metrics.Profiled;
+import org.jayield.metrics.StageProfile;
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.IntYield;
+
+/**
+ * Counts and samples the elements leaving the upstream stage into its {@link StageProfile}.
+ */
+public class IntAdvancerProfile implements IntAdvancer, Profiled {
+    private final IntAdvancer upstream;
+    private final StageProfile profile;
+    private boolean timed;
+
+    public IntAdvancerProfile(IntAdvancer upstream, StageProfile profile) {
+        this.upstream = upstream;
+        this.profile = profile;
+    }
+
+    @Override
+    public StageProfile profile() {
+        return profile;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if(timed || !profile.sampling()) return upstream.hasNext();
+        timed = true;
+        long start = System.nanoTime();
+        boolean res = upstream.hasNext();
+        profile.sample(System.nanoTime() - start);
+        return res;
+    }
+
+    @Override
+    public int nextInt() {
+        int item = upstream.nextInt();
+        timed = false;
+        profile.emit();
+        return item;
+    }
+
+    @Override
+    public void traverse(IntYield yield) {
+        long start = System.nanoTime();
+        try {
+            upstream.traverse(item -> {
+                if(!profile.emit()) {
+                    yield.ret(item);
+                    return;
+                }
+                long begin = System.nanoTime();
+                try {
+                    yield.ret(item);
+                } finally {
+                    profile.sample(System.nanoTime() - begin);
+                }
+            });
+        } finally {
+            profile.traversal(System.nanoTime() - start);
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.jayield.primitives.intgr.advs;
 import java.util.ArrayList;
 import java.util.function.Function;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntIterator;
 import org.jayield.primitives.intgr.IntQuery;
@@ -28,12 +30,14 @@ import org.jayield.primitives.intgr.IntYield;
 public class IntAdvancerThen implements IntAdvancer {
     private IntQuery upstream;
     private Function<IntQuery, IntTraverser> next;
+    private final QueryPlan plan;
     private IntIterator curr;
     private boolean inMem = false;
 
-    public IntAdvancerThen(IntQuery upstream, Function<IntQuery, IntTraverser> next) {
+    public IntAdvancerThen(IntQuery upstream, Function<IntQuery, IntTraverser> next, QueryPlan plan) {
         this.upstream = upstream;
         this.next = next;
+        this.plan = plan;
     }
 
     @Override
@@ -45,8 +49,10 @@ public class IntAdvancerThen implements IntAdvancer {
         if (inMem) {
             return curr;
         }
+        MaterializationEvent event = MaterializationEvent.start("then");
         ArrayList<Integer> mem = new ArrayList<>();
         next.apply(upstream).traverse(mem::add);
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.REFERENCE_BYTES);
         inMem = true;
         curr = IntIterator.from(mem.iterator());
         return curr;
@@ -33,37 +33,62 @@ import java.util.function.LongSupplier;
 import java.util.function.LongToDoubleFunction;
 import java.util.function.LongToIntFunction;
 import java.util.function.LongUnaryOperator;
+import java.util.function.ObjIntConsumer;
 import java.util.function.ObjLongConsumer;
 import java.util.function.Supplier;
 import java.util.stream.LongStream;
 import java.util.stream.StreamSupport;
 
+import org.jayield.PhysicalPlan;
+import org.jayield.PhysicalPlan.Traversal;
 import org.jayield.Query;
+import org.jayield.QueryPlan;
+import org.jayield.QueryPlan.Operator;
+import org.jayield.SortOptions;
 import org.jayield.TraversableFinishError;
 import org.jayield.Yield;
 import org.jayield.boxes.BoolBox;
+import org.jayield.boxes.LongArrayBox;
 import org.jayield.boxes.LongBox;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.metrics.QueryExecutionEvent;
+import org.jayield.metrics.StageProfile;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.dbl.DoubleAdvancer;
 import org.jayield.primitives.dbl.DoubleQuery;
 import org.jayield.primitives.intgr.IntAdvancer;
 import org.jayield.primitives.intgr.IntQuery;
 import org.jayield.primitives.lng.advs.LongAdvancerArray;
+import org.jayield.primitives.lng.advs.LongAdvancerChunked;
 import org.jayield.primitives.lng.advs.LongAdvancerConcat;
+import org.jayield.primitives.lng.advs.LongAdvancerDifferenceSorted;
 import org.jayield.primitives.lng.advs.LongAdvancerDistinct;
 import org.jayield.primitives.lng.advs.LongAdvancerDropWhile;
 import org.jayield.primitives.lng.advs.LongAdvancerFilter;
 import org.jayield.primitives.lng.advs.LongAdvancerFlatMap;
 import org.jayield.primitives.lng.advs.LongAdvancerGenerate;
+import org.jayield.primitives.lng.advs.LongAdvancerIntersectSorted;
 import org.jayield.primitives.lng.advs.LongAdvancerIterate;
 import org.jayield.primitives.lng.advs.LongAdvancerLimit;
 import org.jayield.primitives.lng.advs.LongAdvancerMap;
 import org.jayield.primitives.lng.advs.LongAdvancerMapToObj;
+import org.jayield.primitives.lng.advs.LongAdvancerMergeJoin;
+import org.jayield.primitives.lng.advs.LongAdvancerMergeSorted;
 import org.jayield.primitives.lng.advs.LongAdvancerPeek;
+import org.jayield.primitives.lng.advs.LongAdvancerProfile;
+import org.jayield.primitives.lng.advs.LongAdvancerRolling;
 import org.jayield.primitives.lng.advs.LongAdvancerSkip;
 import org.jayield.primitives.lng.advs.LongAdvancerStream;
 import org.jayield.primitives.lng.advs.LongAdvancerTakeWhile;
 import org.jayield.primitives.lng.advs.LongAdvancerThen;
 import org.jayield.primitives.lng.advs.LongAdvancerZip;
+import org.jayield.primitives.lng.advs.LongChunker;
+import org.jayield.primitives.lng.advs.LongRollingAggregate;
+import org.jayield.sketches.BloomFilter;
+import org.jayield.sketches.HyperLogLog;
+import org.jayield.sketches.KllSketch;
+import org.jayield.spill.LongExternalSort;
+import org.jayield.tables.ParallelAggregation;
 
 /**
  * A sequence of primitive long-valued elements supporting sequential
@@ -72,9 +97,15 @@ import org.jayield.primitives.lng.advs.LongAdvancerZip;
 public class LongQuery {
 
     private final LongAdvancer adv;
+    private final QueryPlan plan;
 
     public LongQuery(LongAdvancer adv) {
+        this(adv, QueryPlan.source(adv.getClass().getSimpleName(), adv.getClass(), QueryPlan.UNKNOWN_SIZE));
+    }
+
+    public LongQuery(LongAdvancer adv, QueryPlan plan) {
         this.adv = adv;
+        this.plan = plan;
     }
 
     /**
@@ -82,7 +113,9 @@ public class LongQuery {
      * from the provided {@link LongStream} data.
      */
     public static LongQuery fromStream(LongStream src) {
-        return new LongQuery(new LongAdvancerStream(src));
+        return new LongQuery(
+            new LongAdvancerStream(src),
+            QueryPlan.source("fromStream", LongAdvancerStream.class, QueryPlan.UNKNOWN_SIZE));
     }
 
     /**
@@ -92,7 +125,9 @@ public class LongQuery {
      * {@code f(f(seed))}, etc.
      */
     public static LongQuery iterate(long seed, LongUnaryOperator f) {
-        return new LongQuery(new LongAdvancerIterate(seed, f));
+        return new LongQuery(
+            new LongAdvancerIterate(seed, f),
+            QueryPlan.source("iterate", LongAdvancerIterate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -100,7 +135,9 @@ public class LongQuery {
      * where each element is generated by the provided Supplier.
      */
     public static LongQuery generate(LongSupplier s) {
-        return new LongQuery(new LongAdvancerGenerate(s));
+        return new LongQuery(
+            new LongAdvancerGenerate(s),
+            QueryPlan.source("generate", LongAdvancerGenerate.class, QueryPlan.INFINITE));
     }
 
     /**
@@ -109,7 +146,20 @@ public class LongQuery {
      * exception is thrown.
      */
     public final void forEach(LongYield yield) {
-        this.traverse(yield);
+        this.execute(yield);
+    }
+
+    /**
+     * Passes the elements of this {@code LongQuery} to the consumer in chunks of {@code n} elements,
+     * together with the number of elements in the chunk, which is less than n for the last one.
+     * <p>
+     * All chunks are the same array, allocated once, thus it is only valid during the call
+     * to the consumer and its content from the given length on is undefined.
+     */
+    public final void forEachChunk(int n, ObjIntConsumer<long[]> consumer) {
+        LongChunker chunker = new LongChunker(n, true, consumer);
+        this.execute(chunker);
+        chunker.flush();
     }
 
     /**
@@ -126,7 +176,7 @@ public class LongQuery {
      * the given predicate.
      */
     public LongQuery filter(LongPredicate p) {
-        return new LongQuery(new LongAdvancerFilter(adv, p));
+        return stage(new LongAdvancerFilter(adv, p), plan.then(Operator.FILTER, LongAdvancerFilter.class));
     }
 
     /**
@@ -137,7 +187,7 @@ public class LongQuery {
      *         LongUnaryOperator used to map the elements of this LongQuery
      */
     public LongQuery map(LongUnaryOperator op) {
-        return new LongQuery(new LongAdvancerMap(adv, op));
+        return stage(new LongAdvancerMap(adv, op), plan.then(Operator.MAP, LongAdvancerMap.class));
     }
 
     /**
@@ -148,7 +198,9 @@ public class LongQuery {
      *         LongFunction used to map the elements of this LongQuery
      */
     public <U> Query<U> mapToObj(LongFunction<? extends U> function) {
-        return new Query<>(new LongAdvancerMapToObj<>(adv, function));
+        return new Query<>(
+            StageProfile.stage(adv, "mapToObj", new LongAdvancerMapToObj<>(adv, function)),
+            plan.then(Operator.MAP_TO_OBJ, LongAdvancerMapToObj.class));
     }
 
     /**
@@ -157,7 +209,7 @@ public class LongQuery {
      * the provided mapping function to each element.
      */
     public LongQuery flatMap(LongFunction<? extends LongQuery> function) {
-        return new LongQuery(new LongAdvancerFlatMap(this, function));
+        return stage(new LongAdvancerFlatMap(this, function), plan.then(Operator.FLAT_MAP, LongAdvancerFlatMap.class));
     }
 
     /**
@@ -165,30 +217,78 @@ public class LongQuery {
      * {@link Object#equals(Object)}) of this query.
      */
     public LongQuery distinct() {
-        return new LongQuery(new LongAdvancerDistinct(adv));
+        return stage(new LongAdvancerDistinct(adv, plan), plan.then(Operator.DISTINCT, LongAdvancerDistinct.class));
+    }
+
+    /**
+     * Returns a {@code LongQuery} consisting of distinct elements of this {@code LongQuery},
+     * through a {@link BloomFilter} sized for the expected number of distinct elements and
+     * false positive probability, instead of a set of all elements. It never repeats an element,
+     * but it misses each distinct element with a probability near fpp, or greater beyond the expected size.
+     */
+    public LongQuery approxDistinct(long expectedSize, double fpp) {
+        BloomFilter filter = BloomFilter.of(expectedSize, fpp);
+        return stage(
+            new LongAdvancerFilter(adv, filter::put),
+            plan.then(Operator.APPROX_DISTINCT, LongAdvancerFilter.class));
+    }
+
+    /**
+     * Returns a query with the distinct elements of this query, in no particular order,
+     * which are aggregated in parallel by the workers of the common ForkJoinPool
+     * into primitive hash tables.
+     * The elements are eagerly traversed by the calling thread, which hands them,
+     * in chunks, to the workers.
+     */
+    public LongQuery parallelDistinct() {
+        MaterializationEvent event = MaterializationEvent.start("parallelDistinct");
+        long[] state = ParallelAggregation.distinct(this);
+        MaterializationEvent.finish(event, plan, state.length, MaterializationEvent.HASH_ENTRY_BYTES);
+        return stage(new LongAdvancerArray(state), plan.then(Operator.PARALLEL_DISTINCT, LongAdvancerArray.class));
     }
 
     /**
      * Returns a {@code LongQuery} consisting of the elements of this {@code LongQuery},
-     * sorted according to the same logic as {@code Arrays.sort(long[] a)}.
+     * sorted according to the same logic as {@code Arrays.sort(long[] a)}, without boxing.
+     * Large inputs are sorted through a radix sort, or a parallel sort when there
+     * are several cores, as chosen by {@link Sorts#sort(long[], int, int)}.
      * <p>
      * This is a stateful intermediate operation.
      */
     public LongQuery sorted() {
-        long[] state = this.toArray();
-        Arrays.sort(state);
-        return new LongQuery(new LongAdvancerArray(state));
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        LongArrayBox box = new LongArrayBox();
+        this.execute(box::add);
+        Sorts.sort(box.array(), 0, box.length());
+        MaterializationEvent.finish(event, plan, box.length(), Long.BYTES);
+        return stage(new LongAdvancerArray(box.array(), 0, box.length()), plan.sorted(LongAdvancerArray.class, box.length()));
+    }
+
+    /**
+     * Returns a {@code LongQuery} consisting of the elements of this {@code LongQuery},
+     * sorted according to the same logic as {@code Arrays.sort(long[] a)}, through an
+     * external merge sort with the given options, which spills binary runs beyond the
+     * memory budget to disk.
+     * <p>
+     * This is a stateful intermediate operation.
+     */
+    public LongQuery sorted(SortOptions options) {
+        MaterializationEvent event = MaterializationEvent.start("sorted");
+        LongExternalSort sort = new LongExternalSort(options);
+        LongAdvancer res = sort.sort(this);
+        MaterializationEvent.finish(event, plan, sort.size(), Long.BYTES);
+        return stage(res, plan.sorted(LongExternalSort.class, sort.size()));
     }
 
     /**
      * Returns an array containing the elements of this {@code LongQuery}.
      */
     public long[] toArray() {
-        List<Long> list = toList();
-        long[] result = new long[list.size()];
-        for (int i = 0; i < list.size(); i++) {
-            result[i] = list.get(i);
-        }
+        MaterializationEvent event = MaterializationEvent.start("toArray");
+        LongArrayBox box = new LongArrayBox();
+        this.execute(box::add);
+        long[] result = box.toArray();
+        MaterializationEvent.finish(event, plan, result.length, Long.BYTES);
         return result;
     }
 
@@ -197,7 +297,7 @@ public class LongQuery {
      */
     public List<Long> toList() {
         ArrayList<Long> result = new ArrayList<>();
-        this.traverse(result::add);
+        this.execute(result::add);
         return result;
     }
 
@@ -207,7 +307,7 @@ public class LongQuery {
      * from the resulting {@code LongQuery}.
      */
     public LongQuery peek(LongConsumer action) {
-        return new LongQuery(new LongAdvancerPeek(adv, action));
+        return stage(new LongAdvancerPeek(adv, action), plan.then(Operator.PEEK, LongAdvancerPeek.class));
     }
 
     /**
@@ -218,7 +318,7 @@ public class LongQuery {
      *         maximum amount of elements to retrieve from this {@code LongQuery}
      */
     public LongQuery limit(int n) {
-        return new LongQuery(new LongAdvancerLimit(this, n));
+        return stage(new LongAdvancerLimit(this, n), plan.limit(LongAdvancerLimit.class, n));
     }
 
     /**
@@ -229,7 +329,57 @@ public class LongQuery {
      *         number of elements to discard
      */
     public LongQuery skip(int n) {
-        return new LongQuery(new LongAdvancerSkip(adv, n));
+        return stage(new LongAdvancerSkip(adv, n), plan.skip(LongAdvancerSkip.class, n));
+    }
+
+    /**
+     * Returns a {@code Query} of arrays with the next {@code n} elements of this {@code LongQuery},
+     * except the last one, which has the remaining elements.
+     * Each chunk is a new array.
+     */
+    public Query<long[]> chunked(int n) {
+        return new Query<>(
+            StageProfile.stage(adv, "chunked", new LongAdvancerChunked(adv, n)),
+            plan.chunked(LongAdvancerChunked.class, n));
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the sum of each window of {@code n} consecutive
+     * elements of this {@code LongQuery}, one for each element from the n-th on.
+     * The sum is kept in O(1) per element from a ring buffer.
+     */
+    public LongQuery rollingSum(int n) {
+        return rolling("rollingSum", n, LongRollingAggregate.sum(n));
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the maximum of each window of {@code n} consecutive
+     * elements of this {@code LongQuery}, one for each element from the n-th on.
+     * It keeps a monotonic deque taking O(1) amortized time per element.
+     */
+    public LongQuery rollingMax(int n) {
+        return rolling("rollingMax", n, LongRollingAggregate.max(n));
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the minimum of each window of {@code n} consecutive
+     * elements of this {@code LongQuery}, one for each element from the n-th on.
+     * It keeps a monotonic deque taking O(1) amortized time per element.
+     */
+    public LongQuery rollingMin(int n) {
+        return rolling("rollingMin", n, LongRollingAggregate.min(n));
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the difference between each element of this
+     * {@code LongQuery} and the previous one, from the second element on.
+     */
+    public LongQuery deltas() {
+        return rolling("deltas", 2, LongRollingAggregate.deltas());
+    }
+
+    private LongQuery rolling(String operator, int n, LongRollingAggregate aggregate) {
+        return stage(new LongAdvancerRolling(adv, aggregate), plan.window(operator, LongAdvancerRolling.class, n, 1));
     }
 
     /**
@@ -260,7 +410,7 @@ public class LongQuery {
     public long reduce(long identity, LongBinaryOperator accumulator) {
         LongBox result = new LongBox();
         result.setValue(identity);
-        this.traverse(elem -> result.setValue(accumulator.applyAsLong(result.getValue(), elem)));
+        this.execute(elem -> result.setValue(accumulator.applyAsLong(result.getValue(), elem)));
         return result.getValue();
     }
 
@@ -276,7 +426,7 @@ public class LongQuery {
      */
     public OptionalLong min() {
         LongBox b = new LongBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e < b.getValue()) {
@@ -291,7 +441,7 @@ public class LongQuery {
      */
     public OptionalLong max() {
         LongBox b = new LongBox();
-        this.traverse(e -> {
+        this.execute(e -> {
             if (!b.isPresent()) {
                 b.turnPresent(e);
             } else if (e > b.getValue()) {
@@ -301,6 +451,62 @@ public class LongQuery {
         return b.isPresent() ? OptionalLong.of(b.getValue()) : OptionalLong.empty();
     }
 
+    /**
+     * Returns a {@link KllSketch} with parameter k of the elements of this {@code LongQuery},
+     * as double values, which keeps about 3k of them, may be merged with the sketches of other
+     * queries with the same k and may be queried for any quantiles.
+     */
+    public final KllSketch quantileSketch(int k) {
+        KllSketch sketch = new KllSketch(k);
+        this.execute(sketch::add);
+        return sketch;
+    }
+
+    /**
+     * Returns estimates of the given quantiles, each one between 0 and 1, of the elements of
+     * this {@code LongQuery}, through a {@link KllSketch} with the default k, whose normalized
+     * rank error is about 1.33%. The results are elements of this query, as long as their
+     * magnitude is at most 2^53, beyond which they are rounded to double values.
+     *
+     * @throws java.util.NoSuchElementException if there are no elements
+     */
+    public final long[] quantiles(double... qs) {
+        double[] estimates = quantileSketch(KllSketch.DEFAULT_K).quantiles(qs);
+        long[] res = new long[estimates.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = (long) estimates[i];
+        }
+        return res;
+    }
+
+    /**
+     * Returns the given quantiles, each one between 0 and 1, of the elements of this
+     * {@code LongQuery}, which are the least elements whose rank is at least q * count().
+     * The elements are buffered without boxing and each quantile is found through
+     * quickselect, in linear expected time, instead of a full sort.
+     *
+     * @throws java.util.NoSuchElementException if there are no elements
+     */
+    public final long[] exactQuantiles(double... qs) {
+        MaterializationEvent event = MaterializationEvent.start("exactQuantiles");
+        LongArrayBox box = new LongArrayBox();
+        this.execute(box::add);
+        MaterializationEvent.finish(event, plan, box.length(), Long.BYTES);
+        return Sorts.quantiles(box.array(), box.length(), qs);
+    }
+
+    /**
+     * Returns an estimate of the number of distinct elements in this {@code LongQuery}, through
+     * a {@link HyperLogLog} sketch of the given precision, between 4 and 18, which takes
+     * 2^precision bytes and has a relative standard error of 1.04 / sqrt(2^precision),
+     * e.g. 16 KB and 0.81% for a precision of 14.
+     */
+    public final long approxCountDistinct(int precision) {
+        HyperLogLog sketch = new HyperLogLog(precision);
+        this.execute(sketch::add);
+        return sketch.estimate();
+    }
+
     /**
      * Returns the count of elements in this {@code LongQuery}.
      */
@@ -314,7 +520,7 @@ public class LongQuery {
             }
         }
         Counter c = new Counter();
-        this.traverse(c);
+        this.execute(c);
         return c.n;
     }
 
@@ -348,7 +554,7 @@ public class LongQuery {
      * are the specified values in data parameter.
      */
     public static LongQuery of(long... data) {
-        return new LongQuery(new LongAdvancerArray(data));
+        return new LongQuery(new LongAdvancerArray(data), QueryPlan.source("of", LongAdvancerArray.class, data.length));
     }
 
     /**
@@ -368,7 +574,7 @@ public class LongQuery {
      */
     public <R> R collect(Supplier<R> supplier, ObjLongConsumer<R> accumulator) {
         R result = supplier.get();
-        this.traverse(elem -> accumulator.accept(result, elem));
+        this.execute(elem -> accumulator.accept(result, elem));
         return result;
     }
 
@@ -383,7 +589,7 @@ public class LongQuery {
      */
     public boolean allMatch(LongPredicate p) {
         BoolBox succeed = new BoolBox(true);
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (!p.test(item)) {
                 succeed.set(false);
                 Yield.bye();
@@ -429,7 +635,7 @@ public class LongQuery {
      */
     public boolean anyMatch(LongPredicate p) {
         BoolBox found = new BoolBox();
-        shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             if (p.test(item)) {
                 found.set();
                 Yield.bye();
@@ -452,7 +658,7 @@ public class LongQuery {
      */
     public OptionalLong findFirst() {
         LongBox box = new LongBox();
-        this.shortCircuit(item -> {
+        this.executeShortCircuit(item -> {
             box.turnPresent(item);
             Yield.bye();
         });
@@ -479,7 +685,9 @@ public class LongQuery {
      *         LongToIntFunction used to map the elements of this LongQuery
      */
     public IntQuery mapToInt(LongToIntFunction function) {
-        return new IntQuery(IntAdvancer.from(adv, function));
+        return new IntQuery(
+            StageProfile.stage(adv, "mapToInt", IntAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_INT, IntAdvancer.class));
     }
 
     /**
@@ -500,7 +708,9 @@ public class LongQuery {
      *         LongToDoubleFunction used to map the elements of this LongQuery
      */
     public DoubleQuery mapToDouble(LongToDoubleFunction function) {
-        return new DoubleQuery(DoubleAdvancer.from(adv, function));
+        return new DoubleQuery(
+            StageProfile.stage(adv, "mapToDouble", DoubleAdvancer.from(adv, function)),
+            plan.then(Operator.MAP_TO_DOUBLE, DoubleAdvancer.class));
     }
 
     /**
@@ -508,7 +718,7 @@ public class LongQuery {
      * each boxed to an Long.
      */
     public Query<Long> boxed() {
-        return new Query<>(adv);
+        return new Query<>(adv, plan.then(Operator.BOXED, LongAdvancer.class));
     }
 
     public LongStream toStream() {
@@ -537,7 +747,7 @@ public class LongQuery {
      * {@code LongTraverser} object that is encapsulated in the resulting {@code LongQuery}.
      */
     public final LongQuery then(Function<LongQuery, LongTraverser> next) {
-        return new LongQuery(new LongAdvancerThen(this, next));
+        return stage(new LongAdvancerThen(this, next, plan), plan.then(Operator.THEN, LongAdvancerThen.class));
     }
 
     /**
@@ -545,7 +755,9 @@ public class LongQuery {
      * this {@code LongQuery} that match the given predicate.
      */
     public final LongQuery takeWhile(LongPredicate predicate) {
-        return new LongQuery(new LongAdvancerTakeWhile(this, predicate));
+        return stage(
+            new LongAdvancerTakeWhile(this, predicate),
+            plan.then(Operator.TAKE_WHILE, LongAdvancerTakeWhile.class));
     }
 
     /**
@@ -554,7 +766,90 @@ public class LongQuery {
      * elements of the other {@code Query}.
      */
     public final LongQuery concat(LongQuery other) {
-        return new LongQuery(new LongAdvancerConcat(this, other));
+        return stage(
+            new LongAdvancerConcat(this, other),
+            plan.then(Operator.CONCAT, LongAdvancerConcat.class, other.plan));
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the elements of all the given queries, which must be
+     * already sorted in ascending order, merged in that order.
+     * Each query is iterated lazily and only its current element is retained.
+     */
+    public static LongQuery mergeSorted(LongQuery... queries) {
+        return combine(Operator.MERGE_SORTED, LongAdvancerMergeSorted.class, LongAdvancerMergeSorted::new, queries);
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the elements common to all the given queries,
+     * which must be already sorted in ascending order.
+     * The queries are leapfrogged, each one skipping ahead to the greatest element
+     * seen so far, which takes logarithmic time on the distance skipped in array
+     * based queries, such as the result of {@link #of} or {@link #sorted()}.
+     */
+    public static LongQuery intersectSorted(LongQuery... queries) {
+        return combine(
+            Operator.INTERSECT_SORTED,
+            LongAdvancerIntersectSorted.class,
+            LongAdvancerIntersectSorted::new,
+            queries);
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the distinct elements of all the given queries,
+     * which must be already sorted in ascending order.
+     */
+    public static LongQuery unionSorted(LongQuery... queries) {
+        return combine(
+            Operator.UNION_SORTED,
+            LongAdvancerMergeSorted.class,
+            sources -> new LongAdvancerMergeSorted(sources, true),
+            queries);
+    }
+
+    /**
+     * Returns a {@code LongQuery} with the elements of the given query that are missing
+     * from all the others, all of them already sorted in ascending order.
+     * The others skip ahead to each element of query, which takes logarithmic time on the
+     * distance skipped in array based queries.
+     */
+    public static LongQuery differenceSorted(LongQuery query, LongQuery... others) {
+        LongQuery[] queries = new LongQuery[others.length + 1];
+        queries[0] = query;
+        System.arraycopy(others, 0, queries, 1, others.length);
+        return combine(
+            Operator.DIFFERENCE_SORTED,
+            LongAdvancerDifferenceSorted.class,
+            sources -> new LongAdvancerDifferenceSorted(sources[0], Arrays.copyOfRange(sources, 1, sources.length)),
+            queries);
+    }
+
+    private static LongQuery combine(
+        Operator operator,
+        Class<?> advancer,
+        Function<LongAdvancer[], LongAdvancer> combiner,
+        LongQuery... queries)
+    {
+        if(queries.length == 0) return LongQuery.of();
+        LongAdvancer[] sources = new LongAdvancer[queries.length];
+        QueryPlan[] others = new QueryPlan[queries.length - 1];
+        for (int i = 0; i < queries.length; i++) {
+            sources[i] = queries[i].adv;
+            if(i > 0) others[i - 1] = queries[i].plan;
+        }
+        return queries[0].stage(combiner.apply(sources), queries[0].plan.then(operator, advancer, others));
+    }
+
+    /**
+     * Returns a {@code LongQuery} where each element of this query is repeated once
+     * for each equal element of the other query, both already sorted in ascending order.
+     * The other query is iterated in lockstep with this query and only the number of
+     * its current run of equal elements is retained.
+     */
+    public final LongQuery mergeJoin(LongQuery other) {
+        return stage(
+            new LongAdvancerMergeJoin(adv, other.adv),
+            plan.then(Operator.MERGE_JOIN, LongAdvancerMergeJoin.class, other.plan));
     }
 
     /**
@@ -562,7 +857,9 @@ public class LongQuery {
      * after discarding the first sequence of elements that match the given Predicate.
      */
     public final LongQuery dropWhile(LongPredicate predicate) {
-        return new LongQuery(new LongAdvancerDropWhile(this, predicate));
+        return stage(
+            new LongAdvancerDropWhile(this, predicate),
+            plan.then(Operator.DROP_WHILE, LongAdvancerDropWhile.class));
     }
 
     /**
@@ -570,6 +867,95 @@ public class LongQuery {
      * sequences, producing a sequence of the results.
      */
     public final LongQuery zip(LongQuery other, LongBinaryOperator zipper) {
-        return new LongQuery(new LongAdvancerZip(this.adv, other.adv, zipper));
+        return stage(
+            new LongAdvancerZip(this.adv, other.adv, zipper),
+            plan.then(Operator.ZIP, LongAdvancerZip.class, other.plan));
+    }
+
+    /**
+     * Returns the physical plan of this {@code LongQuery} when it is consumed by a
+     * terminal operation, showing the advancer of each operation, whether it
+     * is pushed, pulled or buffered, its known size and characteristics and
+     * which operations materialize their input.
+     */
+    public PhysicalPlan explain() {
+        return plan.explain(Traversal.PUSH);
+    }
+
+    /**
+     * Returns an equivalent {@code LongQuery} that profiles each following operation,
+     * counting the elements leaving each stage and timing one element every 64.
+     * After a terminal operation, {@link #explainAnalyze()} reports the selectivity
+     * and the estimated time of each stage.
+     */
+    public LongQuery profiled() {
+        return profiled(64);
+    }
+
+    /**
+     * Returns an equivalent {@code LongQuery} that profiles each following operation,
+     * timing one element every {@code sampleEvery}.
+     *
+     * @see #profiled()
+     */
+    public LongQuery profiled(int sampleEvery) {
+        return new LongQuery(new LongAdvancerProfile(adv, StageProfile.source(sampleEvery)), plan);
+    }
+
+    /**
+     * Returns a report with the elements in and out, the selectivity and the
+     * estimated time of each stage of this profiled {@code LongQuery}, after it
+     * has been consumed.
+     *
+     * @throws IllegalStateException if this query is not profiled.
+     */
+    public String explainAnalyze() {
+        return StageProfile.report(adv);
+    }
+
+    /**
+     * Returns a query with the given advancer as the next stage of this pipeline.
+     */
+    private LongQuery stage(LongAdvancer next, QueryPlan nextPlan) {
+        return new LongQuery(StageProfile.stage(adv, nextPlan.operator(), next), nextPlan);
+    }
+
+    /**
+     * Traverses this query on behalf of a terminal operation, recording
+     * a {@link QueryExecutionEvent} if enabled.
+     */
+    private void execute(LongYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.traverse(yield);
+            return;
+        }
+        try {
+            this.traverse(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
+    }
+
+    /**
+     * Short circuit version of {@link #execute}.
+     */
+    private void executeShortCircuit(LongYield yield) {
+        QueryExecutionEvent event = QueryExecutionEvent.start();
+        if(event == null) {
+            this.shortCircuit(yield);
+            return;
+        }
+        try {
+            this.shortCircuit(item -> {
+                event.element();
+                yield.ret(item);
+            });
+        } finally {
+            event.finish(plan);
+        }
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng;
+
+/**
+ * A {@link LongAdvancer} of ascending elements that is able to skip ahead,
+ * such as an array based source.
+ */
+public interface SeekableLongAdvancer extends LongAdvancer {
+
+    /**
+     * Skips the elements lower than target, so that the next element, if any,
+     * is greater than or equal to target.
+     * Returns true if there is a next element.
+     */
+    boolean advanceTo(long target);
+
+    /**
+     * Returns the given advancer, if it is seekable, or a seekable view of it
+     * that skips elements one by one.
+     */
+    static SeekableLongAdvancer of(LongAdvancer source) {
+        if(source instanceof SeekableLongAdvancer) return (SeekableLongAdvancer) source;
+        return new SeekableLongAdvancer() {
+            private long head;
+            private boolean hasHead;
+
+            @Override
+            public boolean advanceTo(long target) {
+                while(hasNext()) {
+                    long item = nextLong();
+                    if(item >= target) {
+                        head = item;
+                        hasHead = true;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return hasHead || source.hasNext();
+            }
+
+            @Override
+            public long nextLong() {
+                if(hasHead) {
+                    hasHead = false;
+                    return head;
+                }
+                return source.nextLong();
+            }
+
+            @Override
+            public void traverse(LongYield yield) {
+                if(hasHead) {
+                    hasHead = false;
+                    yield.ret(head);
+                }
+                source.traverse(yield);
+            }
+        };
+    }
+}
@@ -18,16 +18,25 @@ package org.jayield.primitives.lng.advs;
 
 import java.util.NoSuchElementException;
 
-import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongYield;
+import org.jayield.primitives.lng.SeekableLongAdvancer;
 
-public class LongAdvancerArray implements LongAdvancer {
+public class LongAdvancerArray implements SeekableLongAdvancer {
     private final long[] data;
+    private final int end;
     private int current;
 
     public LongAdvancerArray(long... data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Advancer of the elements of data from index from, inclusive, to index to, exclusive.
+     */
+    public LongAdvancerArray(long[] data, int from, int to) {
         this.data = data;
-        this.current = 0;
+        this.current = from;
+        this.end = to;
     }
 
 
@@ -40,7 +49,31 @@ public class LongAdvancerArray implements LongAdvancer {
 
     @Override
     public boolean hasNext() {
-        return current < data.length;
+        return current < end;
+    }
+
+    /**
+     * Gallops from the current position, doubling the step until an element
+     * greater than or equal to target, and then binary searches the last step.
+     * Thus it takes O(log d) for a distance d.
+     */
+    @Override
+    public boolean advanceTo(long target) {
+        int lo = current;
+        long step = 1; // A long step, as well as the bound of hi, never overflow on huge arrays.
+        int hi = lo;
+        while(hi < end && data[hi] < target) {
+            lo = hi + 1;
+            hi = (int) Math.min(end, current + step);
+            step <<= 1;
+        }
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if(data[mid] < target) lo = mid + 1;
+            else hi = mid;
+        }
+        current = lo;
+        return current < end;
     }
 
     /**
@@ -51,7 +84,7 @@ public class LongAdvancerArray implements LongAdvancer {
      */
     @Override
     public void traverse(LongYield yield) {
-        for (int i = current; i < data.length; i++) {
+        for (int i = current; i < end; i++) {
             yield.ret(data[i]);
         }
     }
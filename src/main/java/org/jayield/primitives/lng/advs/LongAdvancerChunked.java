@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.jayield.Advancer;
+import org.jayield.Yield;
+import org.jayield.primitives.lng.LongAdvancer;
+
+/**
+ * Advancer of new arrays with the next n elements of the upstream, except the last
+ * one, which has the remaining elements.
+ */
+public class LongAdvancerChunked implements Advancer<long[]> {
+    private final LongAdvancer upstream;
+    private final int n;
+
+    public LongAdvancerChunked(LongAdvancer upstream, int n) {
+        if(n <= 0) throw new IllegalArgumentException("Illegal chunk size: " + n);
+        this.upstream = upstream;
+        this.n = n;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return upstream.hasNext();
+    }
+
+    @Override
+    public long[] next() {
+        if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+        long[] chunk = new long[n];
+        int length = 0;
+        while(length < n && upstream.hasNext()) chunk[length++] = upstream.nextLong();
+        return length == n ? chunk : Arrays.copyOf(chunk, length);
+    }
+
+    @Override
+    public void traverse(Yield<? super long[]> yield) {
+        LongChunker chunker = new LongChunker(n, false,
+            (chunk, length) -> yield.ret(length == n ? chunk : Arrays.copyOf(chunk, length)));
+        upstream.traverse(chunker);
+        chunker.flush();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+import org.jayield.primitives.lng.LongAdvancer;
+import org.jayield.primitives.lng.LongYield;
+import org.jayield.primitives.lng.SeekableLongAdvancer;
+
+/**
+ * The elements of the upstream that are missing from all the other advancers,
+ * all of them in ascending order.
+ * Each of the others is sought to the current upstream element, thus array based
+ * sources are sought in logarithmic time on the distance skipped.
+ */
+public class LongAdvancerDifferenceSorted extends AbstractLongAdvancer {
+    private final LongAdvancer upstream;
+    private final SeekableLongAdvancer[] others;
+    private final long[] heads;
+    private final boolean[] sought;
+
+    public LongAdvancerDifferenceSorted(LongAdvancer upstream, LongAdvancer[] others) {
+        this.upstream = upstream;
+        this.others = new SeekableLongAdvancer[others.length];
+        for (int i = 0; i < others.length; i++) {
+            this.others[i] = SeekableLongAdvancer.of(others[i]);
+        }
+        this.heads = new long[others.length];
+        this.sought = new boolean[others.length];
+    }
+
+    /**
+     * Returns true if some other advancer contains the given item.
+     */
+    private boolean excluded(long item) {
+        for (int i = 0; i < others.length; i++) {
+            if(!sought[i] || heads[i] < item) {
+                if(others[i] == null) continue;
+                if(!others[i].advanceTo(item)) {
+                    others[i] = null;
+                    continue;
+                }
+                heads[i] = others[i].nextLong();
+                sought[i] = true;
+            }
+            if(heads[i] == item) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        while(upstream.hasNext()) {
+            currLong = upstream.nextLong();
+            if(!excluded(currLong)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void traverse(LongYield yield) {
+        upstream.traverse(item -> {
+            if(!excluded(item)) yield.ret(item);
+        });
+    }
+}
@@ -18,15 +18,21 @@ package org.jayield.primitives.lng.advs;
 
 import java.util.HashSet;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongYield;
 
 public class LongAdvancerDistinct extends AbstractLongAdvancer {
     final HashSet<Long> mem = new HashSet<>();
+    private MaterializationEvent event;
+    private boolean started;
     private final LongAdvancer upstream;
+    private final QueryPlan plan;
 
-    public LongAdvancerDistinct(LongAdvancer adv) {
+    public LongAdvancerDistinct(LongAdvancer adv, QueryPlan plan) {
         this.upstream = adv;
+        this.plan = plan;
     }
 
     /**
@@ -34,21 +40,42 @@ public class LongAdvancerDistinct extends AbstractLongAdvancer {
      * signaling it has finished.
      */
     public boolean move() {
+        startEvent();
         while (upstream.hasNext()) {
             currLong = upstream.nextLong();
             if (mem.add(currLong)) {
                 return true;
             }
         }
+        finishEvent();
         return false;
     }
 
     @Override
     public void traverse(LongYield yield) {
-        upstream.traverse(item -> {
-            if (mem.add(item)) {
-                yield.ret(item);
-            }
-        });
+        startEvent();
+        try {
+            upstream.traverse(item -> {
+                if (mem.add(item)) {
+                    yield.ret(item);
+                }
+            });
+        } finally {
+            finishEvent();
+        }
+    }
+
+    /**
+     * Starts the event of this materialization, on the first move or traversal.
+     */
+    private void startEvent() {
+        if(started) return;
+        started = true;
+        event = MaterializationEvent.start("distinct");
+    }
+
+    private void finishEvent() {
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.HASH_ENTRY_BYTES);
+        event = null;
     }
 }
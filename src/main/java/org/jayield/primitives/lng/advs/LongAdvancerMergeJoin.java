@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+import org.jayield.primitives.lng.LongAdvancer;
+import org.jayield.primitives.lng.LongYield;
+
+/**
+ * Sort-merge join of the upstream with another advancer, both sorted in ascending order.
+ * Each upstream element is yielded once per equal element of other, which is
+ * pulled in lockstep with the upstream and only the size of the current run is retained.
+ */
+public class LongAdvancerMergeJoin extends AbstractLongAdvancer {
+    private final LongAdvancer upstream;
+    private final LongAdvancer other;
+    private long runKey;
+    private int runSize;
+    private long pending;
+    private boolean hasPending;
+    private int row;
+
+    public LongAdvancerMergeJoin(LongAdvancer upstream, LongAdvancer other) {
+        this.upstream = upstream;
+        this.other = other;
+    }
+
+    /**
+     * Counts the elements of other equal to key, discarding the lower ones.
+     */
+    private void seek(long key) {
+        if(runSize > 0 && key == runKey) return;
+        runSize = 0;
+        runKey = key;
+        while(hasPending || other.hasNext()) {
+            if(!hasPending) {
+                pending = other.nextLong();
+                hasPending = true;
+            }
+            if(key < pending) return;
+            if(key == pending) runSize++;
+            hasPending = false;
+        }
+    }
+
+    /**
+     * Returns true if it moves successfully. Otherwise returns false
+     * signaling it has finished.
+     */
+    @Override
+    protected boolean move() {
+        while(row >= runSize) {
+            if(!upstream.hasNext()) return false;
+            currLong = upstream.nextLong();
+            seek(currLong);
+            if(runSize == 0 && !hasPending && !other.hasNext()) return false;
+            row = 0;
+        }
+        row++;
+        return true;
+    }
+
+    @Override
+    public void traverse(LongYield yield) {
+        upstream.traverse(item -> {
+            seek(item);
+            for (int i = 0; i < runSize; i++) yield.ret(item);
+        });
+    }
+}
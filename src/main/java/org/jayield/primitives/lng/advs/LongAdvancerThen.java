@@ -19,6 +19,8 @@ package org.jayield.primitives.lng.advs;
 import java.util.ArrayList;
 import java.util.function.Function;
 
+import org.jayield.QueryPlan;
+import org.jayield.metrics.MaterializationEvent;
 import org.jayield.primitives.lng.LongAdvancer;
 import org.jayield.primitives.lng.LongIterator;
 import org.jayield.primitives.lng.LongQuery;
@@ -28,12 +30,14 @@ import org.jayield.primitives.lng.LongYield;
 public class LongAdvancerThen implements LongAdvancer {
     private LongQuery upstream;
     private Function<LongQuery, LongTraverser> next;
+    private final QueryPlan plan;
     private LongIterator curr;
     private boolean inMem = false;
 
-    public LongAdvancerThen(LongQuery upstream, Function<LongQuery, LongTraverser> next) {
+    public LongAdvancerThen(LongQuery upstream, Function<LongQuery, LongTraverser> next, QueryPlan plan) {
         this.upstream = upstream;
         this.next = next;
+        this.plan = plan;
     }
 
     @Override
@@ -45,8 +49,10 @@ public class LongAdvancerThen implements LongAdvancer {
         if (inMem) {
             return curr;
         }
+        MaterializationEvent event = MaterializationEvent.start("then");
         ArrayList<Long> mem = new ArrayList<>();
         next.apply(upstream).traverse(mem::add);
+        MaterializationEvent.finish(event, plan, mem.size(), MaterializationEvent.REFERENCE_BYTES);
         inMem = true;
         curr = LongIterator.from(mem.iterator());
         return curr;
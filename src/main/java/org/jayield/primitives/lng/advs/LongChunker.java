@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+import java.util.function.ObjIntConsumer;
+
+import org.jayield.primitives.lng.LongYield;
+
+/**
+ * Yield collecting the elements into long arrays of a fixed length, which are passed to
+ * the consumer with the number of elements filled, when full or on {@link #flush()}.
+ * It either reuses the same array for all chunks or allocates a new one for each chunk.
+ */
+public final class LongChunker implements LongYield {
+    private final int n;
+    private final boolean reuse;
+    private final ObjIntConsumer<long[]> consumer;
+    private long[] buffer;
+    private int length;
+
+    public LongChunker(int n, boolean reuse, ObjIntConsumer<long[]> consumer) {
+        if(n <= 0) throw new IllegalArgumentException("Illegal chunk size: " + n);
+        this.n = n;
+        this.reuse = reuse;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void ret(long item) {
+        if(buffer == null) buffer = new long[n];
+        buffer[length++] = item;
+        if(length == n) {
+            consumer.accept(buffer, n);
+            length = 0;
+            if(!reuse) buffer = null;
+        }
+    }
+
+    /**
+     * Passes the last chunk, with less than n elements, if any.
+     */
+    public void flush() {
+        if(length > 0) consumer.accept(buffer, length);
+        length = 0;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+/**
+ * State of an aggregate over the last elements of a sequence of long values,
+ * which takes O(1) amortized time per element and never boxes.
+ */
+public interface LongRollingAggregate {
+    /**
+     * Adds the next element and returns true if there is a result for the elements added so far.
+     */
+    boolean add(long item);
+
+    /**
+     * The result for the elements added so far.
+     */
+    long result();
+
+    /**
+     * Sum of the last n elements.
+     */
+    static LongRollingAggregate sum(int n) {
+        return new LongRollingAggregates.Sum(n);
+    }
+
+    /**
+     * Maximum of the last n elements.
+     */
+    static LongRollingAggregate max(int n) {
+        return new LongRollingAggregates.Extreme(n, 1);
+    }
+
+    /**
+     * Minimum of the last n elements.
+     */
+    static LongRollingAggregate min(int n) {
+        return new LongRollingAggregates.Extreme(n, -1);
+    }
+
+    /**
+     * Difference between each element and the previous one, from the second element on.
+     */
+    static LongRollingAggregate deltas() {
+        return new LongRollingAggregate() {
+            private boolean started;
+            private long previous;
+            private long delta;
+
+            @Override
+            public boolean add(long item) {
+                delta = item - previous;
+                previous = item;
+                if(started) return true;
+                started = true;
+                return false;
+            }
+
+            @Override
+            public long result() {
+                return delta;
+            }
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.primitives.lng.advs;
+
+/**
+ * Ring buffer based implementations of {@link LongRollingAggregate}.
+ */
+final class LongRollingAggregates {
+    private LongRollingAggregates() {
+    }
+
+    static int checkWindow(int n) {
+        if(n <= 0) throw new IllegalArgumentException("Illegal window size: " + n);
+        return n;
+    }
+
+    /**
+     * Running sum of a ring buffer with the last n elements.
+     */
+    static final class Sum implements LongRollingAggregate {
+        private final long[] ring;
+        private int count;
+        private int next;
+        private long sum;
+
+        Sum(int n) {
+            this.ring = new long[checkWindow(n)];
+        }
+
+        @Override
+        public boolean add(long item) {
+            sum += item - ring[next];
+            ring[next] = item;
+            next = next + 1 == ring.length ? 0 : next + 1;
+            if(count < ring.length) count++;
+            return count == ring.length;
+        }
+
+        @Override
+        public long result() {
+            return sum;
+        }
+    }
+
+    /**
+     * Maximum, or minimum if the sign is negative, of the last n elements, through a
+     * monotonic deque kept in ring buffers with the candidate values and their positions.
+     * Each element is pushed and removed once.
+     */
+    static final class Extreme implements LongRollingAggregate {
+        private final long[] values;
+        private final long[] positions;
+        private final int sign;
+        private int head;
+        private int length;
+        private long position;
+
+        Extreme(int n, int sign) {
+            this.values = new long[checkWindow(n)];
+            this.positions = new long[n];
+            this.sign = sign;
+        }
+
+        @Override
+        public boolean add(long item) {
+            int n = values.length;
+            while(length > 0 && sign * Long.compare(values[slot(length - 1)], item) <= 0) length--;
+            if(length > 0 && positions[head] <= position - n) {
+                head = slot(1);
+                length--;
+            }
+            int tail = slot(length++);
+            values[tail] = item;
+            positions[tail] = position++;
+            return position >= n;
+        }
+
+        private int slot(int offset) {
+            int i = head + offset;
+            return i < values.length ? i : i - values.length;
+        }
+
+        @Override
+        public long result() {
+            return values[head];
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.sketches;
+
+/**
+ * Bloom filter of items hashed to 64 bits, which never misses an item added and reports
+ * other items as added with a probability near the false positive probability it was sized for.
+ * <p>
+ * For n expected items and a false positive probability p, it takes -n ln(p) / ln(2)^2 bits,
+ * e.g. 1.2 KB for 1000 items and 1%, and sets k = ln(2) * bits / n bits per item, derived
+ * from the hash by double hashing. Filters with the same size are merged through the union
+ * of their bits, thus the filters of disjoint parts of the items can be built in parallel.
+ */
+public final class BloomFilter {
+    private final long[] words;
+    private final long bits;
+    private final int hashes;
+
+    private BloomFilter(long bits, int hashes) {
+        this.words = new long[(int) ((bits + 63) >>> 6)];
+        this.bits = (long) words.length << 6;
+        this.hashes = hashes;
+    }
+
+    /**
+     * A filter for the given number of items with the given false positive probability.
+     */
+    public static BloomFilter of(long expectedSize, double fpp) {
+        if(expectedSize <= 0) throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        if(!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("Illegal false positive probability: " + fpp);
+        double ln2 = Math.log(2);
+        long bits = Math.max(64, (long) Math.ceil(-expectedSize * Math.log(fpp) / (ln2 * ln2)));
+        if(bits > (long) Integer.MAX_VALUE << 6) throw new IllegalArgumentException("Too many bits: " + bits);
+        int hashes = Math.max(1, (int) Math.round((double) bits / expectedSize * ln2));
+        return new BloomFilter(bits, hashes);
+    }
+
+    /**
+     * Adds the given item, which is hashed to 64 bits, so it may be a value or a hash code.
+     * Returns true if any bit changed, so the item was surely not added before, or false
+     * if it might have been added.
+     */
+    public boolean put(long item) {
+        long hash = Sketches.mix64(item);
+        long step = Sketches.mix64(hash) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++, hash += step) {
+            long bit = (hash & Long.MAX_VALUE) % bits;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if((words[word] & mask) == 0) {
+                words[word] |= mask;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns false if the given item was surely not added, or true if it might have been.
+     */
+    public boolean mightContain(long item) {
+        long hash = Sketches.mix64(item);
+        long step = Sketches.mix64(hash) | 1;
+        for (int i = 0; i < hashes; i++, hash += step) {
+            long bit = (hash & Long.MAX_VALUE) % bits;
+            if((words[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the items of the other filter, which must have the same size, to this one.
+     */
+    public BloomFilter merge(BloomFilter other) {
+        if(other.bits != bits || other.hashes != hashes) {
+            throw new IllegalArgumentException("Cannot merge Bloom filters of different sizes");
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * The probability of false positives for the current number of bits set.
+     */
+    public double expectedFpp() {
+        long set = 0;
+        for (long word : words) set += Long.bitCount(word);
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    public long bitSize() {
+        return bits;
+    }
+}
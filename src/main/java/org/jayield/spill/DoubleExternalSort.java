@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jayield.SortOptions;
+import org.jayield.primitives.Sorts;
+import org.jayield.primitives.dbl.DoubleAdvancer;
+import org.jayield.primitives.dbl.DoubleQuery;
+import org.jayield.primitives.dbl.DoubleYield;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerArray;
+import org.jayield.primitives.dbl.advs.DoubleAdvancerMergeSorted;
+
+/**
+ * External sort of double values, which are spilled in binary runs of Double.BYTES each.
+ * Runs take up to half of the budget, leaving the other half for the scratch space
+ * of the radix or parallel sort.
+ */
+public final class DoubleExternalSort extends ExternalSort<DoubleAdvancer> {
+    private final int capacity;
+    private double[] buffer = new double[0];
+    private int length;
+
+    public DoubleExternalSort(SortOptions options) {
+        super(options);
+        // Sorts.sort may take a scratch array of the same length of the run.
+        this.capacity = capacity(2 * Double.BYTES);
+    }
+
+    /**
+     * Returns an advancer of the elements of the given query sorted according to
+     * {@code Arrays.sort(double[] a)}, which is eagerly traversed.
+     */
+    public DoubleAdvancer sort(DoubleQuery query) {
+        query.traverse(this::add);
+        Sorts.sort(buffer, 0, length);
+        sorted(length);
+        return result(new DoubleAdvancerArray(buffer, 0, length));
+    }
+
+    private void add(double item) {
+        if(length == buffer.length) {
+            if(length == capacity) {
+                Sorts.sort(buffer, 0, length);
+                sorted(length);
+                spill(new DoubleAdvancerArray(buffer));
+                length = 0;
+            } else {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(16, 2L * length)));
+            }
+        }
+        buffer[length++] = item;
+    }
+
+    @Override
+    void write(DoubleAdvancer sorted, Path run) throws IOException {
+        try (PrimitiveRun out = PrimitiveRun.output(run)) {
+            while(sorted.hasNext()) out.buffer(Double.BYTES).putDouble(sorted.nextDouble());
+        }
+    }
+
+    @Override
+    DoubleAdvancer read(Path run) throws IOException {
+        PrimitiveRun in = open(run, PrimitiveRun.input(run));
+        return new DoubleAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(in.hasNext(Double.BYTES)) return true;
+                release(run);
+                return false;
+            }
+
+            @Override
+            public double nextDouble() {
+                if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+                return in.buffer(Double.BYTES).getDouble();
+            }
+
+            @Override
+            public void traverse(DoubleYield yield) {
+                while(hasNext()) yield.ret(in.buffer(Double.BYTES).getDouble());
+            }
+        };
+    }
+
+    @Override
+    DoubleAdvancer releasing(DoubleAdvancer result) {
+        return new DoubleAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(result.hasNext()) return true;
+                release();
+                return false;
+            }
+
+            @Override
+            public double nextDouble() {
+                return result.nextDouble();
+            }
+
+            @Override
+            public void traverse(DoubleYield yield) {
+                try {
+                    result.traverse(yield);
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
+    @Override
+    DoubleAdvancer merge(List<DoubleAdvancer> sources) {
+        return new DoubleAdvancerMergeSorted(sources.toArray(new DoubleAdvancer[0]));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jayield.SortOptions;
+
+/**
+ * External merge sort producing advancers of type A.
+ * Subclasses sort runs of elements in memory, up to the budget of the {@link SortOptions},
+ * and spill them to temporary files. The sorted elements are then streamed from a k-way
+ * merge of the spilled runs and the last run, which is kept in memory.
+ * Runs are merged in levels of at most {@link #FAN_IN} runs, which bounds the number
+ * of files open, and buffers taken, by each merge.
+ * Each run file is deleted once fully read. All the remaining runs are closed and deleted
+ * when the result is short-circuited, or when this sort becomes unreachable, which
+ * happens once its result is abandoned, or when the sort itself fails.
+ */
+public abstract class ExternalSort<A> {
+    static final int FAN_IN = 64;
+    static final int IO_BUFFER = 1 << 16;
+    static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final SortOptions options;
+    private final List<List<Path>> levels = new ArrayList<>();
+    private final Runs files = new Runs();
+    private long size;
+    private int spilled;
+
+    ExternalSort(SortOptions options) {
+        this.options = options;
+        CLEANER.register(this, files);
+    }
+
+    /**
+     * The run files not yet deleted, each one with its reader, or null if it is not being read.
+     * Kept apart from the sort, which the cleaner action must not reach.
+     */
+    private static final class Runs implements Runnable {
+        private final Map<Path, Closeable> files = new HashMap<>();
+
+        synchronized void add(Path run) {
+            files.put(run, null);
+        }
+
+        synchronized void open(Path run, Closeable reader) {
+            files.put(run, reader);
+        }
+
+        void release(Path run) {
+            Closeable reader;
+            synchronized (this) {
+                if(!files.containsKey(run)) return;
+                reader = files.remove(run);
+            }
+            try {
+                if(reader != null) reader.close();
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Path> all;
+            synchronized (this) {
+                all = new ArrayList<>(files.keySet());
+            }
+            for (Path run : all) release(run);
+        }
+    }
+
+    /**
+     * The number of elements of the given bytes each, that fit in the budget.
+     */
+    final int capacity(int bytes) {
+        return (int) Math.max(1, Math.min(options.budget() / bytes, MAX_ARRAY));
+    }
+
+    /**
+     * Writes all the elements of the given advancer to the given run.
+     */
+    abstract void write(A sorted, Path run) throws IOException;
+
+    /**
+     * Returns an advancer reading the given run, which opens it through {@link #open}
+     * and releases it through {@link #release(Path)} at the end.
+     */
+    abstract A read(Path run) throws IOException;
+
+    abstract A merge(List<A> sources);
+
+    /**
+     * Returns an advancer of the given result that releases all the runs at the end of a
+     * traversal, either exhausted or short-circuited.
+     */
+    abstract A releasing(A result);
+
+    /**
+     * Tracks the given reader of the given run, to be closed when the run is released.
+     */
+    final <C extends Closeable> C open(Path run, C reader) {
+        files.open(run, reader);
+        return reader;
+    }
+
+    /**
+     * Closes the reader of the given run and deletes it.
+     */
+    final void release(Path run) {
+        files.release(run);
+    }
+
+    /**
+     * Closes and deletes all the runs not yet released.
+     */
+    final void release() {
+        files.run();
+    }
+
+    /**
+     * Counts the given number of elements sorted so far.
+     */
+    final void sorted(int elements) {
+        size += elements;
+    }
+
+    /**
+     * Spills the given sorted run, merging the runs of each level that reaches {@link #FAN_IN}
+     * runs into a single run of the next level.
+     */
+    final void spill(A sorted) {
+        try {
+            spill(sorted, 0);
+            spilled++;
+            for (int level = 0; levels.get(level).size() == FAN_IN; level++) {
+                List<Path> runs = levels.get(level);
+                A merged = merge(readers(runs));
+                runs.clear();
+                spill(merged, level + 1);
+            }
+        } catch (IOException e) {
+            release();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void spill(A sorted, int level) throws IOException {
+        Path run = Files.createTempFile(options.dir(), "jayield-run-", ".tmp");
+        files.add(run);
+        write(sorted, run);
+        if(level == levels.size()) levels.add(new ArrayList<>());
+        levels.get(level).add(run);
+    }
+
+    private List<A> readers(List<Path> runs) throws IOException {
+        List<A> res = new ArrayList<>(runs.size() + 1);
+        for (Path run : runs) res.add(read(run));
+        return res;
+    }
+
+    /**
+     * Returns the merge of all spilled runs with the given last run, or
+     * just the last run if there were no spills.
+     */
+    final A result(A last) {
+        if(spilled == 0) return last;
+        try {
+            List<Path> runs = new ArrayList<>();
+            for (List<Path> level : levels) runs.addAll(level);
+            List<A> res = readers(runs);
+            res.add(last);
+            return releasing(merge(res));
+        } catch (IOException e) {
+            release();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The number of elements sorted.
+     */
+    public final long size() {
+        return size;
+    }
+
+    /**
+     * The number of runs spilled to disk, not counting those merged from other runs.
+     */
+    public final int spilled() {
+        return spilled;
+    }
+}
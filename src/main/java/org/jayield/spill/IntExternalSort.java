@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jayield.SortOptions;
+import org.jayield.primitives.Sorts;
+import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.intgr.IntQuery;
+import org.jayield.primitives.intgr.IntYield;
+import org.jayield.primitives.intgr.advs.IntAdvancerArray;
+import org.jayield.primitives.intgr.advs.IntAdvancerMergeSorted;
+
+/**
+ * External sort of int values, which are spilled in binary runs of Integer.BYTES each.
+ * Runs take up to half of the budget, leaving the other half for the scratch space
+ * of the radix or parallel sort.
+ */
+public final class IntExternalSort extends ExternalSort<IntAdvancer> {
+    private final int capacity;
+    private int[] buffer = new int[0];
+    private int length;
+
+    public IntExternalSort(SortOptions options) {
+        super(options);
+        // Sorts.sort may take a scratch array of the same length of the run.
+        this.capacity = capacity(2 * Integer.BYTES);
+    }
+
+    /**
+     * Returns an advancer of the elements of the given query sorted according to
+     * {@code Arrays.sort(int[] a)}, which is eagerly traversed.
+     */
+    public IntAdvancer sort(IntQuery query) {
+        query.traverse(this::add);
+        Sorts.sort(buffer, 0, length);
+        sorted(length);
+        return result(new IntAdvancerArray(buffer, 0, length));
+    }
+
+    private void add(int item) {
+        if(length == buffer.length) {
+            if(length == capacity) {
+                Sorts.sort(buffer, 0, length);
+                sorted(length);
+                spill(new IntAdvancerArray(buffer));
+                length = 0;
+            } else {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(16, 2L * length)));
+            }
+        }
+        buffer[length++] = item;
+    }
+
+    @Override
+    void write(IntAdvancer sorted, Path run) throws IOException {
+        try (PrimitiveRun out = PrimitiveRun.output(run)) {
+            while(sorted.hasNext()) out.buffer(Integer.BYTES).putInt(sorted.nextInt());
+        }
+    }
+
+    @Override
+    IntAdvancer read(Path run) throws IOException {
+        PrimitiveRun in = open(run, PrimitiveRun.input(run));
+        return new IntAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(in.hasNext(Integer.BYTES)) return true;
+                release(run);
+                return false;
+            }
+
+            @Override
+            public int nextInt() {
+                if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+                return in.buffer(Integer.BYTES).getInt();
+            }
+
+            @Override
+            public void traverse(IntYield yield) {
+                while(hasNext()) yield.ret(in.buffer(Integer.BYTES).getInt());
+            }
+        };
+    }
+
+    @Override
+    IntAdvancer releasing(IntAdvancer result) {
+        return new IntAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(result.hasNext()) return true;
+                release();
+                return false;
+            }
+
+            @Override
+            public int nextInt() {
+                return result.nextInt();
+            }
+
+            @Override
+            public void traverse(IntYield yield) {
+                try {
+                    result.traverse(yield);
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
+    @Override
+    IntAdvancer merge(List<IntAdvancer> sources) {
+        return new IntAdvancerMergeSorted(sources.toArray(new IntAdvancer[0]));
+    }
+}
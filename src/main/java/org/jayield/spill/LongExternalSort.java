@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jayield.SortOptions;
+import org.jayield.primitives.Sorts;
+import org.jayield.primitives.lng.LongAdvancer;
+import org.jayield.primitives.lng.LongQuery;
+import org.jayield.primitives.lng.LongYield;
+import org.jayield.primitives.lng.advs.LongAdvancerArray;
+import org.jayield.primitives.lng.advs.LongAdvancerMergeSorted;
+
+/**
+ * External sort of long values, which are spilled in binary runs of Long.BYTES each.
+ * Runs take up to half of the budget, leaving the other half for the scratch space
+ * of the radix or parallel sort.
+ */
+public final class LongExternalSort extends ExternalSort<LongAdvancer> {
+    private final int capacity;
+    private long[] buffer = new long[0];
+    private int length;
+
+    public LongExternalSort(SortOptions options) {
+        super(options);
+        // Sorts.sort may take a scratch array of the same length of the run.
+        this.capacity = capacity(2 * Long.BYTES);
+    }
+
+    /**
+     * Returns an advancer of the elements of the given query sorted according to
+     * {@code Arrays.sort(long[] a)}, which is eagerly traversed.
+     */
+    public LongAdvancer sort(LongQuery query) {
+        query.traverse(this::add);
+        Sorts.sort(buffer, 0, length);
+        sorted(length);
+        return result(new LongAdvancerArray(buffer, 0, length));
+    }
+
+    private void add(long item) {
+        if(length == buffer.length) {
+            if(length == capacity) {
+                Sorts.sort(buffer, 0, length);
+                sorted(length);
+                spill(new LongAdvancerArray(buffer));
+                length = 0;
+            } else {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(16, 2L * length)));
+            }
+        }
+        buffer[length++] = item;
+    }
+
+    @Override
+    void write(LongAdvancer sorted, Path run) throws IOException {
+        try (PrimitiveRun out = PrimitiveRun.output(run)) {
+            while(sorted.hasNext()) out.buffer(Long.BYTES).putLong(sorted.nextLong());
+        }
+    }
+
+    @Override
+    LongAdvancer read(Path run) throws IOException {
+        PrimitiveRun in = open(run, PrimitiveRun.input(run));
+        return new LongAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(in.hasNext(Long.BYTES)) return true;
+                release(run);
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+                return in.buffer(Long.BYTES).getLong();
+            }
+
+            @Override
+            public void traverse(LongYield yield) {
+                while(hasNext()) yield.ret(in.buffer(Long.BYTES).getLong());
+            }
+        };
+    }
+
+    @Override
+    LongAdvancer releasing(LongAdvancer result) {
+        return new LongAdvancer() {
+            @Override
+            public boolean hasNext() {
+                if(result.hasNext()) return true;
+                release();
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                return result.nextLong();
+            }
+
+            @Override
+            public void traverse(LongYield yield) {
+                try {
+                    result.traverse(yield);
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
+    @Override
+    LongAdvancer merge(List<LongAdvancer> sources) {
+        return new LongAdvancerMergeSorted(sources.toArray(new LongAdvancer[0]));
+    }
+}
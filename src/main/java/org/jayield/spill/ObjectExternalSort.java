@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.jayield.Advancer;
+import org.jayield.Query;
+import org.jayield.Serializer;
+import org.jayield.SortOptions;
+import org.jayield.Yield;
+import org.jayield.advs.AdvancerArray;
+import org.jayield.advs.AdvancerMergeSorted;
+
+/**
+ * External sort of objects, which are spilled through a {@link Serializer}.
+ * Each element of a run is preceded by a true boolean and the run ends with a false one.
+ * The budget is split by the estimate of {@link SortOptions#objectBytes()} per element.
+ */
+public final class ObjectExternalSort<T> extends ExternalSort<Advancer<T>> {
+    private final Comparator<? super T> comparator;
+    private final Serializer<T> serializer;
+    private final int capacity;
+    private Object[] buffer = new Object[0];
+    private int length;
+
+    public ObjectExternalSort(Comparator<? super T> comparator, SortOptions options, Serializer<T> serializer) {
+        super(options);
+        this.comparator = comparator;
+        this.serializer = serializer;
+        this.capacity = capacity(options.objectBytes());
+    }
+
+    /**
+     * Returns an advancer of the elements of the given query sorted according to
+     * the comparator, which is eagerly traversed.
+     */
+    @SuppressWarnings("unchecked")
+    public Advancer<T> sort(Query<T> query) {
+        query.traverse(this::add);
+        Arrays.sort((T[]) buffer, 0, length, comparator);
+        sorted(length);
+        return result(new AdvancerArray<>((T[]) buffer, 0, length));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(T item) {
+        if(length == buffer.length) {
+            if(length == capacity) {
+                Arrays.sort((T[]) buffer, comparator);
+                sorted(length);
+                spill(new AdvancerArray<>((T[]) buffer));
+                Arrays.fill(buffer, null);
+                length = 0;
+            } else {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(16, 2L * length)));
+            }
+        }
+        buffer[length++] = item;
+    }
+
+    @Override
+    void write(Advancer<T> sorted, Path run) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER)))
+        {
+            while(sorted.hasNext()) {
+                out.writeBoolean(true);
+                serializer.write(out, sorted.next());
+            }
+            out.writeBoolean(false);
+        }
+    }
+
+    @Override
+    Advancer<T> read(Path run) throws IOException {
+        DataInputStream in = open(
+            run,
+            new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER)));
+        return new Advancer<T>() {
+            private boolean next;
+            private boolean eof;
+
+            @Override
+            public boolean hasNext() {
+                if(next) return true;
+                if(eof) return false;
+                try {
+                    next = in.readBoolean();
+                    if(!next) {
+                        eof = true;
+                        release(run);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next;
+            }
+
+            @Override
+            public T next() {
+                if(!hasNext()) throw new NoSuchElementException("No more elements available on iteration!");
+                next = false;
+                try {
+                    return serializer.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void traverse(Yield<? super T> yield) {
+                while(hasNext()) yield.ret(next());
+            }
+        };
+    }
+
+    @Override
+    Advancer<T> releasing(Advancer<T> result) {
+        return new Advancer<T>() {
+            @Override
+            public boolean hasNext() {
+                if(result.hasNext()) return true;
+                release();
+                return false;
+            }
+
+            @Override
+            public T next() {
+                return result.next();
+            }
+
+            @Override
+            public void traverse(Yield<? super T> yield) {
+                try {
+                    result.traverse(yield);
+                } finally {
+                    release();
+                }
+            }
+        };
+    }
+
+    @Override
+    Advancer<T> merge(List<Advancer<T>> sources) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Advancer<T>[] res = sources.toArray(new Advancer[0]);
+        return new AdvancerMergeSorted<>(res, comparator);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.spill;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary run of fixed size primitive values, buffered through a {@link ByteBuffer}.
+ */
+final class PrimitiveRun implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(ExternalSort.IO_BUFFER);
+    private final boolean output;
+    private boolean eof;
+
+    private PrimitiveRun(Path path, boolean output) throws IOException {
+        this.output = output;
+        this.channel = output
+            ? FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+            : FileChannel.open(path, StandardOpenOption.READ);
+        if(!output) buffer.flip();
+    }
+
+    static PrimitiveRun output(Path path) throws IOException {
+        return new PrimitiveRun(path, true);
+    }
+
+    static PrimitiveRun input(Path path) throws IOException {
+        return new PrimitiveRun(path, false);
+    }
+
+    /**
+     * Returns the buffer with at least the given number of bytes remaining,
+     * after writing or reading the buffer as needed.
+     */
+    ByteBuffer buffer(int bytes) {
+        if(buffer.remaining() >= bytes) return buffer;
+        try {
+            if(output) {
+                flush();
+            } else {
+                buffer.compact();
+                while(!eof && buffer.hasRemaining()) eof = channel.read(buffer) < 0;
+                buffer.flip();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns true if there are at least the given number of bytes to read.
+     */
+    boolean hasNext(int bytes) {
+        return buffer(bytes).remaining() >= bytes;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!channel.isOpen()) return;
+        if(output) flush();
+        channel.close();
+    }
+}
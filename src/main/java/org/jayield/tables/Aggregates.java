@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * The aggregates of all groups of a groupBy, indexed by the dense id of each group.
+ * The provided implementations keep the state of all groups in flat arrays,
+ * thus aggregating an element allocates nothing beyond what its mapper allocates.
+ */
+public abstract class Aggregates<T, R> {
+
+    /**
+     * Starts a new group with its first element, where group is the number of previous groups.
+     */
+    public abstract void first(int group, T item);
+
+    /**
+     * Aggregates another element of an existing group.
+     */
+    public abstract void add(int group, T item);
+
+    /**
+     * The aggregate of the given group.
+     */
+    public abstract R result(int group);
+
+    /**
+     * Merges the given group of other aggregates, of the same kind, into the given group.
+     * If first, then group is a new group, with no elements yet.
+     */
+    public abstract void merge(int group, boolean first, Aggregates<?, R> other, int from);
+
+    static int grow(int length) {
+        return Math.max(16, length * 2);
+    }
+
+    static class LongColumn<T> extends Aggregates<T, Long> {
+        private final ToLongFunction<? super T> mapper;
+        private final LongBinaryOperator op;
+        private long[] values = new long[0];
+
+        LongColumn(ToLongFunction<? super T> mapper, LongBinaryOperator op) {
+            this.mapper = mapper;
+            this.op = op;
+        }
+
+        @Override
+        public void first(int group, T item) {
+            if(group == values.length) values = Arrays.copyOf(values, grow(group));
+            values[group] = mapper.applyAsLong(item);
+        }
+
+        @Override
+        public void add(int group, T item) {
+            values[group] = op.applyAsLong(values[group], mapper.applyAsLong(item));
+        }
+
+        @Override
+        public Long result(int group) {
+            return values[group];
+        }
+
+        @Override
+        public void merge(int group, boolean first, Aggregates<?, Long> other, int from) {
+            long value = ((LongColumn<?>) other).values[from];
+            if(first) {
+                if(group == values.length) values = Arrays.copyOf(values, grow(group));
+                values[group] = value;
+            } else {
+                values[group] = op.applyAsLong(values[group], value);
+            }
+        }
+    }
+
+    static class DoubleColumn<T> extends Aggregates<T, Double> {
+        private final ToDoubleFunction<? super T> mapper;
+        private final DoubleBinaryOperator op;
+        private double[] values = new double[0];
+
+        DoubleColumn(ToDoubleFunction<? super T> mapper, DoubleBinaryOperator op) {
+            this.mapper = mapper;
+            this.op = op;
+        }
+
+        @Override
+        public void first(int group, T item) {
+            if(group == values.length) values = Arrays.copyOf(values, grow(group));
+            values[group] = mapper.applyAsDouble(item);
+        }
+
+        @Override
+        public void add(int group, T item) {
+            values[group] = op.applyAsDouble(values[group], mapper.applyAsDouble(item));
+        }
+
+        @Override
+        public Double result(int group) {
+            return values[group];
+        }
+
+        @Override
+        public void merge(int group, boolean first, Aggregates<?, Double> other, int from) {
+            double value = ((DoubleColumn<?>) other).values[from];
+            if(first) {
+                if(group == values.length) values = Arrays.copyOf(values, grow(group));
+                values[group] = value;
+            } else {
+                values[group] = op.applyAsDouble(values[group], value);
+            }
+        }
+    }
+
+    static class AvgColumn<T> extends Aggregates<T, Double> {
+        private final ToDoubleFunction<? super T> mapper;
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        AvgColumn(ToDoubleFunction<? super T> mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public void first(int group, T item) {
+            if(group == sums.length) {
+                sums = Arrays.copyOf(sums, grow(group));
+                counts = Arrays.copyOf(counts, sums.length);
+            }
+            sums[group] = mapper.applyAsDouble(item);
+            counts[group] = 1;
+        }
+
+        @Override
+        public void add(int group, T item) {
+            sums[group] += mapper.applyAsDouble(item);
+            counts[group]++;
+        }
+
+        @Override
+        public Double result(int group) {
+            return sums[group] / counts[group];
+        }
+
+        @Override
+        public void merge(int group, boolean first, Aggregates<?, Double> other, int from) {
+            AvgColumn<?> src = (AvgColumn<?>) other;
+            if(first) {
+                if(group == sums.length) {
+                    sums = Arrays.copyOf(sums, grow(group));
+                    counts = Arrays.copyOf(counts, sums.length);
+                }
+                sums[group] = src.sums[from];
+                counts[group] = src.counts[from];
+            } else {
+                sums[group] += src.sums[from];
+                counts[group] += src.counts[from];
+            }
+        }
+    }
+
+    static class ObjectColumn<T, C> extends Aggregates<T, C> {
+        private final Supplier<C> supplier;
+        private final BiConsumer<C, ? super T> accumulator;
+        private final BiConsumer<C, C> combiner;
+        private Object[] containers = new Object[0];
+
+        ObjectColumn(Supplier<C> supplier, BiConsumer<C, ? super T> accumulator, BiConsumer<C, C> combiner) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        public void first(int group, T item) {
+            if(group == containers.length) containers = Arrays.copyOf(containers, grow(group));
+            C container = supplier.get();
+            containers[group] = container;
+            accumulator.accept(container, item);
+        }
+
+        @Override
+        public void add(int group, T item) {
+            accumulator.accept(result(group), item);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public C result(int group) {
+            return (C) containers[group];
+        }
+
+        @Override
+        public void merge(int group, boolean first, Aggregates<?, C> other, int from) {
+            C container = other.result(from);
+            if(first) {
+                if(group == containers.length) containers = Arrays.copyOf(containers, grow(group));
+                containers[group] = container;
+            } else if(combiner == null) {
+                throw new UnsupportedOperationException("Cannot merge groups collected without a combiner!");
+            } else {
+                combiner.accept(result(group), container);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Describes how to aggregate the elements of each group of a groupBy,
+ * through the {@link Aggregates} it creates for each execution.
+ */
+@FunctionalInterface
+public interface Aggregator<T, R> {
+
+    /**
+     * Returns new and empty aggregates.
+     */
+    Aggregates<T, R> aggregates();
+
+    /**
+     * The number of elements of each group.
+     */
+    static <T> Aggregator<T, Long> count() {
+        return () -> new Aggregates.LongColumn<>(item -> 1L, Long::sum);
+    }
+
+    static <T> Aggregator<T, Long> sumLong(ToLongFunction<? super T> mapper) {
+        return () -> new Aggregates.LongColumn<>(mapper, Long::sum);
+    }
+
+    static <T> Aggregator<T, Double> sumDouble(ToDoubleFunction<? super T> mapper) {
+        return () -> new Aggregates.DoubleColumn<>(mapper, Double::sum);
+    }
+
+    static <T> Aggregator<T, Long> minLong(ToLongFunction<? super T> mapper) {
+        return () -> new Aggregates.LongColumn<>(mapper, Math::min);
+    }
+
+    static <T> Aggregator<T, Long> maxLong(ToLongFunction<? super T> mapper) {
+        return () -> new Aggregates.LongColumn<>(mapper, Math::max);
+    }
+
+    static <T> Aggregator<T, Double> minDouble(ToDoubleFunction<? super T> mapper) {
+        return () -> new Aggregates.DoubleColumn<>(mapper, Math::min);
+    }
+
+    static <T> Aggregator<T, Double> maxDouble(ToDoubleFunction<? super T> mapper) {
+        return () -> new Aggregates.DoubleColumn<>(mapper, Math::max);
+    }
+
+    /**
+     * The arithmetic mean of the values of each group.
+     */
+    static <T> Aggregator<T, Double> avg(ToDoubleFunction<? super T> mapper) {
+        return () -> new Aggregates.AvgColumn<>(mapper);
+    }
+
+    /**
+     * Performs a mutable reduction of the elements of each group into a container
+     * created by supplier, as {@link org.jayield.Query#collect(Supplier, BiConsumer)}.
+     */
+    static <T, C> Aggregator<T, C> collect(Supplier<C> supplier, BiConsumer<C, ? super T> accumulator) {
+        return () -> new Aggregates.ObjectColumn<>(supplier, accumulator, null);
+    }
+
+    /**
+     * Version of {@link #collect(Supplier, BiConsumer)} whose containers of the same group
+     * may be merged by combiner, which is required by parallel aggregations.
+     */
+    static <T, C> Aggregator<T, C> collect(
+        Supplier<C> supplier,
+        BiConsumer<C, ? super T> accumulator,
+        BiConsumer<C, C> combiner)
+    {
+        return () -> new Aggregates.ObjectColumn<>(supplier, accumulator, combiner);
+    }
+
+    /**
+     * The elements of each group in encounter order.
+     */
+    static <T> Aggregator<T, List<T>> toList() {
+        return collect(ArrayList::new, List::add, List::addAll);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Groups of elements of type T, keyed by K, with an aggregate of type R.
+ * Keys are mapped to dense group ids by an index table, which index the
+ * {@link Aggregates} of all groups.
+ * A table may be split in a power of two partitions, by the high bits of the
+ * key hash, so that the same partition of tables built by different threads
+ * can be merged independently of the other partitions.
+ */
+public abstract class GroupTable<T, K, R> {
+    private final Aggregates<? super T, R>[] aggregates;
+    private final int shift;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private GroupTable(Aggregator<? super T, R> aggregator, int partitions) {
+        this.shift = Tables.shift(partitions);
+        this.aggregates = new Aggregates[partitions];
+        for (int p = 0; p < partitions; p++) {
+            aggregates[p] = aggregator.aggregates();
+        }
+    }
+
+    public static <T, K, R> GroupTable<T, K, R> of(
+        Function<? super T, ? extends K> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return of(keyFn, aggregator, 1);
+    }
+
+    public static <T, K, R> GroupTable<T, K, R> of(
+        Function<? super T, ? extends K> keyFn,
+        Aggregator<? super T, R> aggregator,
+        int partitions)
+    {
+        return new ObjectGroups<>(keyFn, aggregator, partitions);
+    }
+
+    /**
+     * Version of {@link #of} with int keys, which are only boxed in the resulting groups.
+     */
+    public static <T, R> GroupTable<T, Integer, R> ofInt(
+        ToIntFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return ofInt(keyFn, aggregator, 1);
+    }
+
+    public static <T, R> GroupTable<T, Integer, R> ofInt(
+        ToIntFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator,
+        int partitions)
+    {
+        return new IntGroups<>(keyFn, aggregator, partitions);
+    }
+
+    /**
+     * Version of {@link #of} with long keys, which are only boxed in the resulting groups.
+     */
+    public static <T, R> GroupTable<T, Long, R> ofLong(
+        ToLongFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return ofLong(keyFn, aggregator, 1);
+    }
+
+    public static <T, R> GroupTable<T, Long, R> ofLong(
+        ToLongFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator,
+        int partitions)
+    {
+        return new LongGroups<>(keyFn, aggregator, partitions);
+    }
+
+    /**
+     * Aggregates the given element in its group.
+     */
+    public abstract void add(T item);
+
+    /**
+     * Number of groups in the given partition.
+     */
+    public abstract int size(int partition);
+
+    public abstract K key(int partition, int group);
+
+    /**
+     * Adds the key of the given group of other, of the same kind, to the given partition,
+     * returning its group id.
+     */
+    abstract int addKey(int partition, GroupTable<T, K, R> other, int group);
+
+    public final int partitions() {
+        return aggregates.length;
+    }
+
+    final int partition(int mixedHash) {
+        return Tables.partition(mixedHash, shift);
+    }
+
+    final void aggregate(int partition, int group, boolean first, T item) {
+        if(first) aggregates[partition].first(group, item);
+        else aggregates[partition].add(group, item);
+    }
+
+    /**
+     * Merges the given partition of other, built with the same key function,
+     * aggregator and number of partitions, into the same partition of this table.
+     */
+    public final void merge(GroupTable<T, K, R> other, int partition) {
+        for (int from = 0; from < other.size(partition); from++) {
+            int groups = size(partition);
+            int group = addKey(partition, other, from);
+            aggregates[partition].merge(group, group == groups, other.aggregates[partition], from);
+        }
+    }
+
+    public final Map.Entry<K, R> group(int partition, int group) {
+        return new SimpleImmutableEntry<>(key(partition, group), aggregates[partition].result(group));
+    }
+
+    private static final class ObjectGroups<T, K, R> extends GroupTable<T, K, R> {
+        private final Function<? super T, ? extends K> keyFn;
+        private final ObjectIndexTable<K>[] indexes;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ObjectGroups(Function<? super T, ? extends K> keyFn, Aggregator<? super T, R> aggregator, int partitions) {
+            super(aggregator, partitions);
+            this.keyFn = keyFn;
+            this.indexes = new ObjectIndexTable[partitions];
+            for (int p = 0; p < partitions; p++) indexes[p] = new ObjectIndexTable<>();
+        }
+
+        @Override
+        public void add(T item) {
+            K key = keyFn.apply(item);
+            int p = indexes.length == 1 ? 0 : partition(Tables.mix(Objects.hashCode(key)));
+            int groups = indexes[p].size();
+            int group = indexes[p].add(key);
+            aggregate(p, group, group == groups, item);
+        }
+
+        @Override
+        public int size(int partition) {
+            return indexes[partition].size();
+        }
+
+        @Override
+        public K key(int partition, int group) {
+            return indexes[partition].key(group);
+        }
+
+        @Override
+        int addKey(int partition, GroupTable<T, K, R> other, int group) {
+            return indexes[partition].add(other.key(partition, group));
+        }
+    }
+
+    private static final class IntGroups<T, R> extends GroupTable<T, Integer, R> {
+        private final ToIntFunction<? super T> keyFn;
+        private final IntIndexTable[] indexes;
+
+        IntGroups(ToIntFunction<? super T> keyFn, Aggregator<? super T, R> aggregator, int partitions) {
+            super(aggregator, partitions);
+            this.keyFn = keyFn;
+            this.indexes = new IntIndexTable[partitions];
+            for (int p = 0; p < partitions; p++) indexes[p] = new IntIndexTable();
+        }
+
+        @Override
+        public void add(T item) {
+            int key = keyFn.applyAsInt(item);
+            int p = indexes.length == 1 ? 0 : partition(Tables.mix(key));
+            int groups = indexes[p].size();
+            int group = indexes[p].add(key);
+            aggregate(p, group, group == groups, item);
+        }
+
+        @Override
+        public int size(int partition) {
+            return indexes[partition].size();
+        }
+
+        @Override
+        public Integer key(int partition, int group) {
+            return indexes[partition].key(group);
+        }
+
+        @Override
+        int addKey(int partition, GroupTable<T, Integer, R> other, int group) {
+            return indexes[partition].add(((IntGroups<T, R>) other).indexes[partition].key(group));
+        }
+    }
+
+    private static final class LongGroups<T, R> extends GroupTable<T, Long, R> {
+        private final ToLongFunction<? super T> keyFn;
+        private final LongIndexTable[] indexes;
+
+        LongGroups(ToLongFunction<? super T> keyFn, Aggregator<? super T, R> aggregator, int partitions) {
+            super(aggregator, partitions);
+            this.keyFn = keyFn;
+            this.indexes = new LongIndexTable[partitions];
+            for (int p = 0; p < partitions; p++) indexes[p] = new LongIndexTable();
+        }
+
+        @Override
+        public void add(T item) {
+            long key = keyFn.applyAsLong(item);
+            int p = indexes.length == 1 ? 0 : partition(Tables.mix(key));
+            int groups = indexes[p].size();
+            int group = indexes[p].add(key);
+            aggregate(p, group, group == groups, item);
+        }
+
+        @Override
+        public int size(int partition) {
+            return indexes[partition].size();
+        }
+
+        @Override
+        public Long key(int partition, int group) {
+            return indexes[partition].key(group);
+        }
+
+        @Override
+        int addKey(int partition, GroupTable<T, Long, R> other, int group) {
+            return indexes[partition].add(((LongGroups<T, R>) other).indexes[partition].key(group));
+        }
+    }
+}
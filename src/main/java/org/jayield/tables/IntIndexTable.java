@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table mapping int keys to dense ids, from 0 to size() - 1,
+ * in order of insertion.
+ * Keys are stored unboxed and lookups never allocate.
+ */
+public final class IntIndexTable {
+    private int[] keys;
+    private int[] ids;
+    private int[] keysById;
+    private int size;
+    private int mask;
+
+    public IntIndexTable() {
+        this(16);
+    }
+
+    public IntIndexTable(int expectedSize) {
+        int capacity = Tables.capacity(expectedSize);
+        keys = new int[capacity];
+        ids = new int[capacity];
+        Arrays.fill(ids, -1);
+        keysById = new int[capacity / 2];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the id of the given key, adding it if absent.
+     */
+    public int add(int key) {
+        int slot = Tables.mix(key) & mask;
+        for (int id; (id = ids[slot]) >= 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) return id;
+        }
+        if(size == keysById.length) {
+            grow();
+            return add(key);
+        }
+        keys[slot] = key;
+        ids[slot] = size;
+        keysById[size] = key;
+        return size++;
+    }
+
+    /**
+     * Returns the id of the given key, or -1 if absent.
+     */
+    public int find(int key) {
+        int slot = Tables.mix(key) & mask;
+        for (int id; (id = ids[slot]) >= 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key with the given id.
+     */
+    public int key(int id) {
+        return keysById[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        int capacity = Tables.grow(keys.length);
+        keys = new int[capacity];
+        ids = new int[capacity];
+        Arrays.fill(ids, -1);
+        mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = Tables.mix(keysById[id]) & mask;
+            while(ids[slot] >= 0) slot = (slot + 1) & mask;
+            keys[slot] = keysById[id];
+            ids[slot] = id;
+        }
+        keysById = Arrays.copyOf(keysById, capacity / 2);
+    }
+}
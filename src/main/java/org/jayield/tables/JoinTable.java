@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.jayield.Query;
+
+/**
+ * Build side of a hash join between probe elements of type T and build rows of type U.
+ * Build keys are mapped to dense ids by an index table and the rows of each key
+ * are chained, in build order, through flat int arrays.
+ * Thus probing a key allocates nothing beyond what its key function allocates.
+ */
+public abstract class JoinTable<T, U> {
+    private final boolean keysOnly;
+    private Object[] rows;
+    private int[] next;
+    private int[] heads;
+    private int[] tails;
+    private int size;
+    private int distinctKeys;
+
+    private JoinTable(boolean keysOnly) {
+        this.keysOnly = keysOnly;
+        if(!keysOnly) {
+            rows = new Object[16];
+            next = new int[16];
+            heads = new int[16];
+            tails = new int[16];
+        }
+    }
+
+    /**
+     * Builds a table with the rows of the given query, keyed by buildKey, which is
+     * probed with the keys of the probe elements given by probeKey.
+     * If keysOnly, then it keeps the keys but not the rows, thus it only supports contains().
+     */
+    public static <T, U, K> JoinTable<T, U> of(
+        Query<U> build,
+        Function<? super T, ? extends K> probeKey,
+        Function<? super U, ? extends K> buildKey,
+        boolean keysOnly)
+    {
+        ObjectIndexTable<K> index = new ObjectIndexTable<>();
+        JoinTable<T, U> table = new JoinTable<T, U>(keysOnly) {
+            @Override
+            protected int find(T probe) {
+                return index.find(probeKey.apply(probe));
+            }
+        };
+        build.traverse(row -> table.add(index.add(buildKey.apply(row)), row));
+        return table;
+    }
+
+    /**
+     * Version of {@link #of} with int keys, which are never boxed.
+     */
+    public static <T, U> JoinTable<T, U> ofInt(
+        Query<U> build,
+        ToIntFunction<? super T> probeKey,
+        ToIntFunction<? super U> buildKey,
+        boolean keysOnly)
+    {
+        IntIndexTable index = new IntIndexTable();
+        JoinTable<T, U> table = new JoinTable<T, U>(keysOnly) {
+            @Override
+            protected int find(T probe) {
+                return index.find(probeKey.applyAsInt(probe));
+            }
+        };
+        build.traverse(row -> table.add(index.add(buildKey.applyAsInt(row)), row));
+        return table;
+    }
+
+    /**
+     * Version of {@link #of} with long keys, which are never boxed.
+     */
+    public static <T, U> JoinTable<T, U> ofLong(
+        Query<U> build,
+        ToLongFunction<? super T> probeKey,
+        ToLongFunction<? super U> buildKey,
+        boolean keysOnly)
+    {
+        LongIndexTable index = new LongIndexTable();
+        JoinTable<T, U> table = new JoinTable<T, U>(keysOnly) {
+            @Override
+            protected int find(T probe) {
+                return index.find(probeKey.applyAsLong(probe));
+            }
+        };
+        build.traverse(row -> table.add(index.add(buildKey.applyAsLong(row)), row));
+        return table;
+    }
+
+    /**
+     * Returns the id of the key of the given probe element, or -1 if absent.
+     */
+    protected abstract int find(T probe);
+
+    private void add(int id, U row) {
+        if(keysOnly) return;
+        if(size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+        if(id == heads.length) {
+            heads = Arrays.copyOf(heads, id * 2);
+            tails = Arrays.copyOf(tails, id * 2);
+        }
+        rows[size] = row;
+        next[size] = -1;
+        if(id == distinctKeys) {
+            heads[id] = size;
+            distinctKeys++;
+        } else {
+            next[tails[id]] = size;
+        }
+        tails[id] = size;
+        size++;
+    }
+
+    /**
+     * Returns true if the build side has a row with the key of the given probe element.
+     */
+    public final boolean contains(T probe) {
+        return find(probe) >= 0;
+    }
+
+    /**
+     * Returns the index of the first row matching the key of the given probe element, or -1 if none.
+     */
+    public final int first(T probe) {
+        int id = find(probe);
+        return id < 0 ? -1 : heads[id];
+    }
+
+    /**
+     * Returns the index of the row following the given one with the same key, or -1 if none.
+     */
+    public final int next(int row) {
+        return next[row];
+    }
+
+    @SuppressWarnings("unchecked")
+    public final U row(int row) {
+        return (U) rows[row];
+    }
+
+    /**
+     * Number of rows in this table.
+     */
+    public final int size() {
+        return size;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+import org.jayield.Query;
+import org.jayield.primitives.intgr.IntQuery;
+import org.jayield.primitives.lng.LongQuery;
+
+/**
+ * Hash aggregations spread across the workers of the common {@link ForkJoinPool}.
+ * The query is traversed by the calling thread, which hands chunks of its elements
+ * to the workers. Each worker aggregates its chunks into its own tables, which are
+ * split in partitions by the high bits of the key hash. Finally, each partition is
+ * merged across the tables of all workers in parallel with the other partitions.
+ * Thus no table is ever shared by two threads at the same time and there are no locks.
+ */
+public final class ParallelAggregation<L> {
+    static final int CHUNK_SIZE = 1 << 12;
+
+    private final Supplier<L> factory;
+    private final ConcurrentHashMap<Thread, L> locals = new ConcurrentHashMap<>();
+    private final ArrayDeque<ForkJoinTask<?>> pending = new ArrayDeque<>();
+    private final int maxPending = 2 * ForkJoinPool.getCommonPoolParallelism();
+
+    private ParallelAggregation(Supplier<L> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * A power of two number of partitions, which is at least twice the parallelism.
+     */
+    public static int partitions() {
+        return Integer.highestOneBit(2 * ForkJoinPool.getCommonPoolParallelism() - 1) << 1;
+    }
+
+    /**
+     * Runs the given aggregation of a chunk in a worker, with the state of that worker.
+     * It waits for the oldest chunk when too many are pending, bounding the memory
+     * taken by chunks when the workers fall behind.
+     */
+    private void submit(Chunk<L> chunk) {
+        if(pending.size() >= maxPending) pending.removeFirst().join();
+        pending.addLast(ForkJoinPool.commonPool().submit(() -> {
+            chunk.aggregate(locals.computeIfAbsent(Thread.currentThread(), t -> factory.get()));
+        }));
+    }
+
+    private List<L> join() {
+        while(!pending.isEmpty()) pending.removeFirst().join();
+        return new ArrayList<>(locals.values());
+    }
+
+    @FunctionalInterface
+    private interface Chunk<L> {
+        void aggregate(L local);
+    }
+
+    private static <T, L> List<L> aggregate(Query<T> query, Supplier<L> factory, ObjChunk<L> task) {
+        ParallelAggregation<L> res = new ParallelAggregation<>(factory);
+        Object[][] chunk = {new Object[CHUNK_SIZE]};
+        int[] size = {0};
+        query.traverse(item -> {
+            chunk[0][size[0]++] = item;
+            if(size[0] == CHUNK_SIZE) {
+                Object[] full = chunk[0];
+                res.submit(local -> task.aggregate(local, full, CHUNK_SIZE));
+                chunk[0] = new Object[CHUNK_SIZE];
+                size[0] = 0;
+            }
+        });
+        Object[] last = chunk[0];
+        int length = size[0];
+        if(length > 0) res.submit(local -> task.aggregate(local, last, length));
+        return res.join();
+    }
+
+    private static <L> List<L> aggregate(IntQuery query, Supplier<L> factory, IntChunk<L> task) {
+        ParallelAggregation<L> res = new ParallelAggregation<>(factory);
+        int[][] chunk = {new int[CHUNK_SIZE]};
+        int[] size = {0};
+        query.traverse(item -> {
+            chunk[0][size[0]++] = item;
+            if(size[0] == CHUNK_SIZE) {
+                int[] full = chunk[0];
+                res.submit(local -> task.aggregate(local, full, CHUNK_SIZE));
+                chunk[0] = new int[CHUNK_SIZE];
+                size[0] = 0;
+            }
+        });
+        int[] last = chunk[0];
+        int length = size[0];
+        if(length > 0) res.submit(local -> task.aggregate(local, last, length));
+        return res.join();
+    }
+
+    private static <L> List<L> aggregate(LongQuery query, Supplier<L> factory, LongChunk<L> task) {
+        ParallelAggregation<L> res = new ParallelAggregation<>(factory);
+        long[][] chunk = {new long[CHUNK_SIZE]};
+        int[] size = {0};
+        query.traverse(item -> {
+            chunk[0][size[0]++] = item;
+            if(size[0] == CHUNK_SIZE) {
+                long[] full = chunk[0];
+                res.submit(local -> task.aggregate(local, full, CHUNK_SIZE));
+                chunk[0] = new long[CHUNK_SIZE];
+                size[0] = 0;
+            }
+        });
+        long[] last = chunk[0];
+        int length = size[0];
+        if(length > 0) res.submit(local -> task.aggregate(local, last, length));
+        return res.join();
+    }
+
+    @FunctionalInterface
+    private interface ObjChunk<L> {
+        void aggregate(L local, Object[] items, int length);
+    }
+
+    @FunctionalInterface
+    private interface IntChunk<L> {
+        void aggregate(L local, int[] items, int length);
+    }
+
+    @FunctionalInterface
+    private interface LongChunk<L> {
+        void aggregate(L local, long[] items, int length);
+    }
+
+    /**
+     * Merges each partition of all the given tables into the first one, in parallel.
+     */
+    private static <S> S[] merge(List<S[]> tables, int partitions, PartitionMerger<S> merger) {
+        if(tables.isEmpty()) return null;
+        S[] res = tables.get(0);
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            for (int i = 1; i < tables.size(); i++) merger.merge(res[p], tables.get(i)[p]);
+        });
+        return res;
+    }
+
+    @FunctionalInterface
+    private interface PartitionMerger<S> {
+        void merge(S target, S source);
+    }
+
+    private static <S> Supplier<S[]> tables(int partitions, IntFunction<S[]> array, Supplier<S> table) {
+        return () -> {
+            S[] res = array.apply(partitions);
+            for (int p = 0; p < partitions; p++) res[p] = table.get();
+            return res;
+        };
+    }
+
+    /**
+     * The distinct elements of the given query, in no particular order, in an
+     * {@code Object[]}, since the runtime type of the elements is unknown.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Object[] distinct(Query<T> query) {
+        int partitions = partitions();
+        int shift = Tables.shift(partitions);
+        ObjectIndexTable<T>[] res = merge(
+            aggregate(
+                query,
+                tables(partitions, ObjectIndexTable[]::new, ObjectIndexTable::new),
+                (tables, items, length) -> {
+                    for (int i = 0; i < length; i++) {
+                        T item = (T) items[i];
+                        tables[Tables.partition(Tables.mix(Objects.hashCode(item)), shift)].add(item);
+                    }
+                }),
+            partitions,
+            (target, source) -> {
+                for (int id = 0; id < source.size(); id++) target.add(source.key(id));
+            });
+        if(res == null) return new Object[0];
+        int size = 0;
+        for (ObjectIndexTable<T> table : res) size += table.size();
+        Object[] keys = new Object[size];
+        int i = 0;
+        for (ObjectIndexTable<T> table : res) {
+            for (int id = 0; id < table.size(); id++) keys[i++] = table.key(id);
+        }
+        return keys;
+    }
+
+    /**
+     * The distinct elements of the given query, in no particular order.
+     */
+    public static int[] distinct(IntQuery query) {
+        int partitions = partitions();
+        int shift = Tables.shift(partitions);
+        IntIndexTable[] res = merge(
+            aggregate(
+                query,
+                tables(partitions, IntIndexTable[]::new, IntIndexTable::new),
+                (tables, items, length) -> {
+                    for (int i = 0; i < length; i++) {
+                        tables[Tables.partition(Tables.mix(items[i]), shift)].add(items[i]);
+                    }
+                }),
+            partitions,
+            (target, source) -> {
+                for (int id = 0; id < source.size(); id++) target.add(source.key(id));
+            });
+        if(res == null) return new int[0];
+        int size = 0;
+        for (IntIndexTable table : res) size += table.size();
+        int[] keys = new int[size];
+        int i = 0;
+        for (IntIndexTable table : res) {
+            for (int id = 0; id < table.size(); id++) keys[i++] = table.key(id);
+        }
+        return keys;
+    }
+
+    /**
+     * The distinct elements of the given query, in no particular order.
+     */
+    public static long[] distinct(LongQuery query) {
+        int partitions = partitions();
+        int shift = Tables.shift(partitions);
+        LongIndexTable[] res = merge(
+            aggregate(
+                query,
+                tables(partitions, LongIndexTable[]::new, LongIndexTable::new),
+                (tables, items, length) -> {
+                    for (int i = 0; i < length; i++) {
+                        tables[Tables.partition(Tables.mix(items[i]), shift)].add(items[i]);
+                    }
+                }),
+            partitions,
+            (target, source) -> {
+                for (int id = 0; id < source.size(); id++) target.add(source.key(id));
+            });
+        if(res == null) return new long[0];
+        int size = 0;
+        for (LongIndexTable table : res) size += table.size();
+        long[] keys = new long[size];
+        int i = 0;
+        for (LongIndexTable table : res) {
+            for (int id = 0; id < table.size(); id++) keys[i++] = table.key(id);
+        }
+        return keys;
+    }
+
+    /**
+     * The groups of the elements of the given query, in no particular order,
+     * aggregated into tables created by the given factory for some number of partitions.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T, K, R> Map.Entry<K, R>[] groupBy(
+        Query<T> query,
+        IntFunction<GroupTable<T, K, R>> factory)
+    {
+        int partitions = partitions();
+        List<GroupTable<T, K, R>> tables = aggregate(
+            query,
+            () -> factory.apply(partitions),
+            (table, items, length) -> {
+                for (int i = 0; i < length; i++) table.add((T) items[i]);
+            });
+        if(tables.isEmpty()) return new Map.Entry[0];
+        GroupTable<T, K, R> res = tables.get(0);
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            for (int i = 1; i < tables.size(); i++) res.merge(tables.get(i), p);
+        });
+        int size = 0;
+        for (int p = 0; p < partitions; p++) size += res.size(p);
+        Map.Entry<K, R>[] groups = new Map.Entry[size];
+        int i = 0;
+        for (int p = 0; p < partitions; p++) {
+            for (int group = 0; group < res.size(p); group++) groups[i++] = res.group(p, group);
+        }
+        return groups;
+    }
+
+    public static <T, K, R> Map.Entry<K, R>[] groupBy(
+        Query<T> query,
+        Function<? super T, ? extends K> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return groupBy(query, partitions -> GroupTable.of(keyFn, aggregator, partitions));
+    }
+
+    public static <T, R> Map.Entry<Integer, R>[] groupByInt(
+        Query<T> query,
+        ToIntFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return groupBy(query, partitions -> GroupTable.ofInt(keyFn, aggregator, partitions));
+    }
+
+    public static <T, R> Map.Entry<Long, R>[] groupByLong(
+        Query<T> query,
+        ToLongFunction<? super T> keyFn,
+        Aggregator<? super T, R> aggregator)
+    {
+        return groupBy(query, partitions -> GroupTable.ofLong(keyFn, aggregator, partitions));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020, Fernando Miguel Carvalho, mcarvalho@cc.isel.ipl.pt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jayield.tables;
+
+/**
+ * Sizing and hashing shared by the tables of this package.
+ */
+final class Tables {
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private Tables() {
+    }
+
+    /**
+     * Power of two capacity keeping the load factor at most 1/2 for the given size.
+     */
+    static int capacity(int expectedSize) {
+        if(expectedSize < 0) throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        if(expectedSize >= MAX_CAPACITY / 2) return MAX_CAPACITY;
+        return Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1);
+    }
+
+    /**
+     * Twice the given capacity, failing when the table already has {@link #MAX_CAPACITY} slots.
+     */
+    static int grow(int capacity) {
+        if(capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Table cannot grow beyond " + MAX_CAPACITY + " slots");
+        }
+        return capacity * 2;
+    }
+
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int mix(long hash) {
+        return mix((int) (hash ^ (hash >>> 32)));
+    }
+
+    /**
+     * The shift that maps a mixed hash to one of the given power of two partitions,
+     * through its high bits, which are independent of the low bits selecting the slots.
+     */
+    static int shift(int partitions) {
+        if(Integer.bitCount(partitions) != 1) {
+            throw new IllegalArgumentException("Partitions must be a power of two: " + partitions);
+        }
+        return 32 - Integer.numberOfTrailingZeros(partitions);
+    }
+
+    static int partition(int mixed, int shift) {
+        return (int) ((mixed & 0xFFFFFFFFL) >>> shift);
+    }
+}
@@ -31,6 +31,7 @@ import java.util.List;
 import org.jayield.primitives.dbl.DoubleQuery;
 import org.jayield.primitives.intgr.IntQuery;
 import org.jayield.primitives.lng.LongQuery;
+import org.jayield.tables.Aggregator;
 import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
@@ -260,4 +261,84 @@ public class QueryIterateTest {
         AssertJUnit.assertEquals(expected.length, index);
         assertArrayEquals(expected, actual, 0);
     }
+
+    @Test
+    public void testProfiled() {
+        Query<String> pipe = of("a", "bb", "ccc", "dddd")
+            .profiled()
+            .filter(s -> s.length() % 2 == 0)
+            .map(String::toUpperCase);
+        int count = 0;
+        while (pipe.hasNext()) {
+            pipe.next();
+            count++;
+        }
+        AssertJUnit.assertEquals(2, count);
+        String[] report = pipe.explainAnalyze().split("\\R");
+        AssertJUnit.assertEquals(4, report.length);
+        AssertJUnit.assertTrue(report[2].matches("filter\\s+4\\s+2\\s+50\\.00%.*"));
+        AssertJUnit.assertTrue(report[3].matches("map\\s+2\\s+2\\s+100\\.00%.*"));
+    }
+
+    @Test
+    public void testHashJoin() {
+        Object[] expected = {"a1", "a3", "c2", "a1", "a3"};
+        Query<String> pipe = of("a", "b", "c", "a")
+            .join(of("1a", "2c", "3a", "4x"), s -> s, s -> s.substring(1), (l, r) -> l + r.charAt(0));
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(pipe.next()); }
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testAntiJoinInt() {
+        Object[] expected = {1, 5};
+        Query<Integer> pipe = of(1, 2, 3, 4, 5).antiJoinInt(of(4, 2, 3), n -> n, n -> n);
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(pipe.next()); }
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testMergeJoin() {
+        Object[] expected = {"b:b1", "b:b2", "d:d1"};
+        Query<String> pipe = Query
+            .mergeSorted(String::compareTo, of("a", "d"), of("b", "e"))
+            .mergeJoin(of("b1", "b2", "c1", "d1"), s -> s, s -> s.substring(0, 1), String::compareTo, (l, r) -> l + ":" + r);
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(pipe.next()); }
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testGroupByLong() {
+        Object[] expected = {"1:1:9", "0:4:6"};
+        Integer[] arrange = {3, 7, 4, 1, 9, 6};
+        Query<String> pipe = of(arrange)
+            .groupByLong(n -> n % 2, Aggregator.minLong(n -> n))
+            .zip(
+                of(arrange).groupByLong(n -> n % 2, Aggregator.maxLong(n -> n)),
+                (min, max) -> min.getKey() + ":" + min.getValue() + ":" + max.getValue());
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(pipe.next()); }
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testWindow() {
+        Object[] expected = {"[1, 2, 3]", "[2, 3, 4]", "[3, 4, 5]"};
+        Query<List<Integer>> pipe = of(1, 2, 3, 4, 5).window(3, 1);
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(pipe.next().toString()); }
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testChunked() {
+        Object[] expected = {"[1, 2, 3]", "[4, 5]"};
+        Query<Integer[]> pipe = of(1, 2, 3, 4, 5).chunked(3, Integer[]::new);
+        List<Object> actual = new ArrayList<>();
+        while(pipe.hasNext()) { actual.add(Arrays.toString(pipe.next())); }
+        assertEquals(actual.toArray(), expected);
+    }
 }
@@ -26,13 +26,33 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.jayield.PhysicalPlan.Traversal;
+import org.jayield.QueryPlan.Characteristic;
+import org.jayield.advs.AdvancerLimit;
+import org.jayield.boxes.IntBox;
+import org.jayield.metrics.MaterializationEvent;
+import org.jayield.metrics.QueryExecutionEvent;
+import org.jayield.tables.Aggregator;
 import org.testng.annotations.Test;
 
 /**
@@ -402,4 +422,351 @@ public class QueryTraverseTest {
                                .toArray(String[]::new);
         assertEquals(actual, expected);
     }
+
+    @Test
+    public void testProfiled() {
+        Query<Integer> nrs = iterate(1, n -> n + 1)
+            .limit(100)
+            .profiled(1)
+            .filter(n -> n % 4 == 0)
+            .map(n -> n * 10);
+        assertEquals(nrs.count(), 25);
+        String[] report = nrs.explainAnalyze().split("\\R");
+        assertEquals(report.length, 5);
+        assertTrue(report[1].matches("source\\s+-\\s+100\\s+-\\s.*"));
+        assertTrue(report[2].matches("filter\\s+100\\s+25\\s+25\\.00%.*"));
+        assertTrue(report[3].matches("map\\s+25\\s+25\\s+100\\.00%.*"));
+        assertTrue(report[4].startsWith("(terminal)"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testExplainAnalyzeNotProfiled() {
+        of(1, 2, 3).filter(n -> n > 1).explainAnalyze();
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(QueryExecutionEvent.class);
+            recording.enable(MaterializationEvent.class);
+            recording.start();
+            long count = iterate(5, n -> n - 1)
+                .limit(5)
+                .sorted(Integer::compare)
+                .filter(n -> n % 2 != 0)
+                .zip(of("a", "b", "c"), (n, s) -> s + n)
+                .count();
+            assertEquals(count, 3);
+            recording.stop();
+            Path file = Files.createTempFile("jayield", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+        }
+        RecordedEvent sorted = events
+            .stream()
+            .filter(e -> e.getEventType().getName().equals("org.jayield.QueryMaterialization"))
+            .filter(e -> e.getString("operation").equals("sorted"))
+            .findFirst()
+            .get();
+        assertEquals(sorted.getString("pipeline"), "iterate -> limit");
+        assertEquals(sorted.getLong("elements"), 5);
+        assertEquals(sorted.getLong("retainedBytes"), 5 * MaterializationEvent.REFERENCE_BYTES);
+        RecordedEvent execution = events
+            .stream()
+            .filter(e -> e.getEventType().getName().equals("org.jayield.QueryExecution"))
+            .reduce((prev, curr) -> curr)
+            .get();
+        assertEquals(execution.getString("pipeline"), "iterate -> limit -> sorted -> filter -> zip(of)");
+        assertEquals(execution.getLong("elements"), 3);
+    }
+
+    @Test
+    public void testFlightRecorderDistinctShortCircuit() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(MaterializationEvent.class);
+            recording.start();
+            Optional<Integer> first = of(1, 1, 2, 3, 3).distinct().filter(n -> n > 1).findFirst();
+            assertEquals(first.get().intValue(), 2);
+            recording.stop();
+            Path file = Files.createTempFile("jayield", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+        }
+        RecordedEvent distinct = events
+            .stream()
+            .filter(e -> e.getEventType().getName().equals("org.jayield.QueryMaterialization"))
+            .filter(e -> e.getString("operation").equals("distinct"))
+            .findFirst()
+            .get();
+        assertEquals(distinct.getString("pipeline"), "of");
+        assertEquals(distinct.getLong("elements"), 2);
+    }
+
+    @Test
+    public void testExplain() {
+        PhysicalPlan plan = of(1, 2, 3, 4, 5)
+            .filter(n -> n % 2 != 0)
+            .zip(iterate(1, n -> n + 1), Integer::sum)
+            .limit(2)
+            .explain();
+        assertEquals(plan.operator(), "limit");
+        assertEquals(plan.advancer(), AdvancerLimit.class);
+        assertEquals(plan.traversal(), Traversal.PUSH);
+        assertEquals(plan.size(), QueryPlan.UNKNOWN_SIZE);
+        PhysicalPlan zip = plan.inputs().get(0);
+        assertEquals(zip.traversal(), Traversal.SHORT_CIRCUIT);
+        assertEquals(zip.inputs().get(0).operator(), "filter");
+        assertEquals(zip.inputs().get(0).traversal(), Traversal.PUSH);
+        assertEquals(zip.inputs().get(1).traversal(), Traversal.PULL);
+        assertEquals(zip.inputs().get(1).characteristics(), EnumSet.of(Characteristic.INFINITE));
+        assertFalse(plan.hasMaterialization());
+
+        PhysicalPlan sorted = of(3, 1, 2)
+            .map(n -> n * 2)
+            .sorted(Integer::compare)
+            .skip(1)
+            .then(q -> q::traverse)
+            .explain();
+        assertEquals(sorted.traversal(), Traversal.PUSH);
+        assertFalse(sorted.materializes());
+        assertTrue(sorted.hasMaterialization());
+        PhysicalPlan skip = sorted.inputs().get(0);
+        assertEquals(skip.size(), 2);
+        assertEquals(skip.characteristics(), EnumSet.of(Characteristic.SIZED, Characteristic.SORTED));
+        assertTrue(skip.inputs().get(0).materializes());
+        assertEquals(skip.inputs().get(0).inputs().get(0).traversal(), Traversal.BUFFER);
+        assertTrue(sorted.toString().contains("sorted [AdvancerArray] PUSH size=3 [SIZED, SORTED] MATERIALIZES"));
+    }
+
+    @Test
+    public void testHashJoin() {
+        String[] expected = {"a1", "a3", "c2", "a1", "a3"};
+        Query<String> build = of("1a", "2c", "3a", "4x");
+        List<String> actual = of("a", "b", "c", "a")
+            .join(build, s -> s, s -> s.substring(1), (l, r) -> l + r.charAt(0))
+            .toList();
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testJoinIntLimit() {
+        Integer[] expected = {10, 16};
+        Query<Integer> build = of(1, 2, 2, 3);
+        List<Integer> actual = of(2, 3, 5, 3)
+            .joinInt(build, n -> n, n -> n, (l, r) -> l * 5 + (r == 2 ? 0 : 1))
+            .distinct()
+            .limit(2)
+            .toList();
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testSemiAntiJoin() {
+        Query<Long> build = of(2L, 4L, 4L, 6L);
+        assertEquals(
+            of(1, 2, 3, 4, 5).semiJoinLong(build, n -> n, n -> n).toList().toArray(),
+            new Integer[]{2, 4});
+        assertEquals(
+            of("a", "bb", "ccc").antiJoin(of(2, 7), String::length, n -> n).toList().toArray(),
+            new String[]{"a", "ccc"});
+        PhysicalPlan plan = of(1, 2).join(of(3), n -> n, n -> n, Integer::sum).explain();
+        assertTrue(plan.materializes());
+        assertEquals(plan.inputs().get(1).traversal(), Traversal.BUFFER);
+    }
+
+    @Test
+    public void testMergeSorted() {
+        Integer[] expected = {1, 2, 2, 3, 4, 5, 7, 8, 9};
+        Query<Integer> merged = Query.mergeSorted(
+            Integer::compare,
+            of(2, 5, 9),
+            of(1, 2, 3, 7),
+            Query.<Integer>of(),
+            of(4, 8));
+        assertEquals(merged.explain().inputs().size(), 4);
+        assertEquals(merged.toList().toArray(), expected);
+    }
+
+    @Test
+    public void testMergeJoin() {
+        String[] expected = {"1a", "1b", "3c", "3c", "4d"};
+        Query<String> other = of("a1", "b1", "x2", "c3", "d4", "y5");
+        List<String> actual = of(0, 1, 3, 3, 4, 6)
+            .mergeJoinInt(other, n -> n, s -> s.charAt(1) - '0', (n, s) -> "" + n + s.charAt(0))
+            .toList();
+        assertEquals(actual.toArray(), expected);
+    }
+
+    @Test
+    public void testGroupBy() {
+        String[] input = {"ab", "c", "abc", "d", "abcd", "ef"};
+        List<Map.Entry<Integer, List<String>>> byLength = of(input)
+            .groupByInt(String::length, Aggregator.toList())
+            .toList();
+        assertEquals(byLength.size(), 4);
+        assertEquals(byLength.get(0), new SimpleImmutableEntry<>(2, asList("ab", "ef")));
+        assertEquals(byLength.get(1), new SimpleImmutableEntry<>(1, asList("c", "d")));
+        assertEquals(
+            of(input).groupBy(s -> s.charAt(0), Aggregator.count()).toList(),
+            asList(
+                new SimpleImmutableEntry<>('a', 3L),
+                new SimpleImmutableEntry<>('c', 1L),
+                new SimpleImmutableEntry<>('d', 1L),
+                new SimpleImmutableEntry<>('e', 1L)));
+        assertEquals(
+            of(input).groupByInt(s -> s.charAt(0), Aggregator.avg(String::length)).findFirst().get().getValue(),
+            3.0);
+        PhysicalPlan plan = of(input).groupBy(s -> s, Aggregator.count()).explain();
+        assertTrue(plan.materializes());
+        assertEquals(plan.inputs().get(0).traversal(), Traversal.BUFFER);
+    }
+
+    @Test
+    public void testParallelDistinct() {
+        Query<String> pipe = iterate(0, n -> n + 1).limit(100_000).map(n -> "k" + n % 12_345);
+        Set<String> actual = new HashSet<>(pipe.parallelDistinct().toList());
+        assertEquals(actual.size(), 12_345);
+        assertEquals(actual, new HashSet<>(iterate(0, n -> n + 1).limit(12_345).map(n -> "k" + n).toList()));
+        assertEquals(Query.<String>of().parallelDistinct().count(), 0);
+    }
+
+    @Test
+    public void testParallelGroupBy() {
+        Map<Integer, Long> counts = new HashMap<>();
+        iterate(0, n -> n + 1)
+            .limit(100_000)
+            .parallelGroupByInt(n -> n % 1000, Aggregator.count())
+            .traverse(e -> counts.put(e.getKey(), e.getValue()));
+        assertEquals(counts.size(), 1000);
+        assertTrue(counts.values().stream().allMatch(c -> c == 100));
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        iterate(0, n -> n + 1)
+            .limit(20_000)
+            .parallelGroupByLong(n -> n % 3, Aggregator.toList())
+            .traverse(e -> lists.put(e.getKey(), e.getValue()));
+        assertEquals(lists.get(1L).size(), 6_667);
+        Map<Boolean, Double> avgs = new HashMap<>();
+        iterate(1, n -> n + 1)
+            .limit(10_000)
+            .parallelGroupBy(n -> n % 2 == 0, Aggregator.avg(n -> n))
+            .traverse(e -> avgs.put(e.getKey(), e.getValue()));
+        assertEquals(avgs.get(true), 5001.0);
+        assertEquals(avgs.get(false), 5000.0);
+    }
+
+    @Test
+    public void testSortedSpill() throws IOException {
+        Path dir = Files.createTempDirectory("jayield");
+        SortOptions options = SortOptions.spillAt(50, dir).withObjectBytes(10);
+        List<String> expected = iterate(1, n -> n * 31 % 1_009).limit(1_000).map(n -> "s" + n).toList();
+        List<String> actual = fromList(expected).sorted(String::compareTo, options, Serializer.string()).toList();
+        expected.sort(String::compareTo);
+        assertEquals(actual, expected);
+        List<Integer> java = iterate(1, n -> n * 31 % 1_009)
+            .limit(300)
+            .sorted(Integer::compare, options, Serializer.java())
+            .toList();
+        assertEquals(java, iterate(1, n -> n * 31 % 1_009).limit(300).sorted(Integer::compare).toList());
+        try (Stream<Path> runs = Files.list(dir)) {
+            assertEquals(runs.count(), 0);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSortedSpillReleased() throws Exception {
+        Path dir = Files.createTempDirectory("jayield");
+        SortOptions options = SortOptions.spillAt(50, dir).withObjectBytes(10);
+        List<String> first = fromList(spilled())
+            .sorted(String::compareTo, options, Serializer.string())
+            .limit(3)
+            .toList();
+        assertEquals(first, Arrays.asList("s1", "s10", "s100"));
+        assertEquals(countFiles(dir), 0);
+        assertEquals(pullFirst(options), "s1");
+        for (int i = 0; i < 100 && countFiles(dir) > 0; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(countFiles(dir), 0);
+        Files.delete(dir);
+    }
+
+    private static List<String> spilled() {
+        return iterate(1, n -> n * 31 % 1_009).limit(1_000).map(n -> "s" + n).toList();
+    }
+
+    private static String pullFirst(SortOptions options) {
+        return fromList(spilled()).sorted(String::compareTo, options, Serializer.string()).next();
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testSortedBy() {
+        List<String> input = iterate(1, n -> n * 31 % 1_009).limit(1_000).map(n -> "s" + n).toList();
+        IntBox calls = new IntBox(0, true);
+        List<String> actual = fromList(input).sortedBy(s -> {
+            calls.setValue(calls.getValue() + 1);
+            return s.length();
+        }).toList();
+        List<String> expected = new ArrayList<>(input);
+        expected.sort(Comparator.comparingInt(String::length));
+        assertEquals(actual, expected);
+        assertEquals(calls.getValue(), input.size());
+        assertEquals(fromList(input).sortedBy(String::length, Comparator.reverseOrder()).toList(),
+            fromList(input).sorted(Comparator.comparing(String::length, Comparator.reverseOrder())).toList());
+        assertEquals(fromList(input).sortedByInt(s -> -s.length()).toList(),
+            fromList(input).sorted(Comparator.comparingInt(s -> -s.length())).toList());
+        assertEquals(fromList(input).sortedByLong(s -> s.hashCode() * -7L).toList(),
+            fromList(input).sorted(Comparator.comparingLong(s -> s.hashCode() * -7L)).toList());
+        assertEquals(of("a", "b", "c", "d", "e").sortedByDouble(s -> s.equals("b") ? Double.NaN : -s.charAt(0)).toList(),
+            asList("e", "d", "c", "a", "b"));
+        assertEquals(Query.<String>of().sortedByLong(String::length).toList(), asList());
+    }
+
+    @Test
+    public void testWindow() {
+        List<String> actual = new ArrayList<>();
+        of(1, 2, 3, 4, 5, 6, 7).window(3, 2).traverse(w -> actual.add(w.toString()));
+        assertEquals(actual, asList("[1, 2, 3]", "[3, 4, 5]", "[5, 6, 7]"));
+        List<String> skipping = of(1, 2, 3, 4, 5, 6, 7, 8).window(2, 3).map(Object::toString).toList();
+        assertEquals(skipping, asList("[1, 2]", "[4, 5]", "[7, 8]"));
+        assertEquals(of(1, 2).window(3, 1).count(), 0);
+        assertEquals(of(1, 2, 3, 4, 5).window(2, 2).explain().size(), 2);
+        assertEquals(iterate(0, n -> n + 1).window(4, 1).map(w -> w.get(3) - w.get(0)).limit(3).toList(), asList(3, 3, 3));
+    }
+
+    @Test
+    public void testChunked() {
+        List<String> actual = of("a", "b", "c", "d", "e").chunked(2, String[]::new).map(Arrays::toString).toList();
+        assertEquals(actual, asList("[a, b]", "[c, d]", "[e]"));
+        assertEquals(of(1, 2, 3, 4).chunked(2).explain().size(), 2);
+        assertEquals(iterate(0, n -> n + 1).chunked(3).map(c -> c[2]).limit(2).toList(), asList(2, 5));
+        List<String> reused = new ArrayList<>();
+        Set<Object> buffers = new HashSet<>();
+        of("a", "b", "c", "d", "e").forEachChunk(2, String[]::new, (chunk, length) -> {
+            buffers.add(chunk);
+            reused.add(String.join("", Arrays.asList(chunk).subList(0, length)));
+        });
+        assertEquals(reused, asList("ab", "cd", "e"));
+        assertEquals(buffers.size(), 1);
+    }
+
+    @Test
+    public void testApproxDistinct() {
+        long estimate = iterate(0, n -> n + 1).limit(50_000).map(n -> "s" + n % 10_000).approxCountDistinct(String::hashCode);
+        assertTrue(Math.abs(estimate - 10_000) < 400, "estimate " + estimate);
+        List<String> actual = of("a", "b", "a", "c", "b").approxDistinct(100, 0.001).toList();
+        assertEquals(actual, asList("a", "b", "c"));
+        assertTrue(of(1, 2).approxDistinct(10, 0.1).explain().characteristics().contains(Characteristic.DISTINCT));
+    }
 }
@@ -16,14 +16,41 @@
 
 package org.jayield.async;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.jayield.AsyncQuery;
 import org.jayield.Query;
+import org.jayield.metrics.AsyncSubscriptionEvent;
+import org.jayield.metrics.LatencyHistogram;
+import org.jayield.metrics.StageMetrics;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import javax.management.ObjectName;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -147,4 +174,548 @@ public class AsyncQueryTest {
             .join();
         assertTrue(expected.isEmpty());
     }
+
+    @Test
+    public void testForkOnExecutor() {
+        Query<Integer> expected = Query.of(1, 2, 3);
+        AsyncQuery
+            .fork(Schedulers.virtual(), 1, 2, 3)
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertFalse(Thread.currentThread() instanceof ForkJoinWorkerThread);
+                assertEquals(expected.next(), item);
+            })
+            .join();
+        assertFalse(expected.hasNext());
+    }
+    @Test
+    public void testSubscribeOn() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "subscriber"));
+        Query<String> expected = Query.of("a", "b", "c");
+        AsyncQuery
+            .fork(Runnable::run, "a", "b", "c") // Emits on the subscribing thread
+            .subscribeOn(executor)
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertEquals(Thread.currentThread().getName(), "subscriber");
+                assertEquals(expected.next(), item);
+            })
+            .join();
+        assertFalse(expected.hasNext());
+        executor.shutdown();
+    }
+    @Test
+    public void testObserveOn() {
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "observer"));
+        Query<Integer> expected = Query.of(2, 4, 6, 8);
+        AsyncQuery
+            .fork(1, 2, 3, 4)
+            .observeOn(executor)
+            .map(n -> n * 2)
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertEquals(Thread.currentThread().getName(), "observer");
+                assertEquals(expected.next(), item);
+            })
+            .join();
+        assertFalse(expected.hasNext());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testMapAsync() {
+        Queue<Integer> expected = new ConcurrentLinkedQueue<>(Arrays.asList(2, 4, 6, 8, 10, 12));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AsyncQuery
+            .of(1, 2, 3, 4, 5, 6)
+            .mapAsync(n -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return CompletableFuture.supplyAsync(
+                    () -> { inFlight.decrementAndGet(); return n * 2; },
+                    CompletableFuture.delayedExecutor(10 * (6 - n), TimeUnit.MILLISECONDS));
+            }, 2)
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertTrue(expected.remove(item), "Missing item " + item + "!");
+            })
+            .join();
+        assertTrue(expected.isEmpty());
+        assertTrue(maxInFlight.get() <= 2);
+    }
+    @Test
+    public void testMapAsyncOrdered() {
+        List<Integer> actual = new ArrayList<>();
+        AsyncQuery
+            .of(1, 2, 3, 4, 5, 6)
+            .mapAsyncOrdered(n -> CompletableFuture.supplyAsync(
+                () -> n * 2,
+                CompletableFuture.delayedExecutor(10 * (6 - n), TimeUnit.MILLISECONDS)), 3)
+            .subscribe((item, err) -> {
+                assertNull(err);
+                actual.add(item);
+            })
+            .join();
+        assertEquals(actual, Arrays.asList(2, 4, 6, 8, 10, 12));
+    }
+    @Test
+    public void testMapAsyncError() {
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AsyncQuery
+            .of(1, 2, 3)
+            .mapAsyncOrdered(n -> n == 2
+                ? CompletableFuture.<Integer>failedFuture(new IllegalStateException("Boom"))
+                : CompletableFuture.completedFuture(n), 2)
+            .subscribe((item, err) -> {
+                if(err != null) errors.add(err);
+            })
+            .join();
+        assertEquals(errors.size(), 1);
+        assertTrue(errors.peek() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testMapAsyncNullFuture() {
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        AsyncQuery
+            .of(1, 2, 3)
+            .mapAsync(n -> n == 2 ? null : CompletableFuture.completedFuture(n), 1)
+            .subscribe((item, err) -> {
+                if(err != null) errors.add(err);
+            })
+            .orTimeout(5, TimeUnit.SECONDS)
+            .join();
+        assertEquals(errors.size(), 1);
+        assertTrue(errors.peek() instanceof NullPointerException);
+    }
+
+    @Test
+    public void testBufferBySize() {
+        Query<List<Integer>> expected = Query.of(
+            Arrays.asList(1, 2, 3),
+            Arrays.asList(4, 5, 6),
+            Arrays.asList(7));
+        AsyncQuery
+            .fork(1, 2, 3, 4, 5, 6, 7)
+            .buffer(3, Duration.ofSeconds(10))
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertEquals(item, expected.next());
+            })
+            .join();
+        assertFalse(expected.hasNext());
+    }
+    @Test
+    public void testBufferByTimeout() {
+        List<List<Integer>> actual = new ArrayList<>();
+        AsyncQuery
+            .fork(1, 2, 3, 4)
+            .onNext((item, err) -> {
+                if(item == 3) sleep(200);
+            })
+            .buffer(10, Duration.ofMillis(50))
+            .subscribe((item, err) -> {
+                assertNull(err);
+                actual.add(item);
+            })
+            .join();
+        assertEquals(actual, Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4)));
+    }
+    @Test
+    public void testBufferTimeoutOffTimer() throws Exception {
+        CountDownLatch second = new CountDownLatch(1);
+        List<String> threads = new ArrayList<>();
+        CompletableFuture<Void> blocked = AsyncQuery
+            .fork(Schedulers.virtual(), 1, 0)
+            .onNext((item, err) -> {
+                if(item == 0) sleep(300);
+            })
+            .buffer(10, Duration.ofMillis(20), Schedulers.virtual())
+            .subscribe((item, err) -> {
+                threads.add(Thread.currentThread().getName());
+                try {
+                    assertTrue(second.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        sleep(100);
+        AsyncQuery
+            .fork(Schedulers.virtual(), 2, 0)
+            .onNext((item, err) -> {
+                if(item == 0) sleep(2000);
+            })
+            .buffer(10, Duration.ofMillis(20), Schedulers.virtual())
+            .subscribe((item, err) -> second.countDown());
+        // Flushed by the timeout while the first buffer is blocked in its downstream.
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+        blocked.join();
+        assertFalse(threads.get(0).startsWith("jayield-timer-"));
+    }
+    @Test
+    public void testBufferToQuery() {
+        Query<Integer> expected = Query.of(3, 7, 11);
+        AsyncQuery
+            .fork(1, 2, 3, 4, 5, 6)
+            .bufferToQuery(2, Duration.ofSeconds(10))
+            .map(batch -> batch.reduce(0, Integer::sum))
+            .subscribe((item, err) -> {
+                assertNull(err);
+                assertEquals(item, expected.next());
+            })
+            .join();
+        assertFalse(expected.hasNext());
+    }
+    @Test
+    public void testToQueryTraverse() {
+        Integer[] src = Query.iterate(1, n -> n + 1).limit(1000).toArray(Integer[]::new);
+        List<Integer> actual = AsyncQuery
+            .fork(src)
+            .toQuery(16)
+            .filter(n -> n % 2 == 0)
+            .toList();
+        assertEquals(actual, Query.of(src).filter(n -> n % 2 == 0).toList());
+    }
+    @Test
+    public void testToQueryIterate() {
+        Query<String> actual = AsyncQuery
+            .of("a", "b", "c")
+            .toQuery(1);
+        assertTrue(actual.hasNext());
+        assertEquals(actual.next(), "a");
+        assertEquals(actual.next(), "b");
+        assertEquals(actual.next(), "c");
+        assertFalse(actual.hasNext());
+    }
+    @Test
+    public void testToQueryAbandoned() throws Exception {
+        CompletableFuture<Void> subscription = new CompletableFuture<>();
+        AtomicInteger produced = new AtomicInteger();
+        AsyncQuery<Integer> infinite = new AsyncQuery<Integer>() {
+            @Override
+            public CompletableFuture<Void> subscribe(BiConsumer<? super Integer, ? super Throwable> cons) {
+                CompletableFuture.runAsync(() -> {
+                    while(!subscription.isDone()) cons.accept(produced.incrementAndGet(), null);
+                });
+                return subscription;
+            }
+        };
+        assertEquals(pullTwo(infinite), Arrays.asList(1, 2));
+        for (int i = 0; i < 100 && !subscription.isDone(); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertTrue(subscription.isDone());
+        int count = produced.get();
+        Thread.sleep(50);
+        assertEquals(produced.get(), count);
+    }
+
+    private static List<Integer> pullTwo(AsyncQuery<Integer> src) {
+        Query<Integer> pipe = src.toQuery(1);
+        return Arrays.asList(pipe.next(), pipe.next());
+    }
+
+    @Test
+    public void testToQueryCapacity() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        Query<Integer> pipe = AsyncQuery
+            .of(1, 2, 3, 4, 5, 6, 7, 8)
+            .onNext((item, err) -> produced.incrementAndGet())
+            .toQuery(3);
+        assertEquals(pipe.next(), Integer.valueOf(1));
+        Thread.sleep(200);
+        // One taken by the consumer, three buffered and one waiting in the producer.
+        assertTrue(produced.get() <= 5, "produced " + produced.get());
+        assertEquals(pipe.toList(), Arrays.asList(2, 3, 4, 5, 6, 7, 8));
+    }
+
+    @Test
+    public void testToQueryShortCircuit() {
+        Integer[] src = Query.iterate(1, n -> n + 1).limit(1000).toArray(Integer[]::new);
+        List<Integer> actual = AsyncQuery
+            .fork(src)
+            .toQuery(4)
+            .limit(3)
+            .toList();
+        assertEquals(actual, Arrays.asList(1, 2, 3));
+    }
+    @Test(expectedExceptions = CompletionException.class)
+    public void testToQueryError() {
+        AsyncQuery
+            .of(1, 2, 3)
+            .mapAsync(n -> CompletableFuture.<Integer>failedFuture(new IllegalStateException("Boom")), 1)
+            .toQuery(4)
+            .toList();
+    }
+    @Test
+    public void testCount() {
+        long actual = AsyncQuery
+            .fork(2, 5, 8)
+            .flatMapMerge(nr -> AsyncQuery.fork(nr - 1, nr, nr + 1))
+            .count()
+            .join();
+        assertEquals(actual, 9);
+    }
+    @Test
+    public void testReduce() {
+        int actual = AsyncQuery
+            .fork(2, 5, 8)
+            .flatMapMerge(nr -> AsyncQuery.fork(nr - 1, nr, nr + 1))
+            .reduce(0, Integer::sum)
+            .join();
+        assertEquals(actual, 45);
+        Optional<Integer> max = AsyncQuery
+            .fork(2, 7, 5)
+            .reduce(Math::max)
+            .join();
+        assertEquals(max, Optional.of(7));
+        assertFalse(AsyncQuery.<Integer>of().reduce(Math::max).join().isPresent());
+    }
+    @Test
+    public void testCollectAndToList() {
+        List<Integer> actual = AsyncQuery
+            .fork(2, 5, 8)
+            .flatMapMerge(nr -> AsyncQuery.fork(nr - 1, nr, nr + 1))
+            .collect(ArrayList<Integer>::new, List::add, (a, b) -> { a.addAll(b); return a; })
+            .join();
+        actual.sort(Integer::compare);
+        assertEquals(actual, Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertEquals(AsyncQuery.fork("a", "b", "c").toList().join(), Arrays.asList("a", "b", "c"));
+    }
+    @Test
+    public void testFirstAndAnyMatch() {
+        assertEquals(AsyncQuery.fork(7, 8, 9).first().join(), Optional.of(7));
+        assertFalse(AsyncQuery.of().first().join().isPresent());
+        assertTrue(AsyncQuery.fork(7, 8, 9).anyMatch(n -> n % 2 == 0).join());
+        assertFalse(AsyncQuery.fork(7, 9, 11).anyMatch(n -> n % 2 == 0).join());
+    }
+    @Test(expectedExceptions = CompletionException.class)
+    public void testTerminalError() {
+        AsyncQuery
+            .of(1, 2, 3)
+            .mapAsync(n -> CompletableFuture.<Integer>failedFuture(new IllegalStateException("Boom")), 1)
+            .count()
+            .join();
+    }
+    @Test
+    public void testOfIteratorReturnsImmediately() throws InterruptedException {
+        CountDownLatch subscribed = new CountDownLatch(1);
+        Iterator<Integer> source = Query.iterate(1, n -> n + 1)
+            .peek(n -> {
+                if (n == 1) await(subscribed);
+            })
+            .limit(10_000)
+            .toStream()
+            .iterator();
+        CompletableFuture<Long> count = AsyncQuery.of(source).count();
+        assertFalse(count.isDone());
+        subscribed.countDown();
+        assertEquals(count.join(), Long.valueOf(10_000));
+    }
+    @Test
+    public void testOfIteratorCancellation() {
+        Iterator<Integer> infinite = Query.iterate(1, n -> n + 1).toStream().iterator();
+        List<Integer> actual = AsyncQuery
+            .of(infinite)
+            .takeWhile(n -> n < 1000)
+            .toList()
+            .join();
+        assertEquals(actual.size(), 999);
+    }
+    @Test
+    public void testLines() throws IOException {
+        Path file = Files.createTempFile("jayield", ".txt");
+        try {
+            String content = "first\nsecond line\r\nação é ótima\r\rlast";
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            List<String> expected = Arrays.asList("first", "second line", "ação é ótima", "", "last");
+            assertEquals(AsyncQuery.lines(file).toList().join(), expected);
+            // A small buffer splits lines and characters across reads.
+            assertEquals(new AsyncQueryLines(file, StandardCharsets.UTF_8, 1).toList().join(), expected);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    @Test
+    public void testChunks() throws IOException {
+        Path file = Files.createTempFile("jayield", ".bin");
+        try {
+            byte[] content = new byte[10_000];
+            for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+            Files.write(file, content);
+            List<byte[]> chunks = AsyncQuery.chunks(file, 4096).toList().join();
+            assertEquals(chunks.size(), 3);
+            assertEquals(chunks.get(0).length, 4096);
+            assertEquals(chunks.get(2).length, 10_000 - 2 * 4096);
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            chunks.forEach(actual::writeBytes);
+            assertEquals(actual.toByteArray(), content);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    @Test
+    public void testLinesOfMissingFile() {
+        Throwable err = AsyncQuery
+            .lines(Path.of("missing-file.txt"))
+            .count()
+            .handle((res, ex) -> ex)
+            .join();
+        assertTrue(err instanceof NoSuchFileException);
+    }
+    @Test
+    public void testMerge() {
+        List<Integer> actual = AsyncQuery
+            .merge(
+                AsyncQuery.fork(1, 3, 5, 7),
+                AsyncQuery.of(2, 4, 6),
+                AsyncQuery.<Integer>of())
+            .toList()
+            .join();
+        actual.sort(Integer::compare);
+        assertEquals(actual, Arrays.asList(1, 2, 3, 4, 5, 6, 7));
+    }
+    @Test
+    public void testMergeConcurrentSource() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Integer[] outer = Query.iterate(0, n -> n + 1).limit(1_000).toArray(Integer[]::new);
+            AsyncQuery<Integer> concurrent = AsyncQuery
+                .fork(executor, outer)
+                .flatMapMerge(n -> AsyncQuery.fork(
+                    executor,
+                    Query.iterate(n * 100, i -> i + 1).limit(100).toArray(Integer[]::new)));
+            List<Integer> actual = AsyncQuery
+                .merge(concurrent, AsyncQuery.of(-1))
+                .toList()
+                .join();
+            actual.sort(Integer::compare);
+            assertEquals(actual, Query.iterate(-1, n -> n + 1).limit(100_001).toList());
+        } finally {
+            executor.shutdown();
+        }
+    }
+    @Test
+    public void testZip() {
+        Integer[] nrs = Query.iterate(1, n -> n + 1).limit(1000).toArray(Integer[]::new);
+        List<String> actual = AsyncQuery
+            .zip(AsyncQuery.fork(nrs), AsyncQuery.of("a", "b", "c"), (n, s) -> s + n)
+            .toList()
+            .join();
+        assertEquals(actual, Arrays.asList("a1", "b2", "c3"));
+    }
+    @Test
+    public void testCombineLatest() {
+        List<String> actual = AsyncQuery
+            .combineLatest(
+                AsyncQuery.fork(Runnable::run, 1, 2, 3),
+                AsyncQuery.fork(Runnable::run, "a", "b"),
+                (n, s) -> s + n)
+            .toList()
+            .join();
+        // The first query completes before the second one is subscribed.
+        assertEquals(actual, Arrays.asList("a3", "b3"));
+        assertTrue(AsyncQuery
+            .combineLatest(AsyncQuery.of(1, 2), AsyncQuery.<String>of(), (n, s) -> s + n)
+            .toList()
+            .join()
+            .isEmpty());
+    }
+    @Test
+    public void testInstrument() throws Exception {
+        List<StageMetrics> stages = new ArrayList<>();
+        AsyncQuery<Integer> nrs = AsyncQuery
+            .fork(Runnable::run, 1, 2, 3, 4, 5)
+            .instrument("nrs", stages::add);
+        assertEquals(nrs.filter(n -> n % 2 != 0).toList().join(), Arrays.asList(1, 3, 5));
+        StageMetrics metrics = stages.get(0);
+        assertEquals(metrics.name(), "nrs");
+        assertEquals(metrics.subscriptions().sum(), 1);
+        assertEquals(metrics.emitted().sum(), 5);
+        assertEquals(metrics.errors().sum(), 0);
+        assertEquals(metrics.callbackNanos().count(), 5);
+        assertEquals(metrics.completionNanos().count(), 1);
+        /*
+         * The first element cancels the subscription thus the remaining are dropped
+         * without reaching downstream.
+         */
+        CompletableFuture<Void> start = new CompletableFuture<>();
+        CompletableFuture<Optional<Integer>> first = AsyncQuery
+            .fork(start::thenRun, 1, 2, 3, 4, 5)
+            .instrument("first", stages::add)
+            .first();
+        start.complete(null);
+        assertEquals(first.join(), Optional.of(1));
+        assertEquals(stages.get(1).emitted().sum(), 1);
+        assertEquals(stages.get(1).dropped().sum(), 4);
+        assertEquals(stages.get(1).callbackNanos().count(), 1);
+        /*
+         * Inner subscriptions of a flatMapMerge in flight.
+         */
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        AsyncQuery<Integer> merged = AsyncQuery
+            .fork(Runnable::run, 1, 2, 3)
+            .flatMapMerge(n -> AsyncQuery.fork(gate::thenRun, n))
+            .instrument("merged", stages::add);
+        CompletableFuture<List<Integer>> res = merged.toList();
+        assertEquals(stages.get(2).inFlight(), 3);
+        gate.complete(null);
+        assertEquals(res.join().size(), 3);
+        assertEquals(stages.get(2).inFlight(), 0);
+        /*
+         * Default JMX sink.
+         */
+        AsyncQuery.of(1).instrument("jmx").blockingSubscribe();
+        ObjectName name = new ObjectName("org.jayield:type=AsyncQueryStage,name=" + ObjectName.quote("jmx"));
+        assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Emitted"), 1L);
+    }
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram hist = new LatencyHistogram();
+        assertEquals(hist.valueAt(0.5), 0);
+        for (int i = 1; i <= 1000; i++) hist.record(i * 1000L);
+        assertEquals(hist.count(), 1000);
+        assertEquals(hist.max(), 1_000_000);
+        assertEquals(hist.mean(), 500_500.0);
+        assertEquals(hist.valueAt(0.5), 500_000, 500_000 / 32.0);
+        assertEquals(hist.valueAt(0.99), 990_000, 990_000 / 32.0);
+        assertEquals(hist.valueAt(1), 1_000_000);
+    }
+    @Test
+    public void testSubscriptionEvent() throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(AsyncSubscriptionEvent.class);
+            recording.start();
+            assertEquals(AsyncQuery.of(1, 2, 3).map(n -> n * 2).toList().join(), Arrays.asList(2, 4, 6));
+            assertTrue(AsyncQuery.of(1, 2, 3).map(n -> n / 0).count().handle((n, err) -> err).join() != null);
+            recording.stop();
+            Path file = Files.createTempFile("jayield", ".jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+            Files.delete(file);
+        }
+        assertEquals(events.size(), 2);
+        RecordedEvent completed = events.stream().filter(e -> e.getString("outcome").equals("completed")).findFirst().get();
+        assertEquals(completed.getLong("elements"), 3);
+        assertEquals(completed.getString("query"), AsyncQueryMap.class.getName());
+        assertTrue(events.stream().anyMatch(e -> e.getString("outcome").equals("failed")));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -340,4 +340,18 @@ public class DoubleQueryIterateTest {
         assertEquals(expected.length, index);
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testRollingMax() {
+        double[] expected = {5, 4, 4, 6};
+        DoubleQuery pipe = of(5, 1, 3, 4, 2, 6).rollingMax(3);
+        double[] actual = new double[expected.length];
+        int index = 0;
+        while (pipe.hasNext()) {
+            assertTrue(index < expected.length);
+            actual[index++] = pipe.next();
+        }
+        assertEquals(expected.length, index);
+        assertArrayEquals(expected, actual, 0);
+    }
 }
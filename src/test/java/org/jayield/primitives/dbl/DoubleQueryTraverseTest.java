@@ -21,15 +21,24 @@ import static org.jayield.primitives.dbl.DoubleQuery.iterate;
 import static org.jayield.primitives.dbl.DoubleQuery.of;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.DoubleSummaryStatistics;
+import java.util.NoSuchElementException;
 import java.util.OptionalDouble;
 import java.util.PrimitiveIterator;
 import java.util.stream.DoubleStream;
 
+import org.jayield.SortOptions;
 import org.jayield.boxes.IntBox;
+import org.jayield.primitives.Sorts;
+import org.jayield.sketches.KllSketch;
 import org.testng.annotations.Test;
 
 /**
@@ -442,4 +451,86 @@ public class DoubleQueryTraverseTest {
                                 .toArray();
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testSortedSpill() throws IOException {
+        Path dir = Files.createTempDirectory("jayield");
+        double[] expected = {3.5, Double.NaN, -0.0, 0.0, -1, Double.NEGATIVE_INFINITY, 2, 0.0, -0.0, 1e300};
+        double[] actual = of(expected).sorted(SortOptions.spillAt(3 * Double.BYTES, dir)).toArray();
+        Arrays.sort(expected);
+        assertEquals(Arrays.toString(actual), Arrays.toString(expected));
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSortedRadix() {
+        double[] special = {Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+        double[] expected = iterate(0, n -> n + 1)
+            .map(n -> n % 10 < special.length ? special[(int) n % 10] : Math.sin(n) * n)
+            .limit(20_000)
+            .toArray();
+        double[] actual = of(expected).sorted().toArray();
+        Arrays.sort(expected);
+        assertEquals(Arrays.toString(actual), Arrays.toString(expected));
+        double[] range = of(special).concat(of(1.5, -2.5, 0.25)).toArray();
+        double[] sorted = range.clone();
+        Sorts.radixSort(range, 1, range.length);
+        Arrays.sort(sorted, 1, sorted.length);
+        assertEquals(Arrays.toString(range), Arrays.toString(sorted));
+    }
+
+    @Test
+    public void testRolling() {
+        double[] source = iterate(1, n -> n * 1.5 % 17 - 3).limit(1_000).toArray();
+        int n = 7;
+        double[] sums = new double[source.length - n + 1];
+        double[] maxs = new double[sums.length];
+        double[] mins = new double[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            DoubleSummaryStatistics window = Arrays.stream(source, i, i + n).summaryStatistics();
+            sums[i] = window.getSum();
+            maxs[i] = window.getMax();
+            mins[i] = window.getMin();
+        }
+        assertArrayEquals(sums, of(source).rollingSum(n).toArray(), 1e-9);
+        assertArrayEquals(Arrays.stream(sums).map(s -> s / n).toArray(), of(source).rollingMean(n).toArray(), 1e-9);
+        assertArrayEquals(maxs, of(source).rollingMax(n).toArray(), 0);
+        assertArrayEquals(mins, of(source).rollingMin(n).toArray(), 0);
+        assertArrayEquals(new double[]{4, 4}, of(1, 4, 2, 4).rollingMax(2).skip(1).toArray(), 0);
+        assertArrayEquals(new double[]{2, 3, 3.5}, of(2, 4, 4, 4).ewma(0.5).limit(3).toArray(), 0);
+        assertEquals(of(1, 2).rollingSum(3).count(), 0);
+    }
+
+    @Test
+    public void testChunked() {
+        assertEquals(of(1, 2, 3).chunked(2).map(Arrays::toString).join(), "[1.0, 2.0][3.0]");
+        double[] total = new double[1];
+        of(1, 2, 3).forEachChunk(4, (buffer, length) -> total[0] += length);
+        assertEquals(total[0], 3.0);
+    }
+
+    @Test
+    public void testQuantiles() {
+        double[] source = iterate(1, n -> n * 1.618033 % 1).map(n -> Math.log(n) * 100).limit(100_000).toArray();
+        double[] sorted = source.clone();
+        Arrays.sort(sorted);
+        double[] qs = {0.99, 0, 0.5, 1, 0.25, 0.5};
+        double[] exact = of(source).exactQuantiles(qs);
+        KllSketch sketch = of(source).limit(40_000).quantileSketch(KllSketch.DEFAULT_K)
+            .merge(of(source).skip(40_000).quantileSketch(KllSketch.DEFAULT_K));
+        double[] merged = sketch.quantiles(qs);
+        double[] estimates = of(source).quantiles(qs);
+        for (int i = 0; i < qs.length; i++) {
+            int rank = Math.max(0, (int) Math.ceil(qs[i] * source.length) - 1);
+            assertEquals(exact[i], sorted[rank]);
+            assertTrue(Math.abs(Arrays.binarySearch(sorted, estimates[i]) - rank) <= 0.02 * source.length);
+            assertTrue(Math.abs(Arrays.binarySearch(sorted, merged[i]) - rank) <= 0.02 * source.length);
+        }
+        assertEquals(sketch.size(), source.length);
+        assertTrue(sketch.retained() < 4 * KllSketch.DEFAULT_K);
+        assertEquals(of(3, Double.NaN, 1, 2).quantiles(0.5)[0], 2.0);
+        assertEquals(Arrays.toString(of(3, -0.0, 0.0, 1).exactQuantiles(0.25, 0.5)), "[-0.0, 0.0]");
+        assertThrows(NoSuchElementException.class, () -> of().exactQuantiles(0.5));
+    }
 }
@@ -339,4 +339,21 @@ public class IntQueryIterateTest {
         assertEquals(expected.length, index);
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testSortedSetOperations() {
+        int[] expected = {2, 9};
+        IntQuery pipe = IntQuery.differenceSorted(
+            IntQuery.intersectSorted(of(1, 2, 5, 7, 9), of(2, 3, 5, 8, 9, 12), IntQuery.iterate(0, n -> n + 1)),
+            of(5));
+        int[] actual = new int[expected.length];
+        int index = 0;
+        while (pipe.hasNext()) {
+            assertTrue(index < expected.length);
+            actual[index++] = pipe.next();
+        }
+        assertEquals(expected.length, index);
+        assertArrayEquals(expected, actual);
+        assertArrayEquals(new int[]{1, 2, 3}, IntQuery.unionSorted(of(1, 3), of(1, 2, 3)).toArray());
+    }
 }
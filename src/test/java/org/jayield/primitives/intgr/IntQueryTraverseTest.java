@@ -24,12 +24,15 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
+import java.util.Arrays;
 import java.util.IntSummaryStatistics;
 import java.util.OptionalInt;
 import java.util.PrimitiveIterator;
 import java.util.stream.IntStream;
 
+import org.jayield.Query;
 import org.jayield.boxes.IntBox;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.dbl.DoubleQuery;
 import org.testng.annotations.Test;
 
@@ -444,4 +447,76 @@ public class IntQueryTraverseTest {
                                 .toArray();
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testProfiled() {
+        Query<String> nrs = IntQuery.of(1, 2, 3, 4, 5, 6)
+                                    .profiled()
+                                    .filter(n -> n % 3 == 0)
+                                    .mapToObj(String::valueOf);
+        assertEquals(nrs.toArray(String[]::new), new String[]{"3", "6"});
+        String[] report = nrs.explainAnalyze().split("\\R");
+        assertTrue(report[2].matches("filter\\s+6\\s+2\\s+33\\.33%.*"));
+        assertTrue(report[3].matches("mapToObj\\s+2\\s+2\\s+100\\.00%.*"));
+    }
+
+    @Test
+    public void testMergeSortedMergeJoin() {
+        int[] merged = IntQuery.mergeSorted(of(1, 4, 9), of(2, 4, 5), of(3)).toArray();
+        assertArrayEquals(new int[]{1, 2, 3, 4, 4, 5, 9}, merged);
+        int[] joined = of(merged).mergeJoin(of(0, 4, 4, 5, 6)).toArray();
+        assertArrayEquals(new int[]{4, 4, 4, 4, 5}, joined);
+    }
+
+    @Test
+    public void testHistogram() {
+        IntHistogram statuses = of(200, 404, 200, 500, 200, 99, 404).histogram(100, 599);
+        assertTrue(statuses.isDense());
+        assertEquals(statuses.count(200), 3);
+        assertEquals(statuses.count(301), 0);
+        assertEquals(statuses.outliers(), 1);
+        assertEquals(statuses.toString(), "{200=3, 404=2, 500=1}");
+        IntHistogram hours = IntQuery.iterate(0, n -> n + 1).limit(48).countBy(n -> n % 24, 24);
+        assertArrayEquals(IntQuery.iterate(0, n -> n + 1).limit(24).toArray(), hours.values());
+        assertEquals(hours.total(), 48);
+    }
+
+    @Test
+    public void testHistogramSparse() {
+        IntHistogram ids = of(7, 1_000_000, 7, -5).histogram(0, Integer.MAX_VALUE);
+        assertFalse(ids.isDense());
+        assertArrayEquals(new int[]{7, 1_000_000}, ids.values());
+        assertArrayEquals(new long[]{2, 1}, ids.counts());
+        IntHistogram dense = IntQuery.iterate(0, n -> n + 3).limit(100_000).histogram(0, (1 << 17) - 1);
+        assertTrue(dense.isDense());
+        assertEquals(dense.total(), 43_691);
+        assertEquals(dense.count(3 * 43_690), 1);
+        assertEquals(dense.outliers(), 100_000 - 43_691);
+    }
+
+    @Test
+    public void testSortedRadix() {
+        int[] expected = iterate(7, n -> n * 1_103_515_245 + 12_345).limit(20_000).toArray();
+        int[] actual = of(expected).sorted().toArray();
+        Arrays.sort(expected);
+        assertArrayEquals(expected, actual);
+        int[] small = iterate(7, n -> n * 1_103_515_245 + 12_345).map(n -> n & 0xFFF).limit(10_000).toArray();
+        int[] range = small.clone();
+        Sorts.radixSort(range, 100, 9_000);
+        Arrays.sort(small, 100, 9_000);
+        assertArrayEquals(small, range);
+    }
+
+    @Test
+    public void testChunked() {
+        Query<String> chunks = of(1, 2, 3, 4, 5, 6, 7).chunked(3).map(Arrays::toString);
+        assertEquals(chunks.toList(), Arrays.asList("[1, 2, 3]", "[4, 5, 6]", "[7]"));
+        int[] sums = new int[3];
+        IntBox chunk = new IntBox(0, true);
+        of(1, 2, 3, 4, 5, 6, 7).forEachChunk(3, (buffer, length) -> {
+            for (int i = 0; i < length; i++) sums[chunk.getValue()] += buffer[i];
+            chunk.setValue(chunk.getValue() + 1);
+        });
+        assertArrayEquals(new int[]{6, 15, 7}, sums);
+    }
 }
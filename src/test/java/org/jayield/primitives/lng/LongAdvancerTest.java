@@ -1,12 +1,16 @@
 package org.jayield.primitives.lng;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
 
 import java.util.NoSuchElementException;
 
+import org.jayield.advs.AdvancerArray;
 import org.jayield.boxes.BoolBox;
 import org.jayield.primitives.intgr.IntAdvancer;
+import org.jayield.primitives.lng.advs.LongAdvancerArray;
 import org.testng.annotations.Test;
 
 public class LongAdvancerTest {
@@ -23,4 +27,26 @@ public class LongAdvancerTest {
         assertFalse(box.isTrue());
     }
 
+
+    @Test()
+    public void testArrayAdvanceTo() {
+        SeekableLongAdvancer adv = new LongAdvancerArray(1, 3, 3, 8, 13, 21, 34, 55, 89);
+        assertTrue(adv.advanceTo(3));
+        assertEquals(adv.nextLong(), 3);
+        assertTrue(adv.advanceTo(3));
+        assertEquals(adv.nextLong(), 3);
+        assertTrue(adv.advanceTo(50));
+        assertEquals(adv.nextLong(), 55);
+        assertFalse(adv.advanceTo(90));
+        assertFalse(adv.hasNext());
+    }
+
+    @Test()
+    public void testSeekableOf() {
+        SeekableLongAdvancer adv = SeekableLongAdvancer.of(LongAdvancer.from(new AdvancerArray<>(0L, 5L, 10L, 15L, 20L, 40L), n -> n));
+        assertTrue(adv.advanceTo(12));
+        assertEquals(adv.nextLong(), 15);
+        assertTrue(adv.advanceTo(40));
+        assertFalse(adv.advanceTo(50));
+    }
 }
@@ -339,4 +339,18 @@ public class LongQueryIterateTest {
         assertEquals(expected.length, index);
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testDeltas() {
+        long[] expected = {2, 0, -5};
+        LongQuery pipe = of(3, 5, 5, 0).deltas();
+        long[] actual = new long[expected.length];
+        int index = 0;
+        while (pipe.hasNext()) {
+            assertTrue(index < expected.length);
+            actual[index++] = pipe.next();
+        }
+        assertEquals(expected.length, index);
+        assertArrayEquals(expected, actual);
+    }
 }
@@ -24,13 +24,23 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.internal.junit.ArrayAsserts.assertArrayEquals;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.LongSummaryStatistics;
 import java.util.OptionalLong;
 import java.util.PrimitiveIterator;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
+import org.jayield.SortOptions;
 import org.jayield.boxes.IntBox;
+import org.jayield.primitives.Sorts;
 import org.jayield.primitives.intgr.IntQuery;
+import org.jayield.sketches.BloomFilter;
+import org.jayield.sketches.HyperLogLog;
+import org.jayield.spill.LongExternalSort;
 import org.testng.annotations.Test;
 
 /**
@@ -440,4 +450,144 @@ public class LongQueryTraverseTest {
                 .toArray();
         assertArrayEquals(expected, actual);
     }
+
+    @Test
+    public void testMergeSortedMergeJoin() {
+        long[] merged = LongQuery.mergeSorted(LongQuery.of(1, 4, 9), LongQuery.of(2, 4, 5)).toArray();
+        assertArrayEquals(new long[]{1, 2, 4, 4, 5, 9}, merged);
+        long[] joined = LongQuery.of(merged).mergeJoin(LongQuery.of(2, 2, 9)).toArray();
+        assertArrayEquals(new long[]{2, 2, 9}, joined);
+    }
+
+    @Test
+    public void testSortedSetOperations() {
+        long[] evens = LongQuery.iterate(0, n -> n + 2).limit(1_000_000).toArray();
+        LongQuery odds = LongQuery.iterate(1, n -> n + 2).limit(10);
+        assertArrayEquals(
+            new long[]{6, 30, 1_999_998},
+            LongQuery.intersectSorted(of(evens), of(3, 6, 30, 31, 1_999_998), of(6, 30, 40, 1_999_998)).toArray());
+        assertArrayEquals(
+            new long[]{0, 1, 2, 3, 4, 5, 7},
+            LongQuery.unionSorted(of(0, 2, 4), of(1, 2, 3, 4, 5), of(), of(2, 7)).toArray());
+        assertArrayEquals(
+            new long[]{1, 3, 7},
+            LongQuery.differenceSorted(odds.limit(5), of(evens), of(5, 9)).toArray());
+    }
+
+    @Test
+    public void testParallelDistinct() {
+        long[] actual = iterate(0, n -> n + 1).limit(50_000).map(n -> n * n % 7_919).parallelDistinct().toArray();
+        long[] expected = iterate(0, n -> n + 1).limit(50_000).map(n -> n * n % 7_919).distinct().toArray();
+        Arrays.sort(actual);
+        Arrays.sort(expected);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testSortedSpill() throws IOException {
+        Path dir = Files.createTempDirectory("jayield");
+        long[] expected = iterate(7, n -> n * 6_364_136_223_846_793_005L + 1).limit(20_000).toArray();
+        long[] actual = of(expected).sorted(SortOptions.spillAt(100 * Long.BYTES, dir)).toArray();
+        Arrays.sort(expected);
+        assertArrayEquals(expected, actual);
+        try (Stream<Path> runs = Files.list(dir)) {
+            assertEquals(runs.count(), 0);
+        }
+        assertArrayEquals(new long[]{1, 2, 3}, of(3, 1, 2).sorted(SortOptions.spillAt(1 << 20, dir)).toArray());
+        // Runs of 50 elements, leaving half of the budget to the scratch array of the sort.
+        LongExternalSort sort = new LongExternalSort(SortOptions.spillAt(100 * Long.BYTES, dir));
+        LongAdvancer sorted = sort.sort(of(expected).limit(1_000));
+        assertEquals(sort.spilled(), 19);
+        sorted.traverse(item -> { });
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSortedRadix() {
+        long[] expected = iterate(7, n -> n * 6_364_136_223_846_793_005L + 1).limit(20_000).toArray();
+        long[] actual = of(expected).sorted().toArray();
+        Arrays.sort(expected);
+        assertArrayEquals(expected, actual);
+        long[] small = iterate(7, n -> n * 6_364_136_223_846_793_005L + 1).map(n -> -(n >>> 40)).limit(10_000).toArray();
+        long[] range = small.clone();
+        Sorts.radixSort(range, 100, 9_000);
+        Arrays.sort(small, 100, 9_000);
+        assertArrayEquals(small, range);
+    }
+
+    @Test
+    public void testRolling() {
+        long[] source = iterate(7, n -> n * 6_364_136_223_846_793_005L + 1).map(n -> n >> 40).limit(1_000).toArray();
+        int n = 5;
+        long[] sums = new long[source.length - n + 1];
+        long[] maxs = new long[sums.length];
+        long[] mins = new long[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            LongSummaryStatistics window = Arrays.stream(source, i, i + n).summaryStatistics();
+            sums[i] = window.getSum();
+            maxs[i] = window.getMax();
+            mins[i] = window.getMin();
+        }
+        assertArrayEquals(sums, of(source).rollingSum(n).toArray());
+        assertArrayEquals(maxs, of(source).rollingMax(n).toArray());
+        assertArrayEquals(mins, of(source).rollingMin(n).toArray());
+        assertArrayEquals(new long[]{3, -1, 10}, of(1, 4, 3, 13).deltas().toArray());
+        assertEquals(of(1).deltas().count(), 0);
+    }
+
+    @Test
+    public void testChunked() {
+        assertEquals(of(1, 2, 3, 4, 5).chunked(2).map(Arrays::toString).join(), "[1, 2][3, 4][5]");
+        long[] last = new long[1];
+        of(1, 2, 3, 4, 5).forEachChunk(2, (buffer, length) -> last[0] = buffer[length - 1]);
+        assertEquals(last[0], 5);
+    }
+
+    @Test
+    public void testApproxCountDistinct() {
+        int distinct = 200_000;
+        long estimate = iterate(0, n -> n + 1).map(n -> n % distinct * 7_919).limit(3 * distinct).approxCountDistinct(14);
+        assertTrue(Math.abs(estimate - distinct) < 4 * 0.0081 * distinct);
+        assertEquals(of(5, 5, 7, 5).approxCountDistinct(12), 2);
+        assertEquals(of().approxCountDistinct(4), 0);
+        HyperLogLog evens = new HyperLogLog(10);
+        HyperLogLog odds = new HyperLogLog(10);
+        HyperLogLog all = new HyperLogLog(10);
+        iterate(0, n -> n + 1).limit(10_000).forEach(n -> {
+            (n % 2 == 0 ? evens : odds).add(n);
+            all.add(n);
+        });
+        assertEquals(evens.merge(odds).estimate(), all.estimate());
+    }
+
+    @Test
+    public void testApproxDistinct() {
+        long[] actual = iterate(0, n -> n + 1).map(n -> n % 1_000).limit(5_000).approxDistinct(1_000, 0.01).toArray();
+        assertEquals(LongStream.of(actual).distinct().count(), actual.length);
+        assertTrue(actual.length > 950 && actual.length <= 1_000);
+        assertArrayEquals(new long[]{3, 1, 2}, of(3, 1, 3, 2, 1).approxDistinct(100, 0.001).toArray());
+        BloomFilter low = BloomFilter.of(1_000, 0.01);
+        BloomFilter high = BloomFilter.of(1_000, 0.01);
+        iterate(0, n -> n + 1).limit(500).forEach(low::put);
+        iterate(500, n -> n + 1).limit(500).forEach(high::put);
+        assertTrue(iterate(0, n -> n + 1).limit(1_000).allMatch(low.merge(high)::mightContain));
+        assertTrue(low.expectedFpp() < 0.02);
+    }
+
+    @Test
+    public void testQuantiles() {
+        long[] source = iterate(7, n -> n * 6_364_136_223_846_793_005L + 1).map(n -> n >> 20).limit(50_000).toArray();
+        long[] sorted = source.clone();
+        Arrays.sort(sorted);
+        double[] qs = {0.5, 0.9, 0.999};
+        long[] exact = of(source).exactQuantiles(qs);
+        long[] estimates = of(source).quantiles(qs);
+        for (int i = 0; i < qs.length; i++) {
+            int rank = (int) Math.ceil(qs[i] * source.length) - 1;
+            assertEquals(exact[i], sorted[rank]);
+            assertTrue(Math.abs(Arrays.binarySearch(sorted, estimates[i]) - rank) <= 0.02 * source.length);
+        }
+        assertArrayEquals(new long[]{1, 3, 5}, of(5, 4, 3, 2, 1).exactQuantiles(0, 0.5, 1));
+        assertArrayEquals(new long[]{1, 3, 5}, of(5, 4, 3, 2, 1).quantiles(0, 0.5, 1));
+    }
 }